@@ -10,18 +10,40 @@
 package org.openmrs.module.fhir2;
 
 import lombok.extern.slf4j.Slf4j;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.BaseModuleActivator;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.DaemonTokenAware;
+import org.openmrs.module.fhir2.api.search.SearchPagePrefetcher;
 
 /**
  * This class contains the logic that is run every time this module is either started or shutdown
  */
 @SuppressWarnings("unused")
 @Slf4j
-public class FhirActivator extends BaseModuleActivator {
+public class FhirActivator extends BaseModuleActivator implements DaemonTokenAware {
+	
+	private DaemonToken daemonToken;
+	
+	@Override
+	public void setDaemonToken(DaemonToken daemonToken) {
+		this.daemonToken = daemonToken;
+	}
 	
 	@Override
 	public void started() {
 		log.info("Started FHIR");
+		
+		for (SearchPagePrefetcher prefetcher : Context.getRegisteredComponents(SearchPagePrefetcher.class)) {
+			prefetcher.setDaemonToken(daemonToken);
+		}
+		
+		// warm up in the background so that starting OpenMRS is not delayed
+		for (FhirWarmUp warmUp : Context.getRegisteredComponents(FhirWarmUp.class)) {
+			Thread thread = new Thread(warmUp::warmUp, "fhir2-warm-up");
+			thread.setDaemon(true);
+			thread.start();
+		}
 	}
 	
 	@Override
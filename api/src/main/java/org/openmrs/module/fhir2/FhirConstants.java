@@ -95,6 +95,28 @@ public class FhirConstants {
 	
 	public static final String OPENMRS_FHIR_MAXIMUM_PAGE_SIZE = "fhir2.paging.maximum";
 	
+	public static final String PAGING_PREFETCH_ENABLED = "fhir2.paging.prefetch.enabled";
+	
+	public static final String LAST_UPDATED_INDEX_ENABLED = "fhir2.lastUpdatedIndex.enabled";
+	
+	public static final String PREFERRED_NAME_INDEX_ENABLED = "fhir2.preferredNameIndex.enabled";
+	
+	public static final String SEARCH_TOKEN_INDEX_ENABLED = "fhir2.searchTokenIndex.enabled";
+	
+	public static final String BULK_IMPORT_CHUNK_SIZE = "fhir2.bulkImport.chunkSize";
+	
+	public static final String BULK_IMPORT_MAXIMUM_FILE_SIZE = "fhir2.bulkImport.maximumFileSize";
+	
+	public static final String CONDITIONAL_DELETE_MAXIMUM = "fhir2.conditionalDelete.maximum";
+	
+	public static final String SEARCH_CACHE_ENABLED = "fhir2.searchCache.enabled";
+	
+	public static final String SEARCH_CACHE_TTL = "fhir2.searchCache.ttl";
+	
+	public static final String SLOW_SEARCH_THRESHOLD = "fhir2.slowSearch.threshold";
+	
+	public static final String SLOW_SEARCH_MAXIMUM_PER_MINUTE = "fhir2.slowSearch.maximumPerMinute";
+	
 	public static final String ALLERGY_INTOLERANCE = "AllergyIntolerance";
 	
 	public static final String CONDITION = "Condition";
@@ -217,6 +239,8 @@ public class FhirConstants {
 	
 	public static final String NARRATIVES_OVERRIDE_PROPERTY_FILE = "fhir2.narrativesOverridePropertyFile";
 	
+	public static final String NARRATIVES_DISABLED_FOR_USERS = "fhir2.narrativesDisabledForUsers";
+	
 	public static final String ALLERGEN_SEARCH_HANDLER = "allergen.search.handler";
 	
 	public static final String SEVERITY_SEARCH_HANDLER = "severity.search.handler";
@@ -0,0 +1,54 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import java.io.Serializable;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * A row which conditional creates and updates of patients lock before looking for a patient with an
+ * identifier, so that concurrent requests for the same identifier are serialized without locking
+ * the identifier type itself. There is one row for each identifier type name and identifier value
+ * that has been used in a condition, where the identifier type is empty if the condition did not
+ * name one.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_identifier_lock")
+public class FhirIdentifierLock implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final int MAX_LENGTH = 50;
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Column(name = "fhir_identifier_lock_id")
+	private Integer id;
+	
+	@Column(name = "identifier_type", nullable = false, length = MAX_LENGTH)
+	private String identifierType;
+	
+	@Column(name = "identifier", nullable = false, length = MAX_LENGTH)
+	private String identifier;
+}
@@ -0,0 +1,55 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Records the last time an object exposed as a FHIR resource was created or changed, so that
+ * {@code _lastUpdated} searches can be served from a single index rather than by inspecting both
+ * {@code date_changed} and {@code date_created} on the underlying table. Rows are maintained by
+ * {@link org.openmrs.module.fhir2.api.dao.impl.FhirLastUpdatedInterceptor}.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_last_updated")
+public class FhirLastUpdated implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Column(name = "fhir_last_updated_id")
+	private Integer id;
+	
+	@Column(name = "resource_type", nullable = false)
+	private String resourceType;
+	
+	@Column(name = "resource_uuid", nullable = false, length = 38)
+	private String resourceUuid;
+	
+	@Column(name = "last_updated", nullable = false)
+	private Date lastUpdated;
+}
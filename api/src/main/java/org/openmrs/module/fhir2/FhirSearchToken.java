@@ -0,0 +1,63 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import java.io.Serializable;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * A normalized (case-folded and accent-stripped) token taken from one of a person's names or
+ * identifiers, used to search for people without scanning the person_name and patient_identifier
+ * tables. Rows are maintained by {@link org.openmrs.module.fhir2.api.dao.impl.FhirPersonIndexInterceptor}.
+ *
+ * @see org.openmrs.module.fhir2.api.util.FhirUtils#normalizeSearchTokens(String)
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_search_token")
+public class FhirSearchToken implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final String GIVEN = "given";
+	
+	public static final String MIDDLE = "middle";
+	
+	public static final String FAMILY = "family";
+	
+	public static final String IDENTIFIER = "identifier";
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Column(name = "fhir_search_token_id")
+	private Integer id;
+	
+	@Column(name = "person_id", nullable = false)
+	private Integer personId;
+	
+	@Column(name = "token_type", nullable = false, length = 50)
+	private String tokenType;
+	
+	@Column(name = "token", nullable = false)
+	private String token;
+}
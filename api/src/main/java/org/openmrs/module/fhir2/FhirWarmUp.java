@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.narrative.INarrativeGenerator;
+import ca.uhn.fhir.rest.server.IResourceProvider;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir2.api.mappings.BaseMapping;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Performs the work otherwise done lazily by the first requests after the module starts, i.e.
+ * scanning the HAPI model of every resource type, loading and parsing the narrative templates and
+ * loading the mapping tables, so that those requests are not noticeably slower than any other. This
+ * is run in the background by {@link FhirActivator#started()}.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirWarmUp {
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	private FhirContext fhirR4;
+	
+	@Autowired
+	@Qualifier("fhirR3")
+	private FhirContext fhirR3;
+	
+	@Autowired
+	@Qualifier("fhirResources")
+	private Collection<IResourceProvider> resourceProviders;
+	
+	@Autowired
+	private List<BaseMapping> mappings;
+	
+	public void warmUp() {
+		long start = System.currentTimeMillis();
+		
+		timed("FHIR R4 model", () -> scanResourceTypes(fhirR4, org.hl7.fhir.r4.model.ResourceType.values()));
+		timed("FHIR R3 model", () -> scanResourceTypes(fhirR3, org.hl7.fhir.dstu3.model.ResourceType.values()));
+		timed("narrative templates", this::renderNarratives);
+		timed("mappings", () -> mappings.forEach(BaseMapping::initialize));
+		
+		log.info("Warmed up FHIR module in {} ms", System.currentTimeMillis() - start);
+	}
+	
+	private void scanResourceTypes(FhirContext fhirContext, Enum<?>[] resourceTypes) {
+		for (Enum<?> resourceType : resourceTypes) {
+			tryWarmUp(resourceType.name(), fhirContext::getResourceDefinition);
+		}
+	}
+	
+	/**
+	 * Generates the narrative for an empty resource of each type served, which loads the narrative
+	 * manifest and parses the templates. The narrative generator is only available once the FHIR
+	 * servlet has been initialized.
+	 */
+	private void renderNarratives() {
+		INarrativeGenerator narrativeGenerator = fhirR4.getNarrativeGenerator();
+		if (narrativeGenerator == null) {
+			log.debug("Not warming up narrative templates as the FHIR servlet has not been initialized");
+			return;
+		}
+		
+		for (IResourceProvider resourceProvider : resourceProviders) {
+			tryWarmUp(resourceProvider.getResourceType(), resourceType -> {
+				IBaseResource resource = fhirR4.getResourceDefinition(resourceType).newInstance();
+				narrativeGenerator.populateResourceNarrative(fhirR4, resource);
+			});
+		}
+	}
+	
+	private void timed(String description, Runnable task) {
+		long start = System.currentTimeMillis();
+		task.run();
+		log.info("Warmed up {} in {} ms", description, System.currentTimeMillis() - start);
+	}
+	
+	private <T> void tryWarmUp(T item, Consumer<T> task) {
+		try {
+			task.accept(item);
+		}
+		catch (Exception e) {
+			log.debug("Unable to warm up {}", item, e);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+
+/**
+ * The result of a conditional create or update, i.e. the id of the resource that was written or
+ * matched, whether it had to be created and, unless a minimal response was requested, the resource
+ * itself
+ */
+@Data
+@AllArgsConstructor
+public class ConditionalResult<T extends IAnyResource> {
+	
+	private String id;
+	
+	private T resource;
+	
+	private boolean created;
+}
@@ -0,0 +1,35 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api;
+
+import javax.validation.constraints.NotNull;
+
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.r4.model.OperationOutcome;
+
+public interface FhirBulkImportService {
+	
+	/**
+	 * Creates the resources in an NDJSON file, i.e. a file with one JSON-encoded resource per line. The
+	 * file is read as a stream and written in chunks, each chunk in its own transaction, so that large
+	 * files can be loaded without holding them in memory. Lines which cannot be parsed, translated,
+	 * validated or saved are reported in the returned {@link OperationOutcome} without aborting the rest
+	 * of the load. The import runs on the calling thread, so the size of the file is limited by the
+	 * {@code fhir2.bulkImport.maximumFileSize} global property, and it may only be run by users with the
+	 * View Administration Functions privilege.
+	 *
+	 * @param service the service used to create the resources
+	 * @param resourceType the type of resource in the file
+	 * @param path the path of the file, relative to the import directory
+	 * @return an {@link OperationOutcome} summarising the import and listing the lines that failed
+	 */
+	<T extends IAnyResource> OperationOutcome importResources(@NotNull FhirService<T> service,
+	        @NotNull Class<T> resourceType, @NotNull String path);
+}
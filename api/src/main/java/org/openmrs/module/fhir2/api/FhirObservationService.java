@@ -31,4 +31,18 @@ public interface FhirObservationService extends FhirService<Observation> {
 	        QuantityAndListParam valueQuantityParam, StringAndListParam valueStringParam, DateRangeParam date,
 	        TokenAndListParam code, TokenAndListParam category, TokenAndListParam id, DateRangeParam lastUpdated,
 	        SortSpec sort);
+	
+	/**
+	 * Voids all observations matching the given search parameters, e.g. for a conditional delete. At
+	 * least one parameter must be supplied and, as a safety measure, nothing is voided if more
+	 * observations match than allowed by {@link org.openmrs.module.fhir2.FhirConstants#CONDITIONAL_DELETE_MAXIMUM}.
+	 * The members of matching obs groups are voided along with them, but are not counted towards that
+	 * maximum.
+	 *
+	 * @return the number of observations voided
+	 */
+	int deleteObservations(ReferenceAndListParam encounterReference, ReferenceAndListParam patientReference,
+	        TokenAndListParam valueConcept, DateRangeParam valueDateParam, QuantityAndListParam valueQuantityParam,
+	        StringAndListParam valueStringParam, DateRangeParam date, TokenAndListParam code, TokenAndListParam category,
+	        TokenAndListParam id, DateRangeParam lastUpdated);
 }
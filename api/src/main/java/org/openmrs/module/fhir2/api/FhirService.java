@@ -11,6 +11,9 @@ package org.openmrs.module.fhir2.api;
 
 import javax.validation.constraints.NotNull;
 
+import java.util.List;
+import java.util.Map;
+
 import org.hl7.fhir.instance.model.api.IAnyResource;
 
 public interface FhirService<T extends IAnyResource> {
@@ -19,7 +22,59 @@ public interface FhirService<T extends IAnyResource> {
 	
 	T create(T newResource);
 	
+	/**
+	 * Creates the supplied resource without translating the saved object back into a FHIR resource,
+	 * for clients that do not want the resource returned, i.e. {@code Prefer: return=minimal}
+	 *
+	 * @param newResource the resource to create
+	 * @return the id of the created resource
+	 */
+	String createMinimal(T newResource);
+	
+	/**
+	 * Creates a batch of resources in a single transaction, flushing and clearing the session once the
+	 * batch has been written. Resources which cannot be translated or fail validation are skipped.
+	 *
+	 * @param newResources the resources to create
+	 * @return the errors for the skipped resources, keyed by their index in newResources
+	 */
+	Map<Integer, String> createBatch(List<T> newResources);
+	
 	T update(String uuid, T updatedResource);
 	
+	/**
+	 * Updates the resource without translating the saved object back into a FHIR resource
+	 *
+	 * @param uuid the id of the resource to update
+	 * @param updatedResource the new state of the resource
+	 */
+	void updateMinimal(String uuid, T updatedResource);
+	
+	/**
+	 * Creates the supplied resource unless an existing resource matches the conditional url, e.g. the
+	 * value of an If-None-Exist header, in which case the existing resource is returned instead.
+	 * Conditions on a business identifier, such as a patient identifier, are locked for the rest of the
+	 * transaction, so concurrent requests with the same condition create at most one resource.
+	 * Conditions on {@code _id} are not locked, so concurrent requests may each create a resource.
+	 *
+	 * @param newResource the resource to create
+	 * @param conditionalUrl the search criteria, e.g. {@code identifier=system|value}
+	 * @param minimal if true, the resource is not translated and only its id is returned
+	 * @return the created or matched resource
+	 */
+	ConditionalResult<T> createConditional(T newResource, @NotNull String conditionalUrl, boolean minimal);
+	
+	/**
+	 * Updates the single resource matching the conditional url or creates the supplied resource if none
+	 * matches. The condition is locked in the same way as for
+	 * {@link #createConditional(IAnyResource, String, boolean)}.
+	 *
+	 * @param updatedResource the new state of the resource
+	 * @param conditionalUrl the search criteria, e.g. {@code Patient?identifier=system|value}
+	 * @param minimal if true, the resource is not translated and only its id is returned
+	 * @return the updated or created resource
+	 */
+	ConditionalResult<T> updateConditional(T updatedResource, @NotNull String conditionalUrl, boolean minimal);
+	
 	T delete(@NotNull String uuid);
 }
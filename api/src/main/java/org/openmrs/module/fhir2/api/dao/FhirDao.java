@@ -25,12 +25,60 @@ public interface FhirDao<T extends OpenmrsObject & Auditable> extends Serializab
 	
 	T get(@NotNull String uuid);
 	
+	/**
+	 * Gets a reference to the object with the given uuid suitable for attaching to another object
+	 * being saved. Unlike {@link #get(String)}, this may return an uninitialized proxy, so that
+	 * referencing an object does not require loading it.
+	 *
+	 * @param uuid the uuid of the object to reference
+	 * @return a reference to the object or null if no object with that uuid exists
+	 */
+	T getReference(@NotNull String uuid);
+	
 	T createOrUpdate(T newEntry);
 	
 	T delete(@NotNull String uuid);
 	
+	/**
+	 * Voids the objects with the given uuids using set-based updates rather than loading each object, so
+	 * that large numbers of objects can be voided at once. Note that, as the objects are not loaded,
+	 * save handlers and interceptors are not run for them.
+	 *
+	 * @param uuids the uuids of the objects to void
+	 * @param voidReason the reason the objects are voided
+	 * @return the number of objects voided
+	 */
+	int voidObjects(@NotNull List<String> uuids, String voidReason);
+	
+	/**
+	 * Writes any pending changes to the database and detaches all objects from the current session, so
+	 * that long-running writes, e.g. bulk imports, do not accumulate objects in the session
+	 */
+	void flushAndClear();
+	
+	/**
+	 * Gets the type of object managed by this Dao, e.g. to identify the searches affected by changes
+	 * to objects of that type
+	 *
+	 * @return the type of object managed by this Dao
+	 */
+	Class<? super T> getEntityType();
+	
 	List<String> getSearchResultUuids(SearchParameterMap theParams);
 	
+	/**
+	 * Gets the uuids of at most {@code maxResults} objects matching the search, e.g. to check that a
+	 * search does not match more than a given number of objects without reading the uuid of every match
+	 *
+	 * @param theParams the search parameters
+	 * @param maxResults the maximum number of uuids to return
+	 * @return the uuids of the first {@code maxResults} objects matching the search
+	 */
+	default List<String> getSearchResultUuids(SearchParameterMap theParams, int maxResults) {
+		List<String> uuids = getSearchResultUuids(theParams);
+		return uuids.size() > maxResults ? uuids.subList(0, maxResults) : uuids;
+	}
+	
 	default List<T> getSearchResults(SearchParameterMap theParams, List<String> matchingResourceUuids) {
 		return getSearchResults(theParams, matchingResourceUuids, 0, matchingResourceUuids.size());
 	}
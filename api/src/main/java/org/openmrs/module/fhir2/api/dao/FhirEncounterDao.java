@@ -22,6 +22,10 @@ public interface FhirEncounterDao extends FhirDao<Encounter> {
 	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
 	Encounter get(String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
+	Encounter getReference(String uuid);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_ENCOUNTERS, PrivilegeConstants.EDIT_ENCOUNTERS })
 	Encounter createOrUpdate(Encounter newEntry);
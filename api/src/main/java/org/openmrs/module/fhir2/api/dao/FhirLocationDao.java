@@ -25,6 +25,10 @@ public interface FhirLocationDao extends FhirDao<Location> {
 	@Authorized(PrivilegeConstants.GET_LOCATIONS)
 	Location get(String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_LOCATIONS)
+	Location getReference(String uuid);
+	
 	@Authorized(PrivilegeConstants.GET_LOCATIONS)
 	List<LocationAttribute> getActiveAttributesByLocationAndAttributeTypeUuid(@NotNull Location location,
 	        @NotNull String locationAttributeTypeUuid);
@@ -22,6 +22,10 @@ public interface FhirMedicationDao extends FhirDao<Drug> {
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	Drug get(String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	Drug getReference(String uuid);
+	
 	@Override
 	@Authorized(PrivilegeConstants.MANAGE_CONCEPTS)
 	Drug createOrUpdate(Drug newEntry);
@@ -30,10 +30,18 @@ public interface FhirObservationDao extends FhirDao<Obs> {
 	@Authorized(PrivilegeConstants.DELETE_OBS)
 	Obs delete(String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.DELETE_OBS)
+	int voidObjects(List<String> uuids, String voidReason);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_OBS)
 	List<String> getSearchResultUuids(SearchParameterMap theParams);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	List<String> getSearchResultUuids(SearchParameterMap theParams, int maxResults);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_OBS)
 	List<Obs> getSearchResults(SearchParameterMap theParams, List<String> matchingResourceUuids, int firstResult,
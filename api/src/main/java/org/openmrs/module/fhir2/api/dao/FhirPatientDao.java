@@ -28,9 +28,37 @@ public interface FhirPatientDao extends FhirDao<Patient> {
 	@Authorized(PrivilegeConstants.GET_PATIENTS)
 	Patient get(String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	Patient getReference(String uuid);
+	
 	@Authorized(PrivilegeConstants.GET_PATIENT_IDENTIFIERS)
 	PatientIdentifierType getPatientIdentifierTypeByNameOrUuid(String name, String uuid);
 	
+	/**
+	 * Finds the non-voided patients with a non-voided identifier exactly matching the supplied value
+	 *
+	 * @param identifier the identifier to look for
+	 * @param identifierTypeName the name of the identifier type, or null to match any identifier type
+	 * @return the matching patients
+	 */
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	List<Patient> getPatientsByIdentifier(@NotNull String identifier, String identifierTypeName);
+	
+	/**
+	 * Locks an identifier value until the current transaction completes. Conditional creates and
+	 * updates take this lock before looking for a patient with the identifier, so that two concurrent
+	 * requests for the same identifier cannot both find no match and both create a patient. Only the
+	 * identifier itself is locked, so requests for other identifiers, and other writes of patients and
+	 * identifier types, are not blocked.
+	 *
+	 * @param identifierTypeName the name of the identifier type, or null if the condition does not name
+	 *            one
+	 * @param identifier the identifier value
+	 */
+	@Authorized(PrivilegeConstants.GET_PATIENT_IDENTIFIERS)
+	void lockIdentifier(String identifierTypeName, @NotNull String identifier);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_PATIENTS, PrivilegeConstants.EDIT_PATIENTS })
 	Patient createOrUpdate(Patient newEntry);
@@ -24,6 +24,9 @@ public interface FhirPractitionerDao extends FhirDao<Provider> {
 	@Override
 	Provider get(String uuid);
 	
+	@Override
+	Provider getReference(String uuid);
+	
 	@Authorized(PrivilegeConstants.GET_PROVIDERS)
 	List<ProviderAttribute> getActiveAttributesByPractitionerAndAttributeTypeUuid(@NotNull Provider provider,
 	        @NotNull String providerAttributeTypeUuid);
@@ -0,0 +1,41 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import javax.validation.constraints.NotNull;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.openmrs.annotation.Authorized;
+import org.openmrs.util.PrivilegeConstants;
+
+/**
+ * Resolves coded search tokens, i.e. a system and a code, to the ids of the concepts mapped to them.
+ * Results are cached so that coded searches don't need to join the concept mappings for every query.
+ */
+public interface FhirTerminologyIndexDao {
+	
+	/**
+	 * Returns the ids of all concepts mapped to any of the given codes in the concept source associated
+	 * with the given system url
+	 *
+	 * @param system the url of the code system
+	 * @param codes the codes to look up
+	 * @return the ids of the matching concepts, which is empty if no concept matches
+	 */
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	Set<Integer> getConceptIdsBySystemAndCodes(@NotNull String system, @NotNull Collection<String> codes);
+	
+	/**
+	 * Discards any cached code resolutions
+	 */
+	void clearCache();
+}
@@ -19,11 +19,14 @@ import static org.hibernate.criterion.Restrictions.ilike;
 import static org.hibernate.criterion.Restrictions.in;
 import static org.hibernate.criterion.Restrictions.isNull;
 import static org.hibernate.criterion.Restrictions.le;
+import static org.hibernate.criterion.Restrictions.like;
 import static org.hibernate.criterion.Restrictions.lt;
 import static org.hibernate.criterion.Restrictions.ne;
 import static org.hibernate.criterion.Restrictions.not;
 import static org.hibernate.criterion.Restrictions.or;
+import static org.hibernate.criterion.Restrictions.sqlRestriction;
 import static org.hibernate.criterion.Subqueries.propertyEq;
+import static org.hibernate.criterion.Subqueries.propertyIn;
 
 import javax.validation.constraints.NotNull;
 
@@ -36,7 +39,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.function.BiFunction;
@@ -61,9 +66,11 @@ import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -80,7 +87,11 @@ import org.hl7.fhir.r4.model.Practitioner;
 import org.hl7.fhir.r4.model.codesystems.AdministrativeGender;
 import org.openmrs.module.fhir2.FhirConceptSource;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.FhirSearchToken;
+import org.openmrs.module.fhir2.api.dao.FhirTerminologyIndexDao;
 import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * <p>
@@ -159,6 +170,10 @@ public abstract class BaseDao {
 	
 	private static final BigDecimal APPROX_RANGE = new BigDecimal("0.1");
 	
+	@Autowired(required = false)
+	@Setter(AccessLevel.PUBLIC)
+	private FhirTerminologyIndexDao terminologyIndexDao;
+	
 	/**
 	 * Converts an {@link Iterable} to a {@link Stream}
 	 *
@@ -214,9 +229,32 @@ public abstract class BaseDao {
 	 * @return true if the alias exists in this criteria object, false otherwise
 	 */
 	protected boolean lacksAlias(@NotNull Criteria criteria, @NotNull String alias) {
-		Optional<Iterator<CriteriaImpl.Subcriteria>> subcriteria = asImpl(criteria).map(CriteriaImpl::iterateSubcriteria);
+		Optional<CriteriaImpl> criteriaImpl = asImpl(criteria);
+		if (!criteriaImpl.isPresent()) {
+			return false;
+		}
 		
-		return subcriteria.filter(subcriteriaIterator -> containsAlias(subcriteriaIterator, alias)).isPresent();
+		// this is called for nearly every alias created while building a search, so we avoid the overhead of
+		// wrapping the iterator in a stream here
+		Iterator<CriteriaImpl.Subcriteria> subcriteriaIterator = criteriaImpl.get().iterateSubcriteria();
+		while (subcriteriaIterator.hasNext()) {
+			if (alias.equals(subcriteriaIterator.next().getAlias())) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Determines whether the given criteria object joins any associations, i.e. whether any aliases
+	 * have been created for it
+	 *
+	 * @param criteria the {@link Criteria} object to examine
+	 * @return true if the criteria object has at least one subcriteria, false otherwise
+	 */
+	protected boolean hasJoins(@NotNull Criteria criteria) {
+		return asImpl(criteria).map(criteriaImpl -> criteriaImpl.iterateSubcriteria().hasNext()).orElse(true);
 	}
 	
 	/**
@@ -650,6 +688,21 @@ public abstract class BaseDao {
 		}
 	}
 	
+	/**
+	 * Handles a search on a coded property. Tokens without a system are treated as concept ids or uuids.
+	 * Tokens with a system are resolved to the ids of the mapped concepts up front when a
+	 * {@link FhirTerminologyIndexDao} is available, so that the search itself does not need to join
+	 * the concept mappings. Otherwise, the mappings and reference terms are joined using the given
+	 * aliases.
+	 *
+	 * @param criteria the criteria object representing the current search
+	 * @param concepts the coded tokens to search for
+	 * @param conceptAlias the alias already created for the concept being searched on
+	 * @param conceptMapAlias the alias to use for the concept mappings, if they need to be joined
+	 * @param conceptReferenceTermAlias the alias to use for the reference terms, if they need to be
+	 *            joined
+	 * @return the resulting criterion
+	 */
 	protected Optional<Criterion> handleCodeableConcept(Criteria criteria, TokenAndListParam concepts,
 	        @NotNull String conceptAlias, @NotNull String conceptMapAlias, @NotNull String conceptReferenceTermAlias) {
 		if (concepts == null) {
@@ -662,6 +715,15 @@ public abstract class BaseDao {
 				    in(String.format("%s.conceptId", conceptAlias),
 				        tokensToParams(tokens).map(NumberUtils::toInt).collect(Collectors.toList())),
 				    in(String.format("%s.uuid", conceptAlias), tokensToList(tokens))));
+			} else if (terminologyIndexDao != null) {
+				Set<Integer> conceptIds = terminologyIndexDao.getConceptIdsBySystemAndCodes(system, tokensToList(tokens));
+				
+				if (conceptIds.isEmpty()) {
+					// none of the codes are mapped to a concept, so nothing can match
+					return Optional.of(sqlRestriction("1 = 0"));
+				}
+				
+				return Optional.of(in(String.format("%s.conceptId", conceptAlias), conceptIds));
 			} else {
 				if (lacksAlias(criteria, conceptMapAlias)) {
 					criteria.createAlias(String.format("%s.conceptMappings", conceptAlias), conceptMapAlias).createAlias(
@@ -684,6 +746,34 @@ public abstract class BaseDao {
 			return;
 		}
 		
+		// exact matches are against the whole of a name, so cannot be answered from the search tokens. Otherwise, the
+		// tokens give the same matches as the name columns: name matches any of its words against the given, middle
+		// or family name, while given and family match against that name only. The only differences are that tokens
+		// ignore accents and match the start of any word in a name, not just the start of the name.
+		if (isSearchTokenIndexEnabled() && Stream.of(name, given, family).filter(Objects::nonNull)
+		        .flatMap(param -> param.getValuesAsQueryTokens().stream())
+		        .flatMap(param -> param.getValuesAsQueryTokens().stream()).noneMatch(StringParam::isExact)) {
+			String personIdProperty = StringUtils.isNotBlank(personAlias) ? personAlias + ".personId" : "personId";
+			
+			if (name != null) {
+				handleAndListParam(name, nameParam -> handleAnySearchToken(personIdProperty, nameParam.getValue(),
+				    nameParam.isContains(), FhirSearchToken.GIVEN, FhirSearchToken.MIDDLE, FhirSearchToken.FAMILY))
+				            .ifPresent(criteria::add);
+			}
+			
+			if (given != null) {
+				handleAndListParam(given, givenName -> handleSearchTokens(personIdProperty, givenName.getValue(),
+				    givenName.isContains(), FhirSearchToken.GIVEN)).ifPresent(criteria::add);
+			}
+			
+			if (family != null) {
+				handleAndListParam(family, familyName -> handleSearchTokens(personIdProperty, familyName.getValue(),
+				    familyName.isContains(), FhirSearchToken.FAMILY)).ifPresent(criteria::add);
+			}
+			
+			return;
+		}
+		
 		if (lacksAlias(criteria, "pn")) {
 			if (StringUtils.isNotBlank(personAlias)) {
 				criteria.createAlias(String.format("%s.names", personAlias), "pn");
@@ -721,7 +811,24 @@ public abstract class BaseDao {
 			criteria.createAlias(associationPath, "p");
 			
 			handleAndListParam(patientReference, patientToken -> {
-				if (patientToken.getChain() != null) {
+				if (patientToken.getChain() != null && isSearchTokenIndexEnabled()) {
+					switch (patientToken.getChain()) {
+						case Patient.SP_IDENTIFIER:
+							return Optional.of(propertyIn("p.personId",
+							    DetachedCriteria.forClass(FhirSearchToken.class)
+							            .add(eq("tokenType", FhirSearchToken.IDENTIFIER))
+							            .add(eq("token", FhirUtils.normalizeSearchToken(patientToken.getValue())))
+							            .setProjection(property("personId"))));
+						case Patient.SP_GIVEN:
+							return handleSearchTokens("p.personId", patientToken.getValue(), false, FhirSearchToken.GIVEN);
+						case Patient.SP_FAMILY:
+							return handleSearchTokens("p.personId", patientToken.getValue(), false,
+							    FhirSearchToken.FAMILY);
+						case Patient.SP_NAME:
+							return handleAnySearchToken("p.personId", patientToken.getValue(), false, FhirSearchToken.GIVEN,
+							    FhirSearchToken.MIDDLE, FhirSearchToken.FAMILY);
+					}
+				} else if (patientToken.getChain() != null) {
 					switch (patientToken.getChain()) {
 						case Patient.SP_IDENTIFIER:
 							if (lacksAlias(criteria, "pi")) {
@@ -761,6 +868,68 @@ public abstract class BaseDao {
 		}
 	}
 	
+	/**
+	 * Generates a criterion matching people who have a search token starting with (or, if contains is
+	 * true, containing) each of the tokens in the supplied value. Search tokens are normalized, so this
+	 * comparison is case and accent insensitive and can use the index on the search token table.
+	 *
+	 * @param personIdProperty the property holding the id of the person being searched for
+	 * @param value the value being searched for
+	 * @param contains whether tokens may match anywhere rather than at the start of a search token
+	 * @param tokenTypes the types of search tokens to match, e.g. {@link FhirSearchToken#GIVEN}
+	 * @return the criterion or empty if the value contains no tokens
+	 */
+	protected Optional<Criterion> handleSearchTokens(@NotNull String personIdProperty, String value, boolean contains,
+	        String... tokenTypes) {
+		List<String> tokens = FhirUtils.normalizeSearchTokens(value);
+		if (tokens.isEmpty()) {
+			return Optional.empty();
+		}
+		
+		return Optional.of(and(tokens.stream()
+		        .map(token -> propertyIn(personIdProperty,
+		            DetachedCriteria.forClass(FhirSearchToken.class).add(in("tokenType", (Object[]) tokenTypes))
+		                    .add(like("token", token, contains ? MatchMode.ANYWHERE : MatchMode.START))
+		                    .setProjection(property("personId"))))
+		        .toArray(Criterion[]::new)));
+	}
+	
+	/**
+	 * Generates a criterion matching people who have a search token starting with (or, if contains is
+	 * true, containing) any of the tokens in the supplied value. This matches the way {@code name}
+	 * searches are handled without the search token index, where each word of the value is compared
+	 * separately against each part of a name.
+	 *
+	 * @param personIdProperty the property holding the id of the person being searched for
+	 * @param value the value being searched for
+	 * @param contains whether tokens may match anywhere rather than at the start of a search token
+	 * @param tokenTypes the types of search tokens to match, e.g. {@link FhirSearchToken#GIVEN}
+	 * @return the criterion or empty if the value contains no tokens
+	 */
+	protected Optional<Criterion> handleAnySearchToken(@NotNull String personIdProperty, String value, boolean contains,
+	        String... tokenTypes) {
+		List<String> tokens = FhirUtils.normalizeSearchTokens(value);
+		if (tokens.isEmpty()) {
+			return Optional.empty();
+		}
+		
+		MatchMode matchMode = contains ? MatchMode.ANYWHERE : MatchMode.START;
+		return Optional.of(propertyIn(personIdProperty,
+		    DetachedCriteria.forClass(FhirSearchToken.class).add(in("tokenType", (Object[]) tokenTypes))
+		            .add(or(tokens.stream().map(token -> like("token", token, matchMode)).toArray(Criterion[]::new)))
+		            .setProjection(property("personId"))));
+	}
+	
+	/**
+	 * This is intended to be overridden by subclasses which are able to check whether the search token
+	 * index has been enabled
+	 *
+	 * @return true if name and identifier searches should use the search token index
+	 */
+	protected boolean isSearchTokenIndexEnabled() {
+		return false;
+	}
+	
 	protected Optional<Criterion> handleCommonSearchParameters(List<PropParam<?>> theCommonParams) {
 		List<Optional<Criterion>> criterionList = new ArrayList<>();
 		
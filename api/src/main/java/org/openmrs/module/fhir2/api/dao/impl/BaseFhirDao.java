@@ -16,34 +16,58 @@ import static org.hibernate.criterion.Restrictions.isNull;
 import static org.hibernate.criterion.Restrictions.or;
 import static org.hibernate.criterion.Subqueries.propertyIn;
 
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import com.google.common.cache.Cache;
+import com.google.common.collect.Lists;
 import com.google.common.reflect.TypeToken;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.Criteria;
 import org.hibernate.Hibernate;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.CriteriaQuery;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.proxy.HibernateProxy;
 import org.openmrs.Auditable;
+import org.openmrs.GlobalProperty;
 import org.openmrs.OpenmrsObject;
 import org.openmrs.Retireable;
+import org.openmrs.User;
 import org.openmrs.Voidable;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.FhirLastUpdated;
+import org.openmrs.module.fhir2.FhirPreferredName;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.metrics.StageTracer;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
+import org.openmrs.module.fhir2.api.search.SearchResultCache;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.CachedGlobalProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * This is a base class for FHIR2 Dao objects providing default implementations for the
@@ -57,12 +81,21 @@ import org.springframework.transaction.annotation.Transactional;
 @SuppressWarnings("UnstableApiUsage")
 public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends BaseDao implements FhirDao<T> {
 	
+	/**
+	 * The maximum number of values bound to a single {@code in} clause by bulk operations
+	 */
+	protected static final int BATCH_SIZE = 1000;
+	
 	protected final TypeToken<T> typeToken;
 	
 	private final boolean isRetireable;
 	
 	private final boolean isVoidable;
 	
+	private final Cache<String, Serializable> idsByUuid;
+	
+	private final CachedGlobalProperties globalProperties = new CachedGlobalProperties();
+	
 	@Autowired
 	@Getter(AccessLevel.PUBLIC)
 	@Setter(AccessLevel.PUBLIC)
@@ -76,6 +109,9 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		
 		this.isRetireable = Retireable.class.isAssignableFrom(typeToken.getRawType());
 		this.isVoidable = Voidable.class.isAssignableFrom(typeToken.getRawType());
+		
+		FhirLastUpdatedInterceptor.track(typeToken.getRawType());
+		this.idsByUuid = FhirReferenceCacheInterceptor.getIdsByUuid(typeToken.getRawType());
 	}
 	
 	@Override
@@ -92,6 +128,36 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		return deproxyObject(result);
 	}
 	
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public T getReference(String uuid) {
+		Serializable id = idsByUuid.getIfPresent(uuid);
+		if (id == null) {
+			id = (Serializable) sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
+			        .add(eq("uuid", uuid)).setProjection(Projections.id()).uniqueResult();
+			
+			if (id == null) {
+				return null;
+			}
+			
+			// the id is only cached once the transaction commits, so ids of objects created in a transaction which is
+			// rolled back are never cached
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				Serializable loaded = id;
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+					
+					@Override
+					public void afterCommit() {
+						idsByUuid.put(uuid, loaded);
+					}
+				});
+			}
+		}
+		
+		return (T) sessionFactory.getCurrentSession().load(typeToken.getRawType(), id);
+	}
+	
 	@Override
 	public T createOrUpdate(T newEntry) {
 		if (newEntry.getUuid() == null) {
@@ -103,6 +169,38 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		return newEntry;
 	}
 	
+	@Override
+	public int voidObjects(List<String> uuids, String voidReason) {
+		if (!isVoidable) {
+			throw new UnsupportedOperationException(typeToken.getRawType().getSimpleName() + " cannot be voided");
+		}
+		
+		User voidedBy = Context.getAuthenticatedUser();
+		Date dateVoided = new Date();
+		
+		int voided = 0;
+		for (List<String> batch : Lists.partition(uuids, BATCH_SIZE)) {
+			voided += sessionFactory.getCurrentSession()
+			        .createQuery("update " + typeToken.getRawType().getName()
+			                + " set voided = true, voidedBy = :voidedBy, dateVoided = :dateVoided, voidReason = :voidReason"
+			                + " where voided = false and uuid in (:uuids)")
+			        .setParameter("voidedBy", voidedBy).setParameter("dateVoided", dateVoided)
+			        .setParameter("voidReason", voidReason).setParameterList("uuids", batch).executeUpdate();
+		}
+		
+		idsByUuid.invalidateAll(uuids);
+		SearchResultCache.invalidate(typeToken.getRawType());
+		
+		return voided;
+	}
+	
+	@Override
+	public void flushAndClear() {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		session.clear();
+	}
+	
 	@Override
 	public T delete(String uuid) {
 		T existing = get(uuid);
@@ -123,28 +221,60 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	}
 	
 	@Override
-	@SuppressWarnings("unchecked")
+	public Class<? super T> getEntityType() {
+		return typeToken.getRawType();
+	}
+	
+	@Override
 	public List<String> getSearchResultUuids(SearchParameterMap theParams) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
-		
+		return findSearchResultUuids(theParams, null);
+	}
+	
+	@Override
+	public List<String> getSearchResultUuids(SearchParameterMap theParams, int maxResults) {
+		return findSearchResultUuids(theParams, maxResults);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<String> findSearchResultUuids(SearchParameterMap theParams, Integer maxResults) {
+		String type = typeToken.getRawType().getSimpleName();
 		DetachedCriteria detachedCriteria = DetachedCriteria.forClass(typeToken.getRawType());
 		Criteria detachedExecutableCriteria = detachedCriteria.getExecutableCriteria(sessionFactory.getCurrentSession());
 		
-		if (isVoidable) {
-			handleVoidable(detachedExecutableCriteria);
-		} else if (isRetireable) {
-			handleRetireable(detachedExecutableCriteria);
+		try (StageTracer.Span ignored = StageTracer.start(Stage.CRITERIA, type)) {
+			if (isVoidable) {
+				handleVoidable(detachedExecutableCriteria);
+			} else if (isRetireable) {
+				handleRetireable(detachedExecutableCriteria);
+			}
+			
+			setupSearchParams(detachedExecutableCriteria, theParams);
+			handleSort(detachedExecutableCriteria, theParams.getSortSpec());
 		}
 		
-		setupSearchParams(detachedExecutableCriteria, theParams);
-		handleSort(detachedExecutableCriteria, theParams.getSortSpec());
-		
-		detachedCriteria.setProjection(Projections.property("uuid"));
-		
-		criteria.add(propertyIn("uuid", detachedCriteria));
-		criteria.setProjection(Projections.groupProperty("uuid"));
-		
-		return criteria.list();
+		try (StageTracer.Span span = StageTracer.start(Stage.SEARCH, type)) {
+			Criteria criteria;
+			// if no associations were joined, each row of the search corresponds to exactly one object, so the uuids
+			// can be read directly without de-duplicating them through a self-subquery
+			if (!hasJoins(detachedExecutableCriteria)) {
+				criteria = detachedExecutableCriteria.setProjection(Projections.property("uuid"));
+			} else {
+				detachedCriteria.setProjection(Projections.property("uuid"));
+				
+				criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
+				criteria.add(propertyIn("uuid", detachedCriteria));
+				criteria.setProjection(Projections.groupProperty("uuid"));
+			}
+			
+			if (maxResults != null) {
+				criteria.setMaxResults(maxResults);
+			}
+			
+			List<String> uuids = criteria.list();
+			
+			span.rows(uuids.size());
+			return uuids;
+		}
 	}
 	
 	@Override
@@ -153,16 +283,23 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	        int lastResult) {
 		List<String> selectedResources = matchingResourceUuids.subList(firstResult, lastResult);
 		
-		List<T> results = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
-		        .add(in("uuid", selectedResources)).list();
-		
-		results.sort(Comparator.comparingInt(r -> selectedResources.indexOf(r.getUuid())));
-		
-		return results.stream().map(this::deproxyObject).collect(Collectors.toList());
+		try (StageTracer.Span span = StageTracer.start(Stage.HYDRATION, typeToken.getRawType().getSimpleName())) {
+			List<T> results = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
+			        .add(in("uuid", selectedResources)).list();
+			
+			results.sort(Comparator.comparingInt(r -> selectedResources.indexOf(r.getUuid())));
+			
+			span.rows(results.size());
+			return results.stream().map(this::deproxyObject).collect(Collectors.toList());
+		}
 	}
 	
 	@Override
 	protected Optional<Criterion> handleLastUpdated(DateRangeParam param) {
+		if (isGlobalPropertyEnabled(FhirConstants.LAST_UPDATED_INDEX_ENABLED)) {
+			return handleLastUpdatedIndex(param);
+		}
+		
 		// @formatter:off
 		return Optional.of(or(toCriteriaArray(handleDateRange("dateChanged", param), Optional.of(
 		    and(toCriteriaArray(Stream.of(Optional.of(isNull("dateChanged")), handleDateRange("dateCreated", param))))))));
@@ -171,9 +308,91 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	
 	// Implementation of handleLastUpdated for "immutable" types, that is, those that cannot be changed
 	protected Optional<Criterion> handleLastUpdatedImmutable(DateRangeParam param) {
+		if (isGlobalPropertyEnabled(FhirConstants.LAST_UPDATED_INDEX_ENABLED)) {
+			return handleLastUpdatedIndex(param);
+		}
+		
 		return handleDateRange("dateCreated", param);
 	}
 	
+	/**
+	 * Handles {@code _lastUpdated} using the {@code fhir_last_updated} table, which is indexed on the
+	 * resource type and timestamp, instead of the {@code date_changed} and {@code date_created} columns
+	 * of the underlying table
+	 *
+	 * @param param the date range to search for
+	 * @return a criterion restricting the search to objects updated within the range
+	 */
+	protected Optional<Criterion> handleLastUpdatedIndex(DateRangeParam param) {
+		return handleDateRange("flu.lastUpdated", param).map(
+		    dateCriterion -> propertyIn("uuid", DetachedCriteria.forClass(FhirLastUpdated.class, "flu")
+		            .add(eq("flu.resourceType", typeToken.getRawType().getName())).add(dateCriterion)
+		            .setProjection(Projections.property("flu.resourceUuid"))));
+	}
+	
+	@Override
+	protected Collection<Order> paramToProps(SortState sortState) {
+		if (Constants.PARAM_LASTUPDATED.equalsIgnoreCase(sortState.getParameter())
+		        && isGlobalPropertyEnabled(FhirConstants.LAST_UPDATED_INDEX_ENABLED)) {
+			switch (sortState.getSortOrder()) {
+				case ASC:
+					return Collections.singleton(new LastUpdatedOrder(typeToken.getRawType().getName(), true,
+					        getLastUpdatedFallbackProperties()));
+				case DESC:
+					return Collections.singleton(new LastUpdatedOrder(typeToken.getRawType().getName(), false,
+					        getLastUpdatedFallbackProperties()));
+			}
+		}
+		
+		return super.paramToProps(sortState);
+	}
+	
+	/**
+	 * @return the properties holding the last updated time of objects without a row in the
+	 *         {@code fhir_last_updated} table, in the order they should be used
+	 */
+	private List<String> getLastUpdatedFallbackProperties() {
+		ClassMetadata metadata = sessionFactory.getClassMetadata(typeToken.getRawType());
+		List<String> propertyNames = metadata == null ? Collections.emptyList()
+		        : Arrays.asList(metadata.getPropertyNames());
+		
+		return Stream.of("dateChanged", "dateCreated").filter(propertyNames::contains).collect(Collectors.toList());
+	}
+	
+	/**
+	 * Restricts a join on person names to the single name used to represent each person, as recorded
+	 * in the {@code fhir_preferred_name} table. People without any names are retained.
+	 *
+	 * @param nameAlias the alias used for the join on person names
+	 * @return the restriction to apply to the search
+	 */
+	protected Criterion handlePreferredName(String nameAlias) {
+		return or(propertyIn(nameAlias + ".personNameId",
+		    DetachedCriteria.forClass(FhirPreferredName.class).setProjection(Projections.property("personNameId"))),
+		    isNull(nameAlias + ".personNameId"));
+	}
+	
+	@Override
+	protected boolean isSearchTokenIndexEnabled() {
+		return isGlobalPropertyEnabled(FhirConstants.SEARCH_TOKEN_INDEX_ENABLED);
+	}
+	
+	/**
+	 * Checks whether a boolean global property is set to true. The property is read directly so that
+	 * searching does not require the privilege to view global properties, and is cached for a minute.
+	 *
+	 * @param property the name of the global property
+	 * @return true if the global property is set to true
+	 */
+	protected boolean isGlobalPropertyEnabled(String property) {
+		return globalProperties.get(property, () -> {
+			Object value = sessionFactory.getCurrentSession().createCriteria(GlobalProperty.class)
+			        .add(eq("property", property)).setProjection(Projections.property("propertyValue")).uniqueResult();
+			
+			return "true".equalsIgnoreCase(value == null ? null : value.toString().trim());
+		});
+	}
+	
 	/**
 	 * This provides a default implementation for dealing with voidable objects. By default, voided
 	 * objects are excluded from searches, but not from get
@@ -241,4 +460,40 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		
 		return result;
 	}
+	
+	/**
+	 * Orders the results of a search by the time recorded in the {@code fhir_last_updated} table.
+	 * Objects without a row in the table, e.g. because they were created before the table was
+	 * populated, are still returned and ordered by the date they were last changed or created instead.
+	 */
+	private static final class LastUpdatedOrder extends Order {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final String resourceType;
+		
+		private final boolean ascending;
+		
+		private final List<String> fallbackProperties;
+		
+		private LastUpdatedOrder(String resourceType, boolean ascending, List<String> fallbackProperties) {
+			super("uuid", ascending);
+			this.resourceType = resourceType;
+			this.ascending = ascending;
+			this.fallbackProperties = fallbackProperties;
+		}
+		
+		@Override
+		public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) {
+			// the subquery is a lookup on the unique (resource_type, resource_uuid) key of fhir_last_updated
+			StringBuilder lastUpdated = new StringBuilder("coalesce((select flu.last_updated from fhir_last_updated flu ")
+			        .append("where flu.resource_type = '").append(resourceType).append("' and flu.resource_uuid = ")
+			        .append(criteriaQuery.getColumns("uuid", criteria)[0]).append(")");
+			for (String property : fallbackProperties) {
+				lastUpdated.append(", ").append(criteriaQuery.getColumns(property, criteria)[0]);
+			}
+			
+			return lastUpdated.append(") ").append(ascending ? "asc" : "desc").toString();
+		}
+	}
 }
@@ -0,0 +1,43 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+
+/**
+ * Base class for the Hibernate interceptors used to maintain the FHIR module's search tables.
+ * OpenMRS registers every {@link org.hibernate.Interceptor} bean with the session factory, which is
+ * why the session factory is looked up lazily here rather than injected.
+ */
+abstract class BaseFhirInterceptor extends EmptyInterceptor implements ApplicationContextAware {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private transient ApplicationContext applicationContext;
+	
+	private transient SessionFactory sessionFactory;
+	
+	@Override
+	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+		this.applicationContext = applicationContext;
+	}
+	
+	protected SessionFactory getSessionFactory() {
+		if (sessionFactory == null) {
+			sessionFactory = applicationContext.getBean("sessionFactory", SessionFactory.class);
+		}
+		
+		return sessionFactory;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Auditable;
+import org.openmrs.OpenmrsObject;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor which keeps the {@code fhir_last_updated} table current. Whenever an object
+ * of a type served by one of the FHIR Daos is saved, changed, voided or deleted, the corresponding
+ * row is written as part of the same flush, so it commits or rolls back along with the change
+ * itself. If the row cannot be written, the exception propagates out of the flush so that the
+ * change is rolled back rather than committed with a stale last updated time.
+ */
+@Component
+public class FhirLastUpdatedInterceptor extends BaseFhirInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final Set<Class<?>> TRACKED_TYPES = ConcurrentHashMap.newKeySet();
+	
+	private static final String UPDATE = "update fhir_last_updated set last_updated = ? "
+	        + "where resource_type = ? and resource_uuid = ?";
+	
+	private static final String INSERT = "insert into fhir_last_updated (resource_type, resource_uuid, last_updated) "
+	        + "values (?, ?, ?)";
+	
+	private static final String DELETE = "delete from fhir_last_updated where resource_type = ? and resource_uuid = ?";
+	
+	// maps each changed object to whether it was deleted
+	private final transient ThreadLocal<Map<Object, Boolean>> pendingChanges = ThreadLocal
+	        .withInitial(IdentityHashMap::new);
+	
+	/**
+	 * Registers a type whose last updated time should be recorded
+	 *
+	 * @param type the type of object exposed as a FHIR resource
+	 */
+	static void track(Class<?> type) {
+		TRACKED_TYPES.add(type);
+	}
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity, false);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordChange(entity, false);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity, true);
+	}
+	
+	@Override
+	public void postFlush(Iterator entities) {
+		Map<Object, Boolean> changes = pendingChanges.get();
+		if (changes.isEmpty()) {
+			return;
+		}
+		
+		try {
+			getSessionFactory().getCurrentSession().doWork(connection -> {
+				try (PreparedStatement update = connection.prepareStatement(UPDATE);
+				        PreparedStatement insert = connection.prepareStatement(INSERT);
+				        PreparedStatement delete = connection.prepareStatement(DELETE)) {
+					for (Map.Entry<Object, Boolean> change : changes.entrySet()) {
+						Object entity = change.getKey();
+						String uuid = ((OpenmrsObject) entity).getUuid();
+						if (uuid == null) {
+							continue;
+						}
+						
+						for (Class<?> type : TRACKED_TYPES) {
+							if (!type.isInstance(entity)) {
+								continue;
+							}
+							
+							if (change.getValue()) {
+								delete.setString(1, type.getName());
+								delete.setString(2, uuid);
+								delete.executeUpdate();
+								continue;
+							}
+							
+							Timestamp lastUpdated = new Timestamp(getLastUpdated((Auditable) entity).getTime());
+							
+							update.setTimestamp(1, lastUpdated);
+							update.setString(2, type.getName());
+							update.setString(3, uuid);
+							if (update.executeUpdate() == 0) {
+								insert.setString(1, type.getName());
+								insert.setString(2, uuid);
+								insert.setTimestamp(3, lastUpdated);
+								insert.executeUpdate();
+							}
+						}
+					}
+				}
+			});
+		}
+		finally {
+			changes.clear();
+		}
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		pendingChanges.remove();
+	}
+	
+	private void recordChange(Object entity, boolean deleted) {
+		if (!(entity instanceof OpenmrsObject) || !(entity instanceof Auditable)) {
+			return;
+		}
+		
+		Class<?> entityClass = Hibernate.getClass(entity);
+		for (Class<?> type : TRACKED_TYPES) {
+			if (type.isAssignableFrom(entityClass)) {
+				pendingChanges.get().merge(entity, deleted, Boolean::logicalOr);
+				return;
+			}
+		}
+	}
+	
+	private Date getLastUpdated(Auditable auditable) {
+		if (auditable.getDateChanged() != null) {
+			return auditable.getDateChanged();
+		}
+		
+		if (auditable.getDateCreated() != null) {
+			return auditable.getDateCreated();
+		}
+		
+		return new Date();
+	}
+}
@@ -13,6 +13,8 @@ import static org.hibernate.criterion.Restrictions.eq;
 
 import javax.validation.constraints.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
@@ -22,6 +24,7 @@ import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import com.google.common.collect.Lists;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Criterion;
 import org.hl7.fhir.r4.model.Observation;
@@ -87,6 +90,28 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		});
 	}
 	
+	@Override
+	@SuppressWarnings("unchecked")
+	public int voidObjects(List<String> uuids, String voidReason) {
+		// as when an obs is voided through the ObsService, the members of voided obs groups are voided with them
+		List<String> uuidsWithMembers = new ArrayList<>(uuids);
+		
+		List<String> groupUuids = uuids;
+		while (!groupUuids.isEmpty()) {
+			List<String> memberUuids = new ArrayList<>();
+			for (List<String> batch : Lists.partition(groupUuids, BATCH_SIZE)) {
+				memberUuids.addAll(getSessionFactory().getCurrentSession()
+				        .createQuery("select o.uuid from Obs o where o.voided = false and o.obsGroup.uuid in (:uuids)")
+				        .setParameterList("uuids", batch).list());
+			}
+			
+			uuidsWithMembers.addAll(memberUuids);
+			groupUuids = memberUuids;
+		}
+		
+		return super.voidObjects(uuidsWithMembers, voidReason);
+	}
+	
 	@Override
 	protected Optional<Criterion> handleLastUpdated(DateRangeParam param) {
 		return super.handleLastUpdatedImmutable(param);
@@ -15,27 +15,50 @@ import static org.hibernate.criterion.Restrictions.in;
 import static org.hibernate.criterion.Restrictions.or;
 import static org.hl7.fhir.r4.model.Patient.SP_DEATH_DATE;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.AccessLevel;
 import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
+import org.hibernate.Query;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.sql.JoinType;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.FhirIdentifierLock;
 import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.metrics.StageTracer;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Component
 @Setter(AccessLevel.PACKAGE)
 public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPatientDao {
 	
+	private final Cache<String, List<Integer>> identifierTypeIdsByName = CacheBuilder.newBuilder().maximumSize(1_000L)
+	        .expireAfterWrite(1, TimeUnit.HOURS).build();
+	
 	@Override
 	public Patient getPatientById(Integer id) {
 		return (Patient) getSessionFactory().getCurrentSession().createCriteria(Patient.class).add(eq("patientId", id))
@@ -65,6 +88,136 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 		}
 	}
 	
+	@Override
+	@Transactional(readOnly = true)
+	public List<Patient> getPatientsByIdentifier(String identifier, String identifierTypeName) {
+		return findByIdentifier("pi.patient", identifier, identifierTypeName);
+	}
+	
+	@Override
+	public List<String> getSearchResultUuids(SearchParameterMap theParams) {
+		// looking a patient up by a single identifier, e.g. from a barcode scan, is by far the most common search, so
+		// it is answered by a lookup on patient_identifier rather than through the generic search criteria
+		TokenParam identifier = getSingleIdentifier(theParams);
+		if (identifier == null) {
+			return super.getSearchResultUuids(theParams);
+		}
+		
+		try (StageTracer.Span span = StageTracer.start(Stage.SEARCH, Patient.class.getSimpleName())) {
+			List<String> uuids = findByIdentifier("pi.patient.uuid", identifier.getValue(),
+			    StringUtils.trimToNull(identifier.getSystem()));
+			
+			span.rows(uuids.size());
+			return uuids;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <R> List<R> findByIdentifier(String selection, String identifier, String identifierTypeName) {
+		String hql = "select distinct " + selection + " from PatientIdentifier pi where pi.identifier = :identifier "
+		        + "and pi.voided = false and pi.patient.voided = false";
+		
+		List<Integer> identifierTypeIds = null;
+		if (identifierTypeName != null) {
+			identifierTypeIds = getIdentifierTypeIds(identifierTypeName);
+			if (identifierTypeIds.isEmpty()) {
+				return Collections.emptyList();
+			}
+			
+			hql += " and pi.identifierType.id in (:identifierTypeIds)";
+		}
+		
+		Query query = getSessionFactory().getCurrentSession().createQuery(hql).setParameter("identifier", identifier);
+		if (identifierTypeIds != null) {
+			query.setParameterList("identifierTypeIds", identifierTypeIds);
+		}
+		
+		return query.list();
+	}
+	
+	@Override
+	public void lockIdentifier(String identifierTypeName, String identifier) {
+		String identifierType = identifierTypeName == null ? "" : identifierTypeName;
+		// values this long cannot be stored as patient identifiers or identifier type names, so there is no patient a
+		// concurrent request could create with them
+		if (identifierType.length() > FhirIdentifierLock.MAX_LENGTH || identifier.length() > FhirIdentifierLock.MAX_LENGTH) {
+			return;
+		}
+		
+		if (selectIdentifierLockForUpdate(identifierType, identifier) != null) {
+			return;
+		}
+		
+		insertIdentifierLock(identifierType, identifier);
+		if (selectIdentifierLockForUpdate(identifierType, identifier) == null) {
+			throw new IllegalStateException("Unable to lock identifier " + identifier);
+		}
+	}
+	
+	private FhirIdentifierLock selectIdentifierLockForUpdate(String identifierType, String identifier) {
+		return (FhirIdentifierLock) getSessionFactory().getCurrentSession()
+		        .createQuery("select fil from FhirIdentifierLock fil where fil.identifierType = :identifierType "
+		                + "and fil.identifier = :identifier")
+		        .setParameter("identifierType", identifierType).setParameter("identifier", identifier)
+		        .setLockOptions(new LockOptions(LockMode.PESSIMISTIC_WRITE)).uniqueResult();
+	}
+	
+	/**
+	 * Creates the lock row for an identifier in its own transaction, so that it is visible to, and can
+	 * be locked by, concurrent requests before the current transaction completes. If a concurrent
+	 * request creates the same row first, the unique constraint on the table rejects this one, which is
+	 * ignored.
+	 */
+	private void insertIdentifierLock(String identifierType, String identifier) {
+		FhirIdentifierLock lock = new FhirIdentifierLock();
+		lock.setIdentifierType(identifierType);
+		lock.setIdentifier(identifier);
+		
+		StatelessSession session = getSessionFactory().openStatelessSession();
+		Transaction transaction = session.beginTransaction();
+		try {
+			session.insert(lock);
+			transaction.commit();
+		}
+		catch (ConstraintViolationException e) {
+			transaction.rollback();
+		}
+		finally {
+			session.close();
+		}
+	}
+	
+	/**
+	 * Resolves the name of an identifier type to the ids of all identifier types with that name. As in
+	 * {@link #handleIdentifier(Criteria, TokenAndListParam)}, retired identifier types are included, so
+	 * that identifiers issued under a type before it was retired can still be found. Resolved ids are
+	 * only cached once the transaction that read them has committed, and are held for an hour, so a
+	 * renamed identifier type may continue to match for up to an hour.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Integer> getIdentifierTypeIds(String identifierTypeName) {
+		List<Integer> identifierTypeIds = identifierTypeIdsByName.getIfPresent(identifierTypeName);
+		if (identifierTypeIds != null) {
+			return identifierTypeIds;
+		}
+		
+		List<Integer> loaded = getSessionFactory().getCurrentSession()
+		        .createQuery("select pit.id from PatientIdentifierType pit where pit.name = :name order by pit.id")
+		        .setParameter("name", identifierTypeName).list();
+		
+		if (!loaded.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCommit() {
+					identifierTypeIdsByName.put(identifierTypeName, loaded);
+				}
+			});
+		}
+		
+		return loaded;
+	}
+	
 	@Override
 	protected void setupSearchParams(Criteria criteria, SearchParameterMap theParams) {
 		theParams.getParameters().forEach(entry -> {
@@ -0,0 +1,212 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.module.fhir2.FhirSearchToken;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor which keeps the per-person search tables current whenever a person's names
+ * or identifiers change. Affected people are recomputed as part of the same flush, so the tables
+ * commit or roll back along with the change itself. If the tables cannot be updated, the exception
+ * propagates out of the flush so that the change is rolled back rather than leaving the tables out
+ * of date.
+ */
+@Component
+public class FhirPersonIndexInterceptor extends BaseFhirInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final String DELETE_PREFERRED_NAME = "delete from fhir_preferred_name where person_id = ?";
+	
+	private static final String SELECT_PREFERRED_NAME = "select min(person_name_id) from person_name "
+	        + "where person_id = ? and voided = ? and preferred = ?";
+	
+	private static final String INSERT_PREFERRED_NAME = "insert into fhir_preferred_name (person_id, person_name_id) "
+	        + "values (?, ?)";
+	
+	private static final String DELETE_SEARCH_TOKENS = "delete from fhir_search_token where person_id = ?";
+	
+	private static final String SELECT_NAMES = "select given_name, middle_name, family_name from person_name "
+	        + "where person_id = ? and voided = ?";
+	
+	private static final String SELECT_IDENTIFIERS = "select identifier from patient_identifier "
+	        + "where patient_id = ? and voided = ?";
+	
+	private static final String INSERT_SEARCH_TOKEN = "insert into fhir_search_token (person_id, token_type, token) "
+	        + "values (?, ?, ?)";
+	
+	private final transient ThreadLocal<Set<Person>> pendingPeople = ThreadLocal
+	        .withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordChange(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity);
+	}
+	
+	@Override
+	public void postFlush(Iterator entities) {
+		Set<Person> people = pendingPeople.get();
+		if (people.isEmpty()) {
+			return;
+		}
+		
+		try {
+			getSessionFactory().getCurrentSession().doWork(connection -> {
+				for (Person person : people) {
+					if (person.getPersonId() != null) {
+						updatePreferredName(connection, person.getPersonId());
+						updateSearchTokens(connection, person.getPersonId());
+					}
+				}
+			});
+		}
+		finally {
+			people.clear();
+		}
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		pendingPeople.remove();
+	}
+	
+	private void recordChange(Object entity) {
+		if (entity instanceof PersonName && ((PersonName) entity).getPerson() != null) {
+			pendingPeople.get().add(((PersonName) entity).getPerson());
+		} else if (entity instanceof PatientIdentifier && ((PatientIdentifier) entity).getPatient() != null) {
+			pendingPeople.get().add(((PatientIdentifier) entity).getPatient());
+		}
+	}
+	
+	private void updatePreferredName(Connection connection, Integer personId) throws SQLException {
+		try (PreparedStatement delete = connection.prepareStatement(DELETE_PREFERRED_NAME)) {
+			delete.setInt(1, personId);
+			delete.executeUpdate();
+		}
+		
+		Integer personNameId = selectPreferredName(connection, personId, true);
+		if (personNameId == null) {
+			personNameId = selectPreferredName(connection, personId, false);
+		}
+		
+		if (personNameId != null) {
+			try (PreparedStatement insert = connection.prepareStatement(INSERT_PREFERRED_NAME)) {
+				insert.setInt(1, personId);
+				insert.setInt(2, personNameId);
+				insert.executeUpdate();
+			}
+		}
+	}
+	
+	private Integer selectPreferredName(Connection connection, Integer personId, boolean preferred) throws SQLException {
+		try (PreparedStatement select = connection.prepareStatement(SELECT_PREFERRED_NAME)) {
+			select.setInt(1, personId);
+			select.setBoolean(2, false);
+			select.setBoolean(3, preferred);
+			
+			try (ResultSet resultSet = select.executeQuery()) {
+				if (resultSet.next()) {
+					int personNameId = resultSet.getInt(1);
+					return resultSet.wasNull() ? null : personNameId;
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	private void updateSearchTokens(Connection connection, Integer personId) throws SQLException {
+		try (PreparedStatement delete = connection.prepareStatement(DELETE_SEARCH_TOKENS)) {
+			delete.setInt(1, personId);
+			delete.executeUpdate();
+		}
+		
+		Set<String> givenTokens = new LinkedHashSet<>();
+		Set<String> middleTokens = new LinkedHashSet<>();
+		Set<String> familyTokens = new LinkedHashSet<>();
+		try (PreparedStatement select = connection.prepareStatement(SELECT_NAMES)) {
+			select.setInt(1, personId);
+			select.setBoolean(2, false);
+			
+			try (ResultSet resultSet = select.executeQuery()) {
+				while (resultSet.next()) {
+					givenTokens.addAll(FhirUtils.normalizeSearchTokens(resultSet.getString(1)));
+					middleTokens.addAll(FhirUtils.normalizeSearchTokens(resultSet.getString(2)));
+					familyTokens.addAll(FhirUtils.normalizeSearchTokens(resultSet.getString(3)));
+				}
+			}
+		}
+		
+		Set<String> identifierTokens = new LinkedHashSet<>();
+		try (PreparedStatement select = connection.prepareStatement(SELECT_IDENTIFIERS)) {
+			select.setInt(1, personId);
+			select.setBoolean(2, false);
+			
+			try (ResultSet resultSet = select.executeQuery()) {
+				while (resultSet.next()) {
+					String identifier = FhirUtils.normalizeSearchToken(resultSet.getString(1));
+					if (StringUtils.isNotEmpty(identifier)) {
+						identifierTokens.add(identifier);
+					}
+				}
+			}
+		}
+		
+		try (PreparedStatement insert = connection.prepareStatement(INSERT_SEARCH_TOKEN)) {
+			addSearchTokens(insert, personId, FhirSearchToken.GIVEN, givenTokens);
+			addSearchTokens(insert, personId, FhirSearchToken.MIDDLE, middleTokens);
+			addSearchTokens(insert, personId, FhirSearchToken.FAMILY, familyTokens);
+			addSearchTokens(insert, personId, FhirSearchToken.IDENTIFIER, identifierTokens);
+			insert.executeBatch();
+		}
+	}
+	
+	private void addSearchTokens(PreparedStatement insert, Integer personId, String tokenType, Set<String> tokens)
+	        throws SQLException {
+		for (String token : tokens) {
+			insert.setInt(1, personId);
+			insert.setString(2, tokenType);
+			insert.setString(3, token);
+			insert.addBatch();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.type.Type;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Retireable;
+import org.openmrs.Voidable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor which maintains the caches of primary keys used by
+ * {@link BaseFhirDao#getReference(String)}. Cached ids are evicted whenever the corresponding object
+ * is voided, retired or purged, so that references are only attached to objects which still exist.
+ */
+@Component
+public class FhirReferenceCacheInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final long MAXIMUM_CACHED_IDS = 10_000L;
+	
+	private static final Map<Class<?>, Cache<String, Serializable>> ID_CACHES = new ConcurrentHashMap<>();
+	
+	/**
+	 * Gets the cache mapping uuids to primary keys for the given type, creating it if necessary
+	 *
+	 * @param type the type of object exposed as a FHIR resource
+	 * @return the cache of ids for that type
+	 */
+	static Cache<String, Serializable> getIdsByUuid(Class<?> type) {
+		return ID_CACHES.computeIfAbsent(type,
+		    t -> CacheBuilder.newBuilder().maximumSize(MAXIMUM_CACHED_IDS).<String, Serializable> build());
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		if ((entity instanceof Voidable && Boolean.TRUE.equals(((Voidable) entity).getVoided()))
+		        || (entity instanceof Retireable && Boolean.TRUE.equals(((Retireable) entity).getRetired()))) {
+			evict(entity);
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		evict(entity);
+	}
+	
+	private void evict(Object entity) {
+		if (!(entity instanceof OpenmrsObject) || ((OpenmrsObject) entity).getUuid() == null) {
+			return;
+		}
+		
+		Class<?> entityClass = Hibernate.getClass(entity);
+		ID_CACHES.forEach((type, cache) -> {
+			if (type.isAssignableFrom(entityClass)) {
+				cache.invalidate(((OpenmrsObject) entity).getUuid());
+			}
+		});
+	}
+}
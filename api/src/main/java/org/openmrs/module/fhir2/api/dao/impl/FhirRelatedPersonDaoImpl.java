@@ -95,22 +95,26 @@ public class FhirRelatedPersonDaoImpl extends BaseFhirDao<Relationship> implemen
 				criteria.createAlias("m.names", "pn", JoinType.LEFT_OUTER_JOIN);
 			}
 			
-			criteria.add(and(eq("pn.voided", false), or(
-			    and(eq("pn.preferred", true),
-			        Subqueries.propertyEq("pn.personNameId",
-			            DetachedCriteria.forClass(PersonName.class, "pn1").add(eq("pn1.preferred", true))
-			                    .add(sqlRestriction(String.format("pn1_.person_id = %s.person_a", "this_")))
-			                    .setProjection(Projections.min("pn1.personNameId")))),
-			    and(Subqueries.notExists(DetachedCriteria.forClass(PersonName.class, "pn2").add(eq("pn2.preferred", true))
-			            // WARNING this is fragile
-			            .add(sqlRestriction(String.format("pn2_.person_id = %s.person_a", "this_")))
-			            .setProjection(Projections.id())),
-			        Subqueries.propertyEq("pn.personNameId",
-			            DetachedCriteria.forClass(PersonName.class, "pn3").add(eq("pn3.preferred", false))
-			                    // WARNING this is fragile
-			                    .add(sqlRestriction(String.format("pn3_.person_id = %s.person_a", "this_")))
-			                    .setProjection(Projections.min("pn3.personNameId")))),
-			    isNull("pn.personNameId"))));
+			if (isGlobalPropertyEnabled(FhirConstants.PREFERRED_NAME_INDEX_ENABLED)) {
+				criteria.add(handlePreferredName("pn"));
+			} else {
+				criteria.add(and(eq("pn.voided", false), or(
+				    and(eq("pn.preferred", true),
+				        Subqueries.propertyEq("pn.personNameId",
+				            DetachedCriteria.forClass(PersonName.class, "pn1").add(eq("pn1.preferred", true))
+				                    .add(sqlRestriction(String.format("pn1_.person_id = %s.person_a", "this_")))
+				                    .setProjection(Projections.min("pn1.personNameId")))),
+				    and(Subqueries.notExists(DetachedCriteria.forClass(PersonName.class, "pn2").add(eq("pn2.preferred", true))
+				            // WARNING this is fragile
+				            .add(sqlRestriction(String.format("pn2_.person_id = %s.person_a", "this_")))
+				            .setProjection(Projections.id())),
+				        Subqueries.propertyEq("pn.personNameId",
+				            DetachedCriteria.forClass(PersonName.class, "pn3").add(eq("pn3.preferred", false))
+				                    // WARNING this is fragile
+				                    .add(sqlRestriction(String.format("pn3_.person_id = %s.person_a", "this_")))
+				                    .setProjection(Projections.min("pn3.personNameId")))),
+				    isNull("pn.personNameId"))));
+			}
 			
 			String[] properties = null;
 			switch (param) {
@@ -0,0 +1,39 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+import org.openmrs.module.fhir2.api.metrics.RequestStatistics;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor which counts the statements prepared and entities loaded while a FHIR
+ * request is handled, see {@link RequestStatistics}
+ */
+@Component
+public class FhirRequestStatisticsInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	@Override
+	public String onPrepareStatement(String sql) {
+		RequestStatistics.statementPrepared(sql);
+		return sql;
+	}
+	
+	@Override
+	public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		RequestStatistics.entityLoaded();
+		return false;
+	}
+}
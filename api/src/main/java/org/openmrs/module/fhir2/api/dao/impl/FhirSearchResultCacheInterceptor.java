@@ -0,0 +1,69 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.module.fhir2.api.search.SearchResultCache;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor which discards cached search results whenever an object of the searched
+ * type is saved, changed or deleted. Results are discarded both when the change is flushed and when
+ * its transaction completes, so that searches run by other transactions before the change was
+ * committed are not cached either.
+ */
+@Component
+public class FhirSearchResultCacheInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final transient ThreadLocal<Set<Class<?>>> changedTypes = ThreadLocal.withInitial(HashSet::new);
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordChange(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity);
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		try {
+			changedTypes.get().forEach(SearchResultCache::invalidate);
+		}
+		finally {
+			changedTypes.remove();
+		}
+	}
+	
+	private void recordChange(Object entity) {
+		Class<?> entityClass = Hibernate.getClass(entity);
+		SearchResultCache.invalidate(entityClass);
+		changedTypes.get().add(entityClass);
+	}
+}
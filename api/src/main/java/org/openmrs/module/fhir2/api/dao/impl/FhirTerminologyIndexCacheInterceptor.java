@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.module.fhir2.FhirConceptSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor which discards the code resolutions cached by
+ * {@link FhirTerminologyIndexDaoImpl} whenever a concept, concept mapping, reference term or FHIR
+ * concept source is saved, changed or deleted. As with {@link FhirSearchResultCacheInterceptor},
+ * the cache is cleared both when the change is flushed and when its transaction completes, so that
+ * resolutions read by other transactions before the change was committed are not kept either.
+ */
+@Component
+public class FhirTerminologyIndexCacheInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final transient ThreadLocal<Boolean> terminologyChanged = ThreadLocal.withInitial(() -> Boolean.FALSE);
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordChange(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordChange(entity);
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		try {
+			if (terminologyChanged.get()) {
+				FhirTerminologyIndexDaoImpl.invalidate();
+			}
+		}
+		finally {
+			terminologyChanged.remove();
+		}
+	}
+	
+	private void recordChange(Object entity) {
+		if (entity instanceof Concept || entity instanceof ConceptMap || entity instanceof ConceptReferenceTerm
+		        || entity instanceof FhirConceptSource) {
+			FhirTerminologyIndexDaoImpl.invalidate();
+			terminologyChanged.set(Boolean.TRUE);
+		}
+	}
+}
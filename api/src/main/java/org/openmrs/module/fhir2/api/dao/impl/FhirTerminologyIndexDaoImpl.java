@@ -0,0 +1,131 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hibernate.criterion.Projections.property;
+import static org.hibernate.criterion.Restrictions.eq;
+import static org.hibernate.criterion.Restrictions.in;
+import static org.hibernate.criterion.Subqueries.propertyEq;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
+import org.openmrs.ConceptMap;
+import org.openmrs.module.fhir2.FhirConceptSource;
+import org.openmrs.module.fhir2.api.dao.FhirTerminologyIndexDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirTerminologyIndexDaoImpl implements FhirTerminologyIndexDao {
+	
+	private static final long MAXIMUM_CACHED_CODES = 10_000L;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private static final Cache<Pair<String, String>, Set<Integer>> CONCEPT_IDS_BY_CODE = CacheBuilder.newBuilder()
+	        .maximumSize(MAXIMUM_CACHED_CODES).expireAfterWrite(1, TimeUnit.HOURS).build();
+	
+	/**
+	 * Discards all cached code resolutions. Called by {@link FhirTerminologyIndexCacheInterceptor}
+	 * whenever a concept, concept mapping, reference term or FHIR concept source changes.
+	 */
+	static void invalidate() {
+		CONCEPT_IDS_BY_CODE.invalidateAll();
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public Set<Integer> getConceptIdsBySystemAndCodes(String system, Collection<String> codes) {
+		Set<Pair<String, String>> keys = codes.stream().map(code -> Pair.of(system, code))
+		        .collect(Collectors.toCollection(LinkedHashSet::new));
+		
+		Map<Pair<String, String>, Set<Integer>> resolved = new HashMap<>(CONCEPT_IDS_BY_CODE.getAllPresent(keys));
+		
+		List<String> unresolvedCodes = keys.stream().filter(key -> !resolved.containsKey(key)).map(Pair::getRight)
+		        .collect(Collectors.toList());
+		
+		if (!unresolvedCodes.isEmpty()) {
+			Map<Pair<String, String>, Set<Integer>> loaded = new HashMap<>();
+			unresolvedCodes.forEach(code -> loaded.put(Pair.of(system, code), new HashSet<>()));
+			
+			DetachedCriteria conceptSourceCriteria = DetachedCriteria.forClass(FhirConceptSource.class)
+			        .add(eq("url", system)).setProjection(property("conceptSource"));
+			
+			List<Object[]> results = sessionFactory.getCurrentSession().createCriteria(ConceptMap.class)
+			        .createAlias("concept", "c").createAlias("conceptReferenceTerm", "crt")
+			        .add(propertyEq("crt.conceptSource", conceptSourceCriteria)).add(in("crt.code", unresolvedCodes))
+			        .setProjection(Projections.projectionList().add(property("crt.code")).add(property("c.conceptId")))
+			        .list();
+			
+			for (Object[] result : results) {
+				String code = (String) result[0];
+				Integer conceptId = (Integer) result[1];
+				
+				// the database may match codes case-insensitively, so the returned code may differ from the one requested
+				unresolvedCodes.stream().filter(code::equalsIgnoreCase)
+				        .forEach(requestedCode -> loaded.get(Pair.of(system, requestedCode)).add(conceptId));
+			}
+			
+			resolved.putAll(loaded);
+			cacheAfterCommit(new HashMap<>(loaded));
+		}
+		
+		return resolved.values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+	}
+	
+	@Override
+	public void clearCache() {
+		invalidate();
+	}
+	
+	/**
+	 * Only caches resolutions read by a transaction that actually commits so that we never cache
+	 * mappings that are rolled back. Codes which did not resolve to any concept are not cached, so
+	 * that a mapping added later is found by the next search.
+	 */
+	private void cacheAfterCommit(Map<Pair<String, String>, Set<Integer>> loaded) {
+		loaded.values().removeIf(Set::isEmpty);
+		if (loaded.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			
+			@Override
+			public void afterCommit() {
+				CONCEPT_IDS_BY_CODE.putAll(loaded);
+			}
+		});
+	}
+}
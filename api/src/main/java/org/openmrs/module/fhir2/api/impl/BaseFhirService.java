@@ -9,10 +9,17 @@
  */
 package org.openmrs.module.fhir2.api.impl;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
+import ca.uhn.fhir.util.UrlUtil;
 import com.google.common.reflect.TypeToken;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.openmrs.Auditable;
@@ -20,8 +27,11 @@ import org.openmrs.OpenmrsObject;
 import org.openmrs.Retireable;
 import org.openmrs.Voidable;
 import org.openmrs.api.ValidationException;
+import org.openmrs.module.fhir2.api.ConditionalResult;
 import org.openmrs.module.fhir2.api.FhirService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.metrics.StageTracer;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
 import org.openmrs.module.fhir2.api.translators.OpenmrsFhirTranslator;
 import org.openmrs.module.fhir2.api.translators.UpdatableOpenmrsTranslator;
 import org.openmrs.validator.ValidateUtil;
@@ -54,58 +64,86 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 			        "Resource of type " + resourceClass.getSimpleName() + " with ID " + uuid + " is gone/deleted");
 		}
 		
-		return getTranslator().toFhirResource(openmrsObj);
+		try (StageTracer.Span ignored = StageTracer.start(Stage.TRANSLATION, resourceClass.getSimpleName()).rows(1)) {
+			return getTranslator().toFhirResource(openmrsObj);
+		}
 	}
 	
 	@Override
 	public T create(T newResource) {
-		if (newResource == null) {
-			throw new InvalidRequestException("A resource of type " + resourceClass.getSimpleName() + " must be supplied");
-		}
+		return getTranslator().toFhirResource(createObject(newResource));
+	}
+	
+	@Override
+	public String createMinimal(T newResource) {
+		return createObject(newResource).getUuid();
+	}
+	
+	@Override
+	public Map<Integer, String> createBatch(List<T> newResources) {
+		Map<Integer, String> errors = new LinkedHashMap<>();
 		
-		U openmrsObj = getTranslator().toOpenmrsType(newResource);
+		for (int i = 0; i < newResources.size(); i++) {
+			U openmrsObj;
+			try {
+				openmrsObj = getTranslator().toOpenmrsType(newResources.get(i));
+				validateObject(openmrsObj);
+			}
+			catch (RuntimeException e) {
+				errors.put(i, e.getMessage());
+				continue;
+			}
+			
+			getDao().createOrUpdate(openmrsObj);
+		}
 		
-		validateObject(openmrsObj);
+		getDao().flushAndClear();
 		
-		return getTranslator().toFhirResource(getDao().createOrUpdate(openmrsObj));
+		return errors;
 	}
 	
 	@Override
-	@SuppressWarnings("unchecked")
 	public T update(String uuid, T updatedResource) {
-		if (uuid == null) {
-			throw new InvalidRequestException("Uuid cannot be null.");
-		}
+		return getTranslator().toFhirResource(updateObject(uuid, updatedResource));
+	}
+	
+	@Override
+	public void updateMinimal(String uuid, T updatedResource) {
+		updateObject(uuid, updatedResource);
+	}
+	
+	@Override
+	public ConditionalResult<T> createConditional(T newResource, String conditionalUrl, boolean minimal) {
+		U existingObject = getConditionalMatch(conditionalUrl);
 		
-		if (updatedResource.getId() == null) {
-			throw new InvalidRequestException(
-			        String.format("%s resource is missing id.", updatedResource.getClass().getSimpleName()));
+		if (existingObject != null) {
+			return toConditionalResult(existingObject, false, minimal);
 		}
 		
-		if (!updatedResource.getId().equals(uuid)) {
-			throw new InvalidRequestException(
-			        String.format("%s id does not match resource id.", updatedResource.getClass().getSimpleName()));
+		return toConditionalResult(createObject(newResource), true, minimal);
+	}
+	
+	@Override
+	public ConditionalResult<T> updateConditional(T updatedResource, String conditionalUrl, boolean minimal) {
+		if (updatedResource == null) {
+			throw new InvalidRequestException("A resource of type " + resourceClass.getSimpleName() + " must be supplied");
 		}
 		
-		U existingObject = getDao().get(uuid);
+		U existingObject = getConditionalMatch(conditionalUrl);
 		
 		if (existingObject == null) {
-			throw resourceNotFound(uuid);
+			return toConditionalResult(createObject(updatedResource), true, minimal);
 		}
 		
-		OpenmrsFhirTranslator<U, T> translator = getTranslator();
-		
-		U updatedObject;
-		if (translator instanceof UpdatableOpenmrsTranslator) {
-			UpdatableOpenmrsTranslator<U, T> updatableOpenmrsTranslator = (UpdatableOpenmrsTranslator<U, T>) translator;
-			updatedObject = updatableOpenmrsTranslator.toOpenmrsType(existingObject, updatedResource);
-		} else {
-			updatedObject = translator.toOpenmrsType(updatedResource);
+		String idPart = updatedResource.getIdElement().getIdPart();
+		if (idPart != null && !idPart.equals(existingObject.getUuid())) {
+			throw new InvalidRequestException(
+			        String.format("%s id does not match resource id.", updatedResource.getClass().getSimpleName()));
 		}
 		
-		validateObject(updatedObject);
+		updatedResource.setId(existingObject.getUuid());
 		
-		return translator.toFhirResource(getDao().createOrUpdate(updatedObject));
+		return toConditionalResult(updateObject(existingObject.getUuid(), updatedResource), false, minimal);
 	}
 	
 	@Override
@@ -175,6 +213,109 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 		}
 	}
 	
+	/**
+	 * Finds the existing objects matching the parameters of a conditional create or update. By default
+	 * only {@code _id} is supported; subclasses override this to resolve business identifiers, but
+	 * must use an indexed lookup as this runs as part of every conditional write. As the match and the
+	 * write are separate statements, subclasses should also take a lock on the condition, e.g. on the
+	 * identifier value, that is held until the transaction completes; otherwise two concurrent requests
+	 * can both find no match and both create an object. Matches on {@code _id} are not locked.
+	 *
+	 * @param name the name of the search parameter
+	 * @param value the value of the search parameter
+	 * @return the matching objects, which should not include voided or retired objects
+	 */
+	protected List<U> getConditionalMatches(String name, String value) {
+		if (!"_id".equals(name)) {
+			throw new InvalidRequestException(
+			        "Conditional operations on " + resourceClass.getSimpleName() + " do not support the parameter " + name);
+		}
+		
+		U openmrsObj = getDao().get(value);
+		
+		if (openmrsObj == null || isVoided(openmrsObj) || isRetired(openmrsObj)) {
+			return Collections.emptyList();
+		}
+		
+		return Collections.singletonList(openmrsObj);
+	}
+	
+	private U createObject(T newResource) {
+		if (newResource == null) {
+			throw new InvalidRequestException("A resource of type " + resourceClass.getSimpleName() + " must be supplied");
+		}
+		
+		U openmrsObj = getTranslator().toOpenmrsType(newResource);
+		
+		validateObject(openmrsObj);
+		
+		return getDao().createOrUpdate(openmrsObj);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private U updateObject(String uuid, T updatedResource) {
+		if (uuid == null) {
+			throw new InvalidRequestException("Uuid cannot be null.");
+		}
+		
+		if (updatedResource.getId() == null) {
+			throw new InvalidRequestException(
+			        String.format("%s resource is missing id.", updatedResource.getClass().getSimpleName()));
+		}
+		
+		if (!updatedResource.getId().equals(uuid)) {
+			throw new InvalidRequestException(
+			        String.format("%s id does not match resource id.", updatedResource.getClass().getSimpleName()));
+		}
+		
+		U existingObject = getDao().get(uuid);
+		
+		if (existingObject == null) {
+			throw resourceNotFound(uuid);
+		}
+		
+		OpenmrsFhirTranslator<U, T> translator = getTranslator();
+		
+		U updatedObject;
+		if (translator instanceof UpdatableOpenmrsTranslator) {
+			UpdatableOpenmrsTranslator<U, T> updatableOpenmrsTranslator = (UpdatableOpenmrsTranslator<U, T>) translator;
+			updatedObject = updatableOpenmrsTranslator.toOpenmrsType(existingObject, updatedResource);
+		} else {
+			updatedObject = translator.toOpenmrsType(updatedResource);
+		}
+		
+		validateObject(updatedObject);
+		
+		return getDao().createOrUpdate(updatedObject);
+	}
+	
+	private ConditionalResult<T> toConditionalResult(U openmrsObj, boolean created, boolean minimal) {
+		return new ConditionalResult<>(openmrsObj.getUuid(), minimal ? null : getTranslator().toFhirResource(openmrsObj),
+		        created);
+	}
+	
+	private U getConditionalMatch(String conditionalUrl) {
+		if (conditionalUrl == null) {
+			throw new InvalidRequestException("A conditional url must be supplied");
+		}
+		
+		Map<String, String[]> params = UrlUtil.parseQueryString(conditionalUrl.substring(conditionalUrl.indexOf('?') + 1));
+		if (params.size() != 1 || params.values().iterator().next().length != 1) {
+			throw new InvalidRequestException("Conditional operations on " + resourceClass.getSimpleName()
+			        + " must specify exactly one search parameter, but got " + conditionalUrl);
+		}
+		
+		Map.Entry<String, String[]> param = params.entrySet().iterator().next();
+		List<U> matches = getConditionalMatches(param.getKey(), param.getValue()[0]);
+		
+		if (matches.size() > 1) {
+			throw new PreconditionFailedException("Multiple resources of type " + resourceClass.getSimpleName()
+			        + " match the conditional url " + conditionalUrl);
+		}
+		
+		return matches.isEmpty() ? null : matches.get(0);
+	}
+	
 	private ResourceNotFoundException resourceNotFound(String uuid) {
 		return new ResourceNotFoundException(
 		        "Resource of type " + resourceClass.getSimpleName() + " with ID " + uuid + " is not known");
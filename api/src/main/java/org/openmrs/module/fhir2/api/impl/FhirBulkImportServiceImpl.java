@@ -0,0 +1,241 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.PayloadTooLargeException;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirBulkImportService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirService;
+import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.PrivilegeConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deliberately not transactional: each chunk is written in its own transaction by
+ * {@link FhirService#createBatch(List)} so that a failure only rolls back the current chunk
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirBulkImportServiceImpl implements FhirBulkImportService {
+	
+	private static final int DEFAULT_CHUNK_SIZE = 500;
+	
+	private static final int DEFAULT_MAXIMUM_FILE_SIZE_MB = 100;
+	
+	private static final int MAX_REPORTED_ERRORS = 1000;
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	private FhirContext fhirContext;
+	
+	@Override
+	public <T extends IAnyResource> OperationOutcome importResources(FhirService<T> service, Class<T> resourceType,
+	        String path) {
+		if (!hasImportPrivilege()) {
+			throw new ForbiddenOperationException(
+			        "Importing resources requires the " + PrivilegeConstants.VIEW_ADMIN_FUNCTIONS + " privilege");
+		}
+		
+		File file = getImportFile(path);
+		
+		// the import runs on the request thread, so larger files have to be split before they are imported
+		long maximumFileSize = globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_MAXIMUM_FILE_SIZE,
+		    DEFAULT_MAXIMUM_FILE_SIZE_MB) * 1024L * 1024L;
+		if (file.length() > maximumFileSize) {
+			throw new PayloadTooLargeException(
+			        "The file " + path + " is larger than the maximum of " + maximumFileSize / (1024L * 1024L) + " MB");
+		}
+		
+		int chunkSize = Math.max(1,
+		    globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_CHUNK_SIZE, DEFAULT_CHUNK_SIZE));
+		
+		ImportProgress progress = new ImportProgress(resourceType.getSimpleName(), path);
+		IParser parser = fhirContext.newJsonParser();
+		
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			List<T> chunk = new ArrayList<>(chunkSize);
+			List<Integer> chunkLineNumbers = new ArrayList<>(chunkSize);
+			
+			int lineNumber = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				
+				if (StringUtils.isBlank(line)) {
+					continue;
+				}
+				
+				try {
+					chunk.add(parser.parseResource(resourceType, line));
+					chunkLineNumbers.add(lineNumber);
+				}
+				catch (DataFormatException e) {
+					progress.failed(lineNumber, e.getMessage());
+				}
+				
+				if (chunk.size() >= chunkSize) {
+					writeChunk(service, chunk, chunkLineNumbers, progress);
+					chunk.clear();
+					chunkLineNumbers.clear();
+				}
+			}
+			
+			if (!chunk.isEmpty()) {
+				writeChunk(service, chunk, chunkLineNumbers, progress);
+			}
+		}
+		catch (IOException e) {
+			throw new InternalErrorException("Could not read " + path, e);
+		}
+		
+		log.info("Finished importing {} {} resources from {}, {} lines failed", progress.imported, progress.resourceType,
+		    path, progress.failed);
+		
+		return progress.toOperationOutcome();
+	}
+	
+	/**
+	 * @return true if the current user may import files from the server, which is restricted to
+	 *         administrators as the operation reads files from the application data directory
+	 */
+	protected boolean hasImportPrivilege() {
+		return Context.hasPrivilege(PrivilegeConstants.VIEW_ADMIN_FUNCTIONS);
+	}
+	
+	/**
+	 * @return the directory files are imported from, so that the operation cannot be used to read
+	 *         arbitrary files on the server
+	 */
+	protected File getImportDirectory() {
+		return new File(OpenmrsUtil.getApplicationDataDirectory(), "fhir2" + File.separator + "import");
+	}
+	
+	private File getImportFile(String path) {
+		if (StringUtils.isBlank(path)) {
+			throw new InvalidRequestException("The path of the file to import must be supplied");
+		}
+		
+		File file;
+		try {
+			File directory = getImportDirectory().getCanonicalFile();
+			file = new File(directory, path).getCanonicalFile();
+			
+			if (!file.toPath().startsWith(directory.toPath())) {
+				throw new InvalidRequestException("Files can only be imported from the import directory");
+			}
+		}
+		catch (IOException e) {
+			throw new InvalidRequestException("Invalid path " + path, e);
+		}
+		
+		if (!file.isFile()) {
+			throw new InvalidRequestException("Could not find the file " + path + " in the import directory");
+		}
+		
+		return file;
+	}
+	
+	private <T extends IAnyResource> void writeChunk(FhirService<T> service, List<T> chunk, List<Integer> lineNumbers,
+	        ImportProgress progress) {
+		try {
+			Map<Integer, String> errors = service.createBatch(chunk);
+			errors.forEach((index, message) -> progress.failed(lineNumbers.get(index), message));
+			progress.imported += chunk.size() - errors.size();
+		}
+		catch (RuntimeException e) {
+			// the whole chunk has been rolled back, so write each resource on its own to find the ones that failed
+			log.debug("Failed to write the chunk ending at line {} of {}, retrying line by line",
+			    lineNumbers.get(lineNumbers.size() - 1), progress.path, e);
+			
+			for (int i = 0; i < chunk.size(); i++) {
+				try {
+					service.createMinimal(chunk.get(i));
+					progress.imported++;
+				}
+				catch (RuntimeException lineException) {
+					progress.failed(lineNumbers.get(i), lineException.getMessage());
+				}
+			}
+		}
+		
+		log.info("Imported {} {} resources from {} so far, {} lines failed", progress.imported, progress.resourceType,
+		    progress.path, progress.failed);
+	}
+	
+	private static class ImportProgress {
+		
+		private final String resourceType;
+		
+		private final String path;
+		
+		private final OperationOutcome outcome = new OperationOutcome();
+		
+		private int imported = 0;
+		
+		private int failed = 0;
+		
+		private ImportProgress(String resourceType, String path) {
+			this.resourceType = resourceType;
+			this.path = path;
+		}
+		
+		private void failed(int lineNumber, String message) {
+			if (++failed <= MAX_REPORTED_ERRORS) {
+				outcome.addIssue().setSeverity(OperationOutcome.IssueSeverity.ERROR)
+				        .setCode(OperationOutcome.IssueType.PROCESSING)
+				        .setDiagnostics("Line " + lineNumber + ": " + message);
+			}
+		}
+		
+		private OperationOutcome toOperationOutcome() {
+			if (failed > MAX_REPORTED_ERRORS) {
+				outcome.addIssue().setSeverity(OperationOutcome.IssueSeverity.WARNING)
+				        .setCode(OperationOutcome.IssueType.TOOCOSTLY)
+				        .setDiagnostics((failed - MAX_REPORTED_ERRORS) + " further failed lines were not reported");
+			}
+			
+			outcome.getIssue().add(0,
+			    new OperationOutcome.OperationOutcomeIssueComponent().setSeverity(OperationOutcome.IssueSeverity.INFORMATION)
+			            .setCode(OperationOutcome.IssueType.INFORMATIONAL).setDiagnostics(String.format(
+			                "Imported %d %s resources from %s, %d lines failed", imported, resourceType, path, failed)));
+			
+			return outcome;
+		}
+	}
+}
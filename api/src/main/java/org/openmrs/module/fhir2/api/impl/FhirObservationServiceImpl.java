@@ -9,6 +9,10 @@
  */
 package org.openmrs.module.fhir2.api.impl;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.DateRangeParam;
@@ -17,12 +21,15 @@ import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hl7.fhir.r4.model.Observation;
 import org.openmrs.Obs;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.FhirObservationService;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
@@ -38,12 +45,17 @@ import org.springframework.transaction.annotation.Transactional;
 @Setter(AccessLevel.PACKAGE)
 public class FhirObservationServiceImpl extends BaseFhirService<Observation, org.openmrs.Obs> implements FhirObservationService {
 	
+	private static final int DEFAULT_CONDITIONAL_DELETE_MAXIMUM = 10000;
+	
 	@Autowired
 	private FhirObservationDao dao;
 	
 	@Autowired
 	private ObservationTranslator translator;
 	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
 	@Autowired
 	private SearchQuery<Obs, Observation, FhirObservationDao, ObservationTranslator> searchQuery;
 	
@@ -55,7 +67,47 @@ public class FhirObservationServiceImpl extends BaseFhirService<Observation, org
 	        DateRangeParam date, TokenAndListParam code, TokenAndListParam category, TokenAndListParam id,
 	        DateRangeParam lastUpdated, SortSpec sort) {
 		
-		SearchParameterMap theParams = new SearchParameterMap()
+		SearchParameterMap theParams = getSearchParameters(encounterReference, patientReference, hasMemberReference,
+		    valueConcept, valueDateParam, valueQuantityParam, valueStringParam, date, code, category, id, lastUpdated)
+		            .setSortSpec(sort);
+		
+		return searchQuery.getQueryResults(theParams, dao, translator);
+	}
+	
+	@Override
+	public int deleteObservations(ReferenceAndListParam encounterReference, ReferenceAndListParam patientReference,
+	        TokenAndListParam valueConcept, DateRangeParam valueDateParam, QuantityAndListParam valueQuantityParam,
+	        StringAndListParam valueStringParam, DateRangeParam date, TokenAndListParam code, TokenAndListParam category,
+	        TokenAndListParam id, DateRangeParam lastUpdated) {
+		if (Stream.of(encounterReference, patientReference, valueConcept, valueDateParam, valueQuantityParam,
+		    valueStringParam, date, code, category, id, lastUpdated).allMatch(Objects::isNull)) {
+			throw new InvalidRequestException("At least one search parameter must be supplied to delete Observations");
+		}
+		
+		int maximum = globalPropertyService.getGlobalProperty(FhirConstants.CONDITIONAL_DELETE_MAXIMUM,
+		    DEFAULT_CONDITIONAL_DELETE_MAXIMUM);
+		
+		// one more than the maximum is enough to tell whether too many observations match
+		List<String> matchingUuids = dao.getSearchResultUuids(
+		    getSearchParameters(encounterReference, patientReference, null, valueConcept, valueDateParam,
+		        valueQuantityParam, valueStringParam, date, code, category, id, lastUpdated),
+		    maximum + 1);
+		
+		if (matchingUuids.size() > maximum) {
+			throw new PreconditionFailedException(
+			        "More than " + maximum + " Observations match the search, but at most " + maximum + " may be deleted");
+		}
+		
+		// the members of matching obs groups are voided with them, but do not count towards the maximum
+		return dao.voidObjects(matchingUuids, "Voided via FHIR API");
+	}
+	
+	private SearchParameterMap getSearchParameters(ReferenceAndListParam encounterReference,
+	        ReferenceAndListParam patientReference, ReferenceParam hasMemberReference, TokenAndListParam valueConcept,
+	        DateRangeParam valueDateParam, QuantityAndListParam valueQuantityParam, StringAndListParam valueStringParam,
+	        DateRangeParam date, TokenAndListParam code, TokenAndListParam category, TokenAndListParam id,
+	        DateRangeParam lastUpdated) {
+		return new SearchParameterMap()
 		        .addParameter(FhirConstants.ENCOUNTER_REFERENCE_SEARCH_HANDLER, encounterReference)
 		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patientReference)
 		        .addParameter(FhirConstants.CODED_SEARCH_HANDLER, code)
@@ -67,9 +119,6 @@ public class FhirObservationServiceImpl extends BaseFhirService<Observation, org
 		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "obsDatetime", date)
 		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "valueDatetime", valueDateParam)
 		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY, id)
-		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY, lastUpdated)
-		        .setSortSpec(sort);
-		
-		return searchQuery.getQueryResults(theParams, dao, translator);
+		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY, lastUpdated);
 	}
 }
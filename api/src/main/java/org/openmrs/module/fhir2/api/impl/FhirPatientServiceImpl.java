@@ -9,11 +9,14 @@
  */
 package org.openmrs.module.fhir2.api.impl;
 
+import java.util.List;
+
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
@@ -82,4 +85,26 @@ public class FhirPatientServiceImpl extends BaseFhirService<Patient, org.openmrs
 		
 		return searchQuery.getQueryResults(theParams, dao, translator);
 	}
+	
+	@Override
+	protected List<org.openmrs.Patient> getConditionalMatches(String name, String value) {
+		if (!"identifier".equals(name)) {
+			return super.getConditionalMatches(name, value);
+		}
+		
+		// identifier=[system|]value, where the system is the name of the identifier type
+		int separator = value.indexOf('|');
+		String system = separator < 0 ? null : StringUtils.trimToNull(value.substring(0, separator));
+		String identifierValue = StringUtils.trimToNull(value.substring(separator + 1));
+		
+		if (identifierValue == null) {
+			throw new InvalidRequestException("Conditional operations on Patient require an identifier value");
+		}
+		
+		// serializes conditional writes for the identifier until this transaction completes, so the patient found or
+		// created here cannot be created again by a concurrent request for the same identifier
+		dao.lockIdentifier(system, identifierValue);
+		
+		return dao.getPatientsByIdentifier(identifierValue, system);
+	}
 }
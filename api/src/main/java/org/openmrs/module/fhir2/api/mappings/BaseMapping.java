@@ -40,6 +40,13 @@ public abstract class BaseMapping {
 		this.resourceLocator = resourceLocator;
 	}
 	
+	/**
+	 * Loads the mapping, which otherwise happens the first time it is used
+	 */
+	public void initialize() {
+		setupDelegates();
+	}
+	
 	protected Optional<String> getValue(String key) {
 		setupDelegates();
 		return Optional.ofNullable(map.getOrDefault(key, null));
@@ -0,0 +1,233 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aggregates latency, result counts, SQL statement counts and entity loads of FHIR requests per
+ * resource type, operation and search parameter shape, i.e. the sorted names of the search
+ * parameters used regardless of their values. The metrics are exposed through JMX as
+ * {@value #OBJECT_NAME} and by the metrics servlet of the web module.
+ */
+@Slf4j
+@Component
+public class FhirRequestMetrics implements FhirRequestMetricsMXBean {
+	
+	public static final String OBJECT_NAME = "org.openmrs.module.fhir2:type=RequestMetrics";
+	
+	/**
+	 * Upper bounds of the latency histogram buckets in milliseconds
+	 */
+	public static final long[] LATENCY_BUCKETS_MILLIS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+	
+	/**
+	 * Resource type, operation and shape recorded for any new operation once
+	 * {@link #MAXIMUM_OPERATIONS} distinct operations were seen, so that clients requesting arbitrary
+	 * paths or sending arbitrary parameters cannot make the metrics grow without bound
+	 */
+	public static final String OTHER = "_other";
+	
+	static final int MAXIMUM_OPERATIONS = 1000;
+	
+	private final Map<OperationKey, Recorder> recorders = new ConcurrentHashMap<>();
+	
+	/**
+	 * Records a completed request
+	 *
+	 * @param resourceType the resource type the request was for, if any
+	 * @param operation the operation, e.g. read or search-type
+	 * @param parameterShape the sorted names of the parameters used or an empty string
+	 * @param elapsedNanos the time taken to handle the request
+	 * @param results the number of resources returned
+	 * @param statistics the database work done for the request, if it was counted
+	 * @param failed whether the request failed
+	 */
+	public void record(String resourceType, String operation, String parameterShape, long elapsedNanos, int results,
+	        RequestStatistics statistics, boolean failed) {
+		OperationKey key = new OperationKey(resourceType == null ? "" : resourceType, operation,
+		        parameterShape == null ? "" : parameterShape);
+		
+		Recorder recorder = recorders.get(key);
+		if (recorder == null) {
+			if (recorders.size() >= MAXIMUM_OPERATIONS) {
+				key = new OperationKey(OTHER, OTHER, OTHER);
+			}
+			
+			recorder = recorders.computeIfAbsent(key, k -> new Recorder());
+		}
+		
+		recorder.record(TimeUnit.NANOSECONDS.toMillis(elapsedNanos), results, statistics, failed);
+	}
+	
+	@Override
+	public List<OperationMetrics> getOperations() {
+		return recorders.entrySet().stream().map(e -> e.getValue().snapshot(e.getKey()))
+		        .sorted(Comparator.comparing(OperationMetrics::getResourceType).thenComparing(OperationMetrics::getOperation)
+		                .thenComparing(OperationMetrics::getParameterShape))
+		        .collect(Collectors.toList());
+	}
+	
+	@Override
+	public void reset() {
+		recorders.clear();
+	}
+	
+	@PostConstruct
+	public void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			// left behind if the module was restarted without being shut down properly
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			
+			server.registerMBean(this, name);
+		}
+		catch (JMException e) {
+			log.warn("Could not register FHIR request metrics with JMX", e);
+		}
+	}
+	
+	@PreDestroy
+	public void unregisterMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		}
+		catch (JMException e) {
+			log.warn("Could not unregister FHIR request metrics from JMX", e);
+		}
+	}
+	
+	@Value
+	private static class OperationKey {
+		
+		String resourceType;
+		
+		String operation;
+		
+		String parameterShape;
+	}
+	
+	private static class Recorder {
+		
+		private final long startTime = System.nanoTime();
+		
+		private final LongAdder count = new LongAdder();
+		
+		private final LongAdder errors = new LongAdder();
+		
+		private final LongAdder totalMillis = new LongAdder();
+		
+		private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0L);
+		
+		private final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS_MILLIS.length + 1];
+		
+		private final LongAdder results = new LongAdder();
+		
+		private final LongAdder statements = new LongAdder();
+		
+		private final LongAdder entityLoads = new LongAdder();
+		
+		Recorder() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+		
+		void record(long millis, int resultCount, RequestStatistics statistics, boolean failed) {
+			count.increment();
+			if (failed) {
+				errors.increment();
+			}
+			
+			totalMillis.add(millis);
+			maxMillis.accumulate(millis);
+			buckets[bucketOf(millis)].increment();
+			results.add(resultCount);
+			
+			if (statistics != null) {
+				statements.add(statistics.getStatements());
+				entityLoads.add(statistics.getEntityLoads());
+			}
+		}
+		
+		OperationMetrics snapshot(OperationKey key) {
+			long[] latencyBuckets = new long[buckets.length];
+			long total = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				latencyBuckets[i] = buckets[i].sum();
+				total += latencyBuckets[i];
+			}
+			
+			long max = maxMillis.get();
+			double elapsedSeconds = Math.max(1.0, (System.nanoTime() - startTime) / 1_000_000_000.0);
+			
+			return OperationMetrics.builder().resourceType(key.getResourceType()).operation(key.getOperation())
+			        .parameterShape(key.getParameterShape()).count(total).errors(errors.sum())
+			        .requestsPerSecond(total / elapsedSeconds)
+			        .meanMillis(total == 0 ? 0.0 : (double) totalMillis.sum() / total).maxMillis(max)
+			        .p50Millis(percentile(latencyBuckets, total, 0.5, max))
+			        .p95Millis(percentile(latencyBuckets, total, 0.95, max))
+			        .p99Millis(percentile(latencyBuckets, total, 0.99, max)).latencyBuckets(latencyBuckets)
+			        .results(results.sum()).statements(statements.sum()).entityLoads(entityLoads.sum()).build();
+		}
+		
+		private static int bucketOf(long millis) {
+			for (int i = 0; i < LATENCY_BUCKETS_MILLIS.length; i++) {
+				if (millis <= LATENCY_BUCKETS_MILLIS[i]) {
+					return i;
+				}
+			}
+			
+			return LATENCY_BUCKETS_MILLIS.length;
+		}
+		
+		private static long percentile(long[] latencyBuckets, long total, double percentile, long max) {
+			if (total == 0) {
+				return 0;
+			}
+			
+			long rank = (long) Math.ceil(total * percentile);
+			long seen = 0;
+			for (int i = 0; i < LATENCY_BUCKETS_MILLIS.length; i++) {
+				seen += latencyBuckets[i];
+				if (seen >= rank) {
+					return Math.min(LATENCY_BUCKETS_MILLIS[i], max);
+				}
+			}
+			
+			return max;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of the {@link FhirRequestMetrics}
+ */
+public interface FhirRequestMetricsMXBean {
+	
+	/**
+	 * @return the metrics recorded for each resource type, operation and search parameter shape
+	 */
+	List<OperationMetrics> getOperations();
+	
+	/**
+	 * Discards all recorded metrics
+	 */
+	void reset();
+}
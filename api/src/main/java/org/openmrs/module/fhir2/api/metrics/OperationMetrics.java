@@ -0,0 +1,57 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Snapshot of the metrics recorded for one resource type, operation and search parameter shape.
+ * Percentiles are estimated from the latency histogram, so they are the upper bound of the bucket
+ * the percentile falls in.
+ */
+@Value
+@Builder
+public class OperationMetrics {
+	
+	String resourceType;
+	
+	String operation;
+	
+	String parameterShape;
+	
+	long count;
+	
+	long errors;
+	
+	double requestsPerSecond;
+	
+	double meanMillis;
+	
+	long maxMillis;
+	
+	long p50Millis;
+	
+	long p95Millis;
+	
+	long p99Millis;
+	
+	/**
+	 * Number of requests whose latency is at most the corresponding entry of
+	 * {@link FhirRequestMetrics#LATENCY_BUCKETS_MILLIS}; the last entry counts all slower requests
+	 */
+	long[] latencyBuckets;
+	
+	long results;
+	
+	long statements;
+	
+	long entityLoads;
+}
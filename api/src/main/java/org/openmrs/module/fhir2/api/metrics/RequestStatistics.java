@@ -0,0 +1,157 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
+
+/**
+ * Counts the SQL statements prepared and the entities loaded by Hibernate while the current thread
+ * handles a request, along with the time spent in and rows handled by each {@link Stage} traced by
+ * the {@link StageTracer}. Counting only happens between {@link #start()} and {@link #stop()}, so
+ * work done outside of FHIR requests is not recorded.
+ */
+@Getter
+public class RequestStatistics {
+	
+	private static final ThreadLocal<RequestStatistics> CURRENT = new ThreadLocal<>();
+	
+	private static final int MAXIMUM_CAPTURED_STATEMENTS = 20;
+	
+	private long statements;
+	
+	private long entityLoads;
+	
+	@Getter(AccessLevel.NONE)
+	private final boolean captureStatements;
+	
+	private final List<CapturedStatement> capturedStatements;
+	
+	private final Map<Stage, StageStatistics> stages = new EnumMap<>(Stage.class);
+	
+	@Getter(AccessLevel.NONE)
+	private Stage currentStage;
+	
+	private RequestStatistics(boolean captureStatements) {
+		this.captureStatements = captureStatements;
+		this.capturedStatements = captureStatements ? new ArrayList<>() : Collections.emptyList();
+	}
+	
+	/**
+	 * Starts counting for the current thread, discarding any counts left over from a previous request
+	 *
+	 * @return the statistics for the current thread
+	 */
+	public static RequestStatistics start() {
+		return start(false);
+	}
+	
+	/**
+	 * Starts counting for the current thread, discarding any counts left over from a previous request
+	 *
+	 * @param captureStatements whether to keep the SQL of the statements run to search and hydrate
+	 *            objects
+	 * @return the statistics for the current thread
+	 */
+	public static RequestStatistics start(boolean captureStatements) {
+		RequestStatistics statistics = new RequestStatistics(captureStatements);
+		CURRENT.set(statistics);
+		return statistics;
+	}
+	
+	/**
+	 * Stops counting for the current thread
+	 */
+	public static void stop() {
+		CURRENT.remove();
+	}
+	
+	/**
+	 * @return the statistics for the current thread or null if nothing is being counted
+	 */
+	public static RequestStatistics current() {
+		return CURRENT.get();
+	}
+	
+	/**
+	 * Records that Hibernate prepared the given statement on the current thread
+	 *
+	 * @param sql the statement being prepared
+	 */
+	public static void statementPrepared(String sql) {
+		RequestStatistics statistics = CURRENT.get();
+		if (statistics != null) {
+			statistics.statements++;
+			
+			if (statistics.captureStatements
+			        && (statistics.currentStage == Stage.SEARCH || statistics.currentStage == Stage.HYDRATION)
+			        && statistics.capturedStatements.size() < MAXIMUM_CAPTURED_STATEMENTS) {
+				statistics.capturedStatements.add(new CapturedStatement(statistics.currentStage, sql));
+			}
+		}
+	}
+	
+	/**
+	 * Records that Hibernate loaded an entity on the current thread
+	 */
+	public static void entityLoaded() {
+		RequestStatistics statistics = CURRENT.get();
+		if (statistics != null) {
+			statistics.entityLoads++;
+		}
+	}
+	
+	Stage enterStage(Stage stage) {
+		Stage previous = currentStage;
+		currentStage = stage;
+		return previous;
+	}
+	
+	void exitStage(Stage stage, Stage previous, long elapsedNanos, long rows) {
+		currentStage = previous;
+		
+		StageStatistics statistics = stages.computeIfAbsent(stage, s -> new StageStatistics());
+		statistics.nanos += elapsedNanos;
+		if (rows > 0) {
+			statistics.rows += rows;
+		}
+	}
+	
+	/**
+	 * Time spent in and rows handled by one stage of a request
+	 */
+	@Getter
+	public static class StageStatistics {
+		
+		private long nanos;
+		
+		private long rows;
+	}
+	
+	/**
+	 * A statement prepared while the given stage was running. Statements are captured as prepared by
+	 * Hibernate, so any values are bound to placeholders and not part of the SQL.
+	 */
+	@Value
+	public static class CapturedStatement {
+		
+		Stage stage;
+		
+		String sql;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.Value;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.metrics.RequestStatistics.CapturedStatement;
+import org.openmrs.module.fhir2.api.metrics.RequestStatistics.StageStatistics;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
+import org.openmrs.module.fhir2.api.util.CachedGlobalProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs searches taking longer than {@link FhirConstants#SLOW_SEARCH_THRESHOLD} milliseconds to the
+ * {@value #LOGGER_NAME} logger, with the parameter shape of the search, the SQL run to find and
+ * hydrate the matching objects, row counts and the time taken by each stage. At most
+ * {@link FhirConstants#SLOW_SEARCH_MAXIMUM_PER_MINUTE} searches are logged per minute, so that a
+ * struggling database does not also flood the logs. The global properties are re-read once a
+ * minute.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class SlowSearchLog {
+	
+	public static final String LOGGER_NAME = "org.openmrs.module.fhir2.slowSearches";
+	
+	private static final Logger slowSearchLog = LoggerFactory.getLogger(LOGGER_NAME);
+	
+	private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	private final CachedGlobalProperties globalProperties = new CachedGlobalProperties();
+	
+	private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+	
+	private final AtomicInteger loggedInWindow = new AtomicInteger();
+	
+	private final AtomicLong suppressed = new AtomicLong();
+	
+	/**
+	 * @return whether searches are checked against the threshold at all, i.e. whether the SQL of
+	 *         searches needs to be captured
+	 */
+	public boolean isEnabled() {
+		return getSettings().getThresholdMillis() >= 0 && slowSearchLog.isInfoEnabled();
+	}
+	
+	/**
+	 * Logs the given search if it took longer than the threshold and the log is not rate limited
+	 *
+	 * @param resourceType the type of resource searched for
+	 * @param parameterShape the sorted names of the search parameters
+	 * @param elapsedNanos the time taken to handle the search
+	 * @param results the number of resources returned
+	 * @param statistics the database work done by the search, if it was counted
+	 * @return whether the search was logged
+	 */
+	public boolean log(String resourceType, String parameterShape, long elapsedNanos, int results,
+	        RequestStatistics statistics) {
+		Settings current = getSettings();
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+		if (current.getThresholdMillis() < 0 || elapsedMillis < current.getThresholdMillis()
+		        || !slowSearchLog.isInfoEnabled()) {
+			return false;
+		}
+		
+		if (!tryAcquire(current.getMaximumPerMinute())) {
+			suppressed.incrementAndGet();
+			return false;
+		}
+		
+		StringBuilder message = new StringBuilder("Slow search ").append(resourceType).append('?').append(parameterShape)
+		        .append(" took ").append(elapsedMillis).append(" ms and returned ").append(results).append(" resources");
+		
+		if (statistics != null) {
+			message.append("\n  stages:");
+			for (Map.Entry<Stage, StageStatistics> stage : statistics.getStages().entrySet()) {
+				message.append(' ').append(stage.getKey()).append(' ')
+				        .append(TimeUnit.NANOSECONDS.toMillis(stage.getValue().getNanos())).append(" ms (")
+				        .append(stage.getValue().getRows()).append(" rows)");
+			}
+			
+			message.append("\n  statements: ").append(statistics.getStatements()).append(", entity loads: ")
+			        .append(statistics.getEntityLoads());
+			
+			for (CapturedStatement statement : statistics.getCapturedStatements()) {
+				message.append("\n  ").append(statement.getStage()).append(": ").append(statement.getSql());
+			}
+		}
+		
+		long suppressedSearches = suppressed.getAndSet(0);
+		if (suppressedSearches > 0) {
+			message.append("\n  ").append(suppressedSearches).append(" slow searches were not logged since the last one");
+		}
+		
+		slowSearchLog.info(message.toString());
+		return true;
+	}
+	
+	private boolean tryAcquire(int maximumPerMinute) {
+		long now = System.nanoTime();
+		long start = windowStart.get();
+		if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+			loggedInWindow.set(0);
+		}
+		
+		return loggedInWindow.incrementAndGet() <= maximumPerMinute;
+	}
+	
+	private Settings getSettings() {
+		return globalProperties.get(FhirConstants.SLOW_SEARCH_THRESHOLD,
+		    () -> new Settings(globalPropertyService.getGlobalProperty(FhirConstants.SLOW_SEARCH_THRESHOLD, -1),
+		            globalPropertyService.getGlobalProperty(FhirConstants.SLOW_SEARCH_MAXIMUM_PER_MINUTE, 10)));
+	}
+	
+	@Value
+	private static class Settings {
+		
+		int thresholdMillis;
+		
+		int maximumPerMinute;
+	}
+}
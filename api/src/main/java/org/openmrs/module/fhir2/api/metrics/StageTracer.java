@@ -0,0 +1,242 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Traces the stages of handling a FHIR request, e.g. building the search criteria, running the
+ * search query or translating the results. Each stage is emitted as a Java Flight Recorder event
+ * named {@value #EVENT_NAME} with the stage, the type being handled and the number of rows, so that
+ * recordings of production servers show where the time of slow requests goes. When debug logging
+ * is enabled for {@value #LOGGER_NAME}, each stage is also logged.
+ * <p/>
+ * The module targets Java 8, so the event is defined at runtime through {@code jdk.jfr.EventFactory}
+ * when the JVM provides it. Stages traced while a request is counted by {@link RequestStatistics}
+ * are also added to its statistics. Otherwise, if neither a recording nor debug logging is enabled,
+ * tracing a stage costs a single check.
+ */
+@Slf4j
+public final class StageTracer {
+	
+	public static final String EVENT_NAME = "org.openmrs.module.fhir2.Stage";
+	
+	public static final String LOGGER_NAME = "org.openmrs.module.fhir2.tracing";
+	
+	private static final Logger stageLog = LoggerFactory.getLogger(LOGGER_NAME);
+	
+	private static final Span NOOP = new Span(null, null, null, null, null, System.nanoTime());
+	
+	private static final JfrEvents jfrEvents = JfrEvents.create();
+	
+	public enum Stage {
+		CRITERIA,
+		SEARCH,
+		HYDRATION,
+		TRANSLATION,
+		NARRATIVE,
+		ENCODING
+	}
+	
+	private StageTracer() {
+	}
+	
+	/**
+	 * Starts tracing a stage; the returned span must be closed once the stage is complete
+	 *
+	 * @param stage the stage being started
+	 * @param type the FHIR resource or OpenMRS type being handled
+	 * @return the span tracing the stage
+	 */
+	public static Span start(Stage stage, String type) {
+		Object event = jfrEvents == null ? null : jfrEvents.begin();
+		RequestStatistics statistics = RequestStatistics.current();
+		if (event == null && statistics == null && !stageLog.isDebugEnabled()) {
+			return NOOP;
+		}
+		
+		Stage previousStage = statistics == null ? null : statistics.enterStage(stage);
+		return new Span(stage, type, event, statistics, previousStage, System.nanoTime());
+	}
+	
+	/**
+	 * A stage being traced
+	 */
+	public static final class Span implements AutoCloseable {
+		
+		private final Stage stage;
+		
+		private final String type;
+		
+		private final Object event;
+		
+		private final RequestStatistics statistics;
+		
+		private final Stage previousStage;
+		
+		private final long startTime;
+		
+		private long rows = -1;
+		
+		private Span(Stage stage, String type, Object event, RequestStatistics statistics, Stage previousStage,
+		    long startTime) {
+			this.stage = stage;
+			this.type = type;
+			this.event = event;
+			this.statistics = statistics;
+			this.previousStage = previousStage;
+			this.startTime = startTime;
+		}
+		
+		/**
+		 * @param rows the number of rows or resources handled by this stage
+		 * @return this span
+		 */
+		public Span rows(long rows) {
+			this.rows = rows;
+			return this;
+		}
+		
+		@Override
+		public void close() {
+			if (this == NOOP) {
+				return;
+			}
+			
+			long elapsedNanos = System.nanoTime() - startTime;
+			if (event != null) {
+				jfrEvents.commit(event, stage, type, rows);
+			}
+			
+			if (statistics != null) {
+				statistics.exitStage(stage, previousStage, elapsedNanos, rows);
+			}
+			
+			if (stageLog.isDebugEnabled()) {
+				stageLog.debug("{} of {} took {} ms for {} rows", stage, type, elapsedNanos / 1_000_000, rows);
+			}
+		}
+	}
+	
+	/**
+	 * Access to the JFR event type through method handles, as the {@code jdk.jfr} API cannot be
+	 * referenced directly
+	 */
+	private static final class JfrEvents {
+		
+		private final Object eventType;
+		
+		private final Object eventFactory;
+		
+		private final MethodHandle isEnabled;
+		
+		private final MethodHandle newEvent;
+		
+		private final MethodHandle begin;
+		
+		private final MethodHandle end;
+		
+		private final MethodHandle shouldCommit;
+		
+		private final MethodHandle set;
+		
+		private final MethodHandle commit;
+		
+		private JfrEvents(ClassLoader classLoader, Object eventFactory) throws ReflectiveOperationException {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory", false, classLoader);
+			Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType", false, classLoader);
+			Class<?> eventClass = Class.forName("jdk.jfr.Event", false, classLoader);
+			
+			this.eventFactory = eventFactory;
+			this.eventType = eventFactoryClass.getMethod("getEventType").invoke(eventFactory);
+			this.isEnabled = lookup.findVirtual(eventTypeClass, "isEnabled", MethodType.methodType(boolean.class));
+			this.newEvent = lookup.findVirtual(eventFactoryClass, "newEvent", MethodType.methodType(eventClass));
+			this.begin = lookup.findVirtual(eventClass, "begin", MethodType.methodType(void.class));
+			this.end = lookup.findVirtual(eventClass, "end", MethodType.methodType(void.class));
+			this.shouldCommit = lookup.findVirtual(eventClass, "shouldCommit", MethodType.methodType(boolean.class));
+			this.set = lookup.findVirtual(eventClass, "set",
+			    MethodType.methodType(void.class, int.class, Object.class));
+			this.commit = lookup.findVirtual(eventClass, "commit", MethodType.methodType(void.class));
+		}
+		
+		static JfrEvents create() {
+			try {
+				ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+				Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement", false, classLoader);
+				Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor", false, classLoader);
+				Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory", false, classLoader);
+				
+				Constructor<?> annotation = annotationElementClass.getConstructor(Class.class, Object.class);
+				List<Object> annotations = Arrays.asList(
+				    annotation.newInstance(Class.forName("jdk.jfr.Name", false, classLoader), EVENT_NAME),
+				    annotation.newInstance(Class.forName("jdk.jfr.Label", false, classLoader), "FHIR Request Stage"),
+				    annotation.newInstance(Class.forName("jdk.jfr.Category", false, classLoader),
+				        new String[] { "OpenMRS", "FHIR" }));
+				
+				Constructor<?> field = valueDescriptorClass.getConstructor(Class.class, String.class);
+				List<Object> fields = Arrays.asList(field.newInstance(String.class, "stage"),
+				    field.newInstance(String.class, "type"), field.newInstance(long.class, "rows"));
+				
+				Object eventFactory = eventFactoryClass.getMethod("create", List.class, List.class).invoke(null,
+				    annotations, fields);
+				return new JfrEvents(classLoader, eventFactory);
+			}
+			catch (ClassNotFoundException e) {
+				log.debug("Java Flight Recorder is not available, stages will not be recorded");
+			}
+			catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+				log.warn("Unable to define Java Flight Recorder event for FHIR request stages", e);
+			}
+			
+			return null;
+		}
+		
+		Object begin() {
+			try {
+				if (!(boolean) isEnabled.invoke(eventType)) {
+					return null;
+				}
+				
+				Object event = newEvent.invoke(eventFactory);
+				begin.invoke(event);
+				return event;
+			}
+			catch (Throwable e) {
+				log.debug("Unable to begin Java Flight Recorder event", e);
+				return null;
+			}
+		}
+		
+		void commit(Object event, Stage stage, String type, long rows) {
+			try {
+				end.invoke(event);
+				if ((boolean) shouldCommit.invoke(event)) {
+					set.invoke(event, 0, stage.name());
+					set.invoke(event, 1, type);
+					set.invoke(event, 2, rows);
+					commit.invoke(event);
+				}
+			}
+			catch (Throwable e) {
+				log.debug("Unable to commit Java Flight Recorder event", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.PreDestroy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.util.CachedGlobalProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the prefetching of search pages in the background. Prefetching is disabled unless the
+ * {@link FhirConstants#PAGING_PREFETCH_ENABLED} global property is set to true. At most
+ * {@link #MAXIMUM_THREADS} pages are prefetched at once and further pages are only queued up to a
+ * small limit, beyond which pages are simply not prefetched, so prefetching never competes
+ * significantly with requests for the database. Pages are loaded in daemon threads of the module,
+ * so no pages are prefetched until the module has been given its {@link DaemonToken}.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class SearchPagePrefetcher {
+	
+	private static final int MAXIMUM_THREADS = 2;
+	
+	private static final int MAXIMUM_QUEUED_PAGES = 16;
+	
+	private final ThreadPoolExecutor executor;
+	
+	private final CachedGlobalProperties globalProperties = new CachedGlobalProperties();
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	private volatile DaemonToken daemonToken;
+	
+	public SearchPagePrefetcher() {
+		executor = new ThreadPoolExecutor(MAXIMUM_THREADS, MAXIMUM_THREADS, 60, TimeUnit.SECONDS,
+		        new ArrayBlockingQueue<>(MAXIMUM_QUEUED_PAGES),
+		        new ThreadFactoryBuilder().setNameFormat("fhir2-search-prefetch-%d").setDaemon(true).build());
+		executor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Sets the token used to run the prefetching in daemon threads of the module
+	 *
+	 * @param daemonToken the module's daemon token
+	 */
+	public void setDaemonToken(DaemonToken daemonToken) {
+		this.daemonToken = daemonToken;
+	}
+	
+	/**
+	 * Runs the given task in the background as the current user
+	 *
+	 * @param task the task loading a page of search results
+	 * @return the future result of the task or null if prefetching is disabled or too many pages are
+	 *         already being prefetched
+	 */
+	public <T> CompletableFuture<T> prefetch(Supplier<T> task) {
+		if (!"true".equalsIgnoreCase(globalProperties.get(FhirConstants.PAGING_PREFETCH_ENABLED,
+		    () -> globalPropertyService.getGlobalProperty(FhirConstants.PAGING_PREFETCH_ENABLED, "false")).trim())) {
+			return null;
+		}
+		
+		DaemonToken token = daemonToken;
+		User user = Context.getAuthenticatedUser();
+		if (token == null || user == null) {
+			return null;
+		}
+		
+		// only the user's system id is passed to the prefetching thread, which becomes that user in a
+		// session of its own, as the request's user context and session cannot be shared between threads
+		String systemId = user.getSystemId();
+		try {
+			return CompletableFuture.supplyAsync(() -> runAsUser(systemId, task, token), executor);
+		}
+		catch (RejectedExecutionException e) {
+			log.debug("Not prefetching search page as too many pages are already being prefetched");
+			return null;
+		}
+	}
+	
+	private static <T> T runAsUser(String systemId, Supplier<T> task, DaemonToken token) {
+		AtomicReference<T> result = new AtomicReference<>();
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		Thread thread = Daemon.runInDaemonThread(() -> {
+			try {
+				Context.becomeUser(systemId);
+				result.set(task.get());
+			}
+			catch (RuntimeException e) {
+				failure.set(e);
+			}
+		}, token);
+		
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while prefetching a search page", e);
+		}
+		
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		
+		return result.get();
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -32,6 +32,12 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 	@Autowired
 	private FhirGlobalPropertyService globalPropertyService;
 	
+	@Autowired
+	private SearchResultCache searchResultCache;
+	
+	@Autowired
+	private SearchPagePrefetcher searchPagePrefetcher;
+	
 	/**
 	 * Gets query results
 	 *
@@ -41,6 +47,7 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 	 * @return IBundleProvider
 	 */
 	public IBundleProvider getQueryResults(SearchParameterMap theParams, O dao, V translator) {
-		return new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService);
+		return new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchResultCache,
+		        searchPagePrefetcher);
 	}
 }
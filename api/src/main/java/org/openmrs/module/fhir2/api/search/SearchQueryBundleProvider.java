@@ -18,11 +18,16 @@ import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.openmrs.Auditable;
@@ -30,10 +35,13 @@ import org.openmrs.OpenmrsObject;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.metrics.StageTracer;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
 import org.springframework.transaction.annotation.Transactional;
 
+@Slf4j
 public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U extends IBaseResource> implements IBundleProvider, Serializable {
 	
 	private static final long serialVersionUID = 4L;
@@ -52,29 +60,41 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	
 	private final FhirGlobalPropertyService globalPropertyService;
 	
-	private transient Integer count;
+	private final SearchResultCache searchResultCache;
+	
+	private final SearchPagePrefetcher searchPagePrefetcher;
 	
 	private transient Integer pageSize;
 	
-	private transient List<String> matchingResourceUuids;
+	// shared by all callers so that the search is only run once, even if pages are requested concurrently
+	private transient volatile CompletableFuture<List<String>> searchResult;
+	
+	// only the page following the last page served is prefetched, so at most one page is kept per search
+	private transient volatile PrefetchedPage prefetchedPage;
 	
 	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
 	    ToFhirTranslator<T, U> translator, FhirGlobalPropertyService globalPropertyService) {
+		this(searchParameterMap, dao, translator, globalPropertyService, null, null);
+	}
+	
+	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
+	    ToFhirTranslator<T, U> translator, FhirGlobalPropertyService globalPropertyService,
+	    SearchResultCache searchResultCache, SearchPagePrefetcher searchPagePrefetcher) {
 		this.dao = dao;
 		this.published = InstantDt.withCurrentTime();
 		this.searchParameterMap = searchParameterMap;
 		this.translator = translator;
 		this.uuid = UUID.randomUUID().toString();
 		this.globalPropertyService = globalPropertyService;
+		this.searchResultCache = searchResultCache;
+		this.searchPagePrefetcher = searchPagePrefetcher;
 	}
 	
 	@Transactional(readOnly = true)
 	@Override
 	@Nonnull
 	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
-		if (matchingResourceUuids == null) {
-			matchingResourceUuids = dao.getSearchResultUuids(searchParameterMap);
-		}
+		List<String> matchingResourceUuids = getMatchingResourceUuids();
 		
 		if (matchingResourceUuids.isEmpty()) {
 			return Collections.emptyList();
@@ -94,8 +114,14 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 			lastResult = Math.min(lastResult, toIndex);
 		}
 		
-		return dao.getSearchResults(searchParameterMap, matchingResourceUuids, firstResult, lastResult).stream()
-		        .map(translator::toFhirResource).filter(Objects::nonNull).collect(Collectors.toList());
+		List<IBaseResource> resources = getPrefetchedPage(firstResult, lastResult);
+		if (resources == null) {
+			resources = getPage(matchingResourceUuids, firstResult, lastResult);
+		}
+		
+		prefetchNextPage(matchingResourceUuids, firstResult, lastResult);
+		
+		return resources;
 	}
 	
 	@Override
@@ -110,14 +136,125 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	@Override
 	@Nullable
 	public Integer size() {
-		if (matchingResourceUuids == null) {
-			matchingResourceUuids = dao.getSearchResultUuids(searchParameterMap);
+		return getMatchingResourceUuids().size();
+	}
+	
+	/**
+	 * Gets the uuids of the objects matching this search. The first caller runs the search and any
+	 * concurrent callers wait for and share its result. If the search fails, each waiting caller gets
+	 * the failure and the search is run again by the next caller.
+	 *
+	 * @return the uuids of the matching objects
+	 */
+	private List<String> getMatchingResourceUuids() {
+		CompletableFuture<List<String>> result = searchResult;
+		boolean isSearching = false;
+		
+		if (result == null) {
+			synchronized (this) {
+				result = searchResult;
+				if (result == null) {
+					searchResult = result = new CompletableFuture<>();
+					isSearching = true;
+				}
+			}
+		}
+		
+		if (isSearching) {
+			try {
+				result.complete(searchMatchingResourceUuids());
+			}
+			catch (RuntimeException e) {
+				synchronized (this) {
+					if (searchResult == result) {
+						searchResult = null;
+					}
+				}
+				
+				result.completeExceptionally(e);
+				throw e;
+			}
+		}
+		
+		try {
+			return result.join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			
+			throw e;
+		}
+	}
+	
+	private List<String> searchMatchingResourceUuids() {
+		if (searchResultCache == null) {
+			return dao.getSearchResultUuids(searchParameterMap);
+		}
+		
+		return searchResultCache.getSearchResultUuids(searchParameterMap, dao);
+	}
+	
+	private List<IBaseResource> getPage(List<String> matchingResourceUuids, int firstResult, int lastResult) {
+		List<T> results = dao.getSearchResults(searchParameterMap, matchingResourceUuids, firstResult, lastResult);
+		
+		try (StageTracer.Span span = StageTracer.start(Stage.TRANSLATION, getEntityTypeName())) {
+			List<IBaseResource> resources = results.stream().map(translator::toFhirResource).filter(Objects::nonNull)
+			        .collect(Collectors.toList());
+			span.rows(resources.size());
+			return resources;
+		}
+	}
+	
+	private String getEntityTypeName() {
+		Class<?> entityType = dao.getEntityType();
+		return entityType == null ? null : entityType.getSimpleName();
+	}
+	
+	private List<IBaseResource> getPrefetchedPage(int firstResult, int lastResult) {
+		PrefetchedPage page = prefetchedPage;
+		if (page == null || page.getFirstResult() != firstResult || page.getLastResult() != lastResult) {
+			return null;
 		}
 		
-		if (count == null) {
-			count = matchingResourceUuids.size();
+		prefetchedPage = null;
+		
+		try {
+			return page.getResources().join();
+		}
+		catch (CompletionException | CancellationException e) {
+			log.debug("Unable to prefetch search page, loading it instead", e);
+			return null;
 		}
+	}
+	
+	/**
+	 * Starts loading the page following the one just served in the background, so that it is ready by
+	 * the time a client paging sequentially through the results requests it
+	 */
+	private void prefetchNextPage(List<String> matchingResourceUuids, int firstResult, int lastResult) {
+		if (searchPagePrefetcher == null || lastResult <= firstResult || lastResult >= matchingResourceUuids.size()) {
+			return;
+		}
+		
+		int nextFirstResult = lastResult;
+		int nextLastResult = Math.min(lastResult + (lastResult - firstResult), matchingResourceUuids.size());
+		
+		CompletableFuture<List<IBaseResource>> resources = searchPagePrefetcher
+		        .prefetch(() -> getPage(matchingResourceUuids, nextFirstResult, nextLastResult));
+		if (resources != null) {
+			prefetchedPage = new PrefetchedPage(nextFirstResult, nextLastResult, resources);
+		}
+	}
+	
+	@Value
+	private static class PrefetchedPage {
+		
+		int firstResult;
+		
+		int lastResult;
 		
-		return count;
+		CompletableFuture<List<IBaseResource>> resources;
 	}
 }
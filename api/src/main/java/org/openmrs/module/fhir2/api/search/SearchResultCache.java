@@ -0,0 +1,233 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.model.api.IQueryParameterOr;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.QualifiedParamList;
+import ca.uhn.fhir.rest.api.SortSpec;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.Value;
+import org.openmrs.Auditable;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.CachedGlobalProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the uuids matched by searches for a short time, so that identical searches, e.g. ward lists
+ * polled by many clients, only run the search query once. Caching is disabled unless the
+ * {@link FhirConstants#SEARCH_CACHE_ENABLED} global property is set to true.
+ * <p/>
+ * Results are cached per type of object, search parameters, sort and the roles of the current user
+ * and are discarded whenever an object of the searched type is changed. Changes to related objects
+ * are only reflected once the cached results expire.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class SearchResultCache {
+	
+	private static final int DEFAULT_TTL_SECONDS = 30;
+	
+	private static final long MAXIMUM_CACHED_SEARCHES = 1_000L;
+	
+	// incremented whenever an object of the given type changes, so that results computed before the change are not used
+	private static final Map<Class<?>, AtomicLong> GENERATIONS = new ConcurrentHashMap<>();
+	
+	private final Cache<CacheKey, CachedResult> results = CacheBuilder.newBuilder().maximumSize(MAXIMUM_CACHED_SEARCHES)
+	        .expireAfterWrite(1, TimeUnit.HOURS).build();
+	
+	private final CachedGlobalProperties globalProperties = new CachedGlobalProperties();
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	private FhirContext fhirContext;
+	
+	/**
+	 * Discards the cached results of any search for objects of the given type or one of its supertypes
+	 *
+	 * @param type the type of the object which changed
+	 */
+	public static void invalidate(Class<?> type) {
+		GENERATIONS.forEach((searchedType, generation) -> {
+			if (searchedType.isAssignableFrom(type)) {
+				generation.incrementAndGet();
+			}
+		});
+	}
+	
+	/**
+	 * Gets the uuids of the objects matching a search, using cached results if available
+	 *
+	 * @param theParams the parameters of the search
+	 * @param dao the Dao used to run the search
+	 * @return the uuids of the matching objects
+	 */
+	public <T extends OpenmrsObject & Auditable> List<String> getSearchResultUuids(SearchParameterMap theParams,
+	        FhirDao<T> dao) {
+		if (!"true".equalsIgnoreCase(globalProperties.get(FhirConstants.SEARCH_CACHE_ENABLED,
+		    () -> globalPropertyService.getGlobalProperty(FhirConstants.SEARCH_CACHE_ENABLED, "false")).trim())) {
+			return dao.getSearchResultUuids(theParams);
+		}
+		
+		String normalizedParams = normalize(theParams);
+		if (normalizedParams == null) {
+			return dao.getSearchResultUuids(theParams);
+		}
+		
+		Class<?> type = dao.getEntityType();
+		CacheKey key = new CacheKey(type, normalizedParams, getRoles());
+		AtomicLong generation = GENERATIONS.computeIfAbsent(type, t -> new AtomicLong());
+		
+		CachedResult cached = results.getIfPresent(key);
+		if (cached != null && cached.getGeneration() == generation.get()
+		        && cached.getExpires() > System.currentTimeMillis()) {
+			return cached.getUuids();
+		}
+		
+		// the generation is read before running the search, so results are not cached if the type changes while searching
+		long searchGeneration = generation.get();
+		List<String> uuids = Collections.unmodifiableList(new ArrayList<>(dao.getSearchResultUuids(theParams)));
+		
+		long ttl = TimeUnit.SECONDS.toMillis(globalProperties.get(FhirConstants.SEARCH_CACHE_TTL,
+		    () -> globalPropertyService.getGlobalProperty(FhirConstants.SEARCH_CACHE_TTL, DEFAULT_TTL_SECONDS)));
+		results.put(key, new CachedResult(uuids, searchGeneration, System.currentTimeMillis() + ttl));
+		
+		return uuids;
+	}
+	
+	/**
+	 * Renders the search parameters and sort as a string which does not depend on the order in which
+	 * parameters or their values were specified
+	 *
+	 * @param theParams the parameters of the search
+	 * @return the normalized search or null if the search includes parameters which cannot be normalized
+	 */
+	private String normalize(SearchParameterMap theParams) {
+		List<String> params = new ArrayList<>();
+		for (Map.Entry<String, List<PropParam<?>>> entry : theParams.getParameters()) {
+			String name = entry.getKey().toLowerCase(Locale.ROOT);
+			for (PropParam<?> propParam : entry.getValue()) {
+				String value = normalizeValue(name, propParam.getParam());
+				if (value == null) {
+					return null;
+				}
+				
+				params.add(name + ":" + propParam.getPropertyName() + "=" + value);
+			}
+		}
+		
+		Collections.sort(params);
+		
+		StringBuilder result = new StringBuilder(String.join("&", params));
+		for (SortSpec sortSpec = theParams.getSortSpec(); sortSpec != null; sortSpec = sortSpec.getChain()) {
+			result.append("|").append(sortSpec.getParamName()).append(" ").append(sortSpec.getOrder());
+		}
+		
+		return result.toString();
+	}
+	
+	private String normalizeValue(String name, Object value) {
+		if (value instanceof IQueryParameterAnd) {
+			return ((IQueryParameterAnd<?>) value).getValuesAsQueryTokens(fhirContext, name).stream()
+			        .map(SearchResultCache::normalizeQueryTokens).sorted().collect(Collectors.joining("&"));
+		}
+		
+		if (value instanceof IQueryParameterOr) {
+			return normalizeOrParams(((IQueryParameterOr<?>) value).getValuesAsQueryTokens());
+		}
+		
+		if (value instanceof IQueryParameterType) {
+			IQueryParameterType param = (IQueryParameterType) value;
+			return Objects.toString(param.getQueryParameterQualifier(), "") + "=" + param.getValueAsQueryToken(fhirContext);
+		}
+		
+		if (value instanceof Date) {
+			return String.valueOf(((Date) value).getTime());
+		}
+		
+		if (value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Enum) {
+			return value.toString();
+		}
+		
+		return null;
+	}
+	
+	private String normalizeOrParams(List<? extends IQueryParameterType> values) {
+		return values.stream().map(
+		    v -> Objects.toString(v.getQueryParameterQualifier(), "") + "=" + v.getValueAsQueryToken(fhirContext))
+		        .sorted().collect(Collectors.joining(","));
+	}
+	
+	private static String normalizeQueryTokens(QualifiedParamList values) {
+		return Objects.toString(values.getQualifier(), "") + "="
+		        + values.stream().sorted().collect(Collectors.joining(","));
+	}
+	
+	private static Set<String> getRoles() {
+		User user = Context.getAuthenticatedUser();
+		if (user == null) {
+			return Collections.emptySet();
+		}
+		
+		return user.getAllRoles().stream().map(Role::getRole).collect(Collectors.toCollection(TreeSet::new));
+	}
+	
+	@Value
+	private static class CacheKey {
+		
+		Class<?> type;
+		
+		String params;
+		
+		Set<String> roles;
+	}
+	
+	@Value
+	private static class CachedResult {
+		
+		List<String> uuids;
+		
+		long generation;
+		
+		long expires;
+	}
+}
@@ -46,6 +46,6 @@ public class EncounterReferenceTranslatorImpl extends BaseReferenceHandlingTrans
 			        "Reference must be to an Encounter not a " + getReferenceType(encounter).orElse(""));
 		}
 		
-		return getReferenceId(encounter).map(uuid -> encounterDao.get(uuid)).orElse(null);
+		return getReferenceId(encounter).map(uuid -> encounterDao.getReference(uuid)).orElse(null);
 	}
 }
@@ -176,6 +176,6 @@ public class LocationTranslatorImpl extends BaseReferenceHandlingTranslator impl
 			throw new IllegalArgumentException("Reference must be to a Location not a " + location.getType());
 		}
 		
-		return getReferenceId(location).map(uuid -> fhirLocationDao.get(uuid)).orElse(null);
+		return getReferenceId(location).map(uuid -> fhirLocationDao.getReference(uuid)).orElse(null);
 	}
 }
@@ -45,6 +45,6 @@ public class MedicationReferenceTranslatorImpl extends BaseReferenceHandlingTran
 			        "Reference must be a Medication not a " + getReferenceType(reference).orElse(""));
 		}
 		
-		return getReferenceId(reference).map(uuid -> medicationDao.get(uuid)).orElse(null);
+		return getReferenceId(reference).map(uuid -> medicationDao.getReference(uuid)).orElse(null);
 	}
 }
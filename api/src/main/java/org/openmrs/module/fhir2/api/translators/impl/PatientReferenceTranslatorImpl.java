@@ -46,6 +46,6 @@ public class PatientReferenceTranslatorImpl extends BaseReferenceHandlingTransla
 			        "Reference must be to an Patient not a " + getReferenceType(patient).orElse(""));
 		}
 		
-		return getReferenceId(patient).map(uuid -> patientDao.get(uuid)).orElse(null);
+		return getReferenceId(patient).map(uuid -> patientDao.getReference(uuid)).orElse(null);
 	}
 }
@@ -44,6 +44,6 @@ public class PractitionerReferenceTranslatorProviderImpl extends BaseReferenceHa
 			throw new IllegalArgumentException("Reference must be to an Provider not a " + getReferenceType(reference));
 		}
 		
-		return getReferenceId(reference).map(uuid -> practitionerDao.get(uuid)).orElse(null);
+		return getReferenceId(reference).map(uuid -> practitionerDao.getReference(uuid)).orElse(null);
 	}
 }
@@ -0,0 +1,57 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import lombok.Value;
+
+/**
+ * Caches settings read from global properties on hot paths, such as while building every search, so
+ * that they don't cost a database query each time they are used. Each value is re-read once it is a
+ * minute old, so a changed global property takes effect within a minute.
+ */
+public class CachedGlobalProperties {
+	
+	private static final long REFRESH_NANOS = TimeUnit.MINUTES.toNanos(1);
+	
+	private final Map<String, CachedValue> values = new ConcurrentHashMap<>();
+	
+	/**
+	 * Gets the value of a setting, loading it if it has not been read yet or was last read more than a
+	 * minute ago
+	 *
+	 * @param key the name of the global property, or of the setting derived from global properties
+	 * @param loader reads the current value of the setting
+	 * @return the cached or freshly loaded value, which may be null
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String key, Supplier<T> loader) {
+		long now = System.nanoTime();
+		CachedValue cached = values.get(key);
+		if (cached == null || now - cached.getReadAt() >= REFRESH_NANOS) {
+			cached = new CachedValue(loader.get(), now);
+			values.put(key, cached);
+		}
+		
+		return (T) cached.getValue();
+	}
+	
+	@Value
+	private static class CachedValue {
+		
+		Object value;
+		
+		long readAt;
+	}
+}
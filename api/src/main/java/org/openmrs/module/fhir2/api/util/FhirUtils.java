@@ -10,6 +10,14 @@
 package org.openmrs.module.fhir2.api.util;
 
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
 
 public class FhirUtils {
 	
@@ -17,6 +25,8 @@ public class FhirUtils {
 	
 	private static final long MSB = 0x8000000000000000L;
 	
+	private static final Pattern SEARCH_TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+	
 	public static String uniqueUuid() {
 		SecureRandom generator = numberGenerator;
 		if (generator == null) {
@@ -25,4 +35,34 @@ public class FhirUtils {
 		
 		return Long.toHexString(MSB | generator.nextLong()) + Long.toHexString(MSB | generator.nextLong());
 	}
+	
+	/**
+	 * Normalizes a value for use in the search token index by stripping accents and case-folding it
+	 *
+	 * @param value the value to normalize
+	 * @return the normalized value or null if value is null
+	 */
+	public static String normalizeSearchToken(String value) {
+		if (value == null) {
+			return null;
+		}
+		
+		return StringUtils.stripAccents(value).toLowerCase(Locale.ROOT).trim();
+	}
+	
+	/**
+	 * Splits a value into the normalized tokens stored in the search token index, e.g. "Jean-Claude
+	 * Müller" becomes "jean", "claude" and "muller"
+	 *
+	 * @param value the value to tokenize
+	 * @return the distinct normalized tokens in the order they appear in the value
+	 */
+	public static List<String> normalizeSearchTokens(String value) {
+		if (StringUtils.isBlank(value)) {
+			return Collections.emptyList();
+		}
+		
+		return Arrays.stream(SEARCH_TOKEN_SEPARATOR.split(normalizeSearchToken(value))).filter(StringUtils::isNotEmpty)
+		        .distinct().collect(Collectors.toList());
+	}
 }
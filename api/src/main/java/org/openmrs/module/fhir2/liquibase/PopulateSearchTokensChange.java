@@ -0,0 +1,150 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.liquibase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.fhir2.FhirSearchToken;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+
+/**
+ * Populates the {@code fhir_search_token} table from the existing names and identifiers. The tokens
+ * are normalized in Java, so that they match the tokens written as names and identifiers change.
+ */
+public class PopulateSearchTokensChange implements CustomTaskChange {
+	
+	private static final int BATCH_SIZE = 1000;
+	
+	private static final String SELECT_NAMES = "select person_id, given_name, middle_name, family_name "
+	        + "from person_name where voided = ? order by person_id";
+	
+	private static final String SELECT_IDENTIFIERS = "select patient_id, identifier from patient_identifier "
+	        + "where voided = ? order by patient_id";
+	
+	private static final String INSERT_SEARCH_TOKEN = "insert into fhir_search_token (person_id, token_type, token) "
+	        + "values (?, ?, ?)";
+	
+	private int tokenCount = 0;
+	
+	@Override
+	public void execute(Database database) throws CustomChangeException {
+		Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+		
+		try (PreparedStatement insert = connection.prepareStatement(INSERT_SEARCH_TOKEN)) {
+			try (PreparedStatement select = connection.prepareStatement(SELECT_NAMES)) {
+				select.setBoolean(1, false);
+				
+				try (ResultSet resultSet = select.executeQuery()) {
+					Integer currentPersonId = null;
+					Set<String> givenTokens = new LinkedHashSet<>();
+					Set<String> middleTokens = new LinkedHashSet<>();
+					Set<String> familyTokens = new LinkedHashSet<>();
+					
+					while (resultSet.next()) {
+						int personId = resultSet.getInt(1);
+						if (currentPersonId != null && personId != currentPersonId) {
+							addSearchTokens(insert, currentPersonId, FhirSearchToken.GIVEN, givenTokens);
+							addSearchTokens(insert, currentPersonId, FhirSearchToken.MIDDLE, middleTokens);
+							addSearchTokens(insert, currentPersonId, FhirSearchToken.FAMILY, familyTokens);
+						}
+						
+						currentPersonId = personId;
+						givenTokens.addAll(FhirUtils.normalizeSearchTokens(resultSet.getString(2)));
+						middleTokens.addAll(FhirUtils.normalizeSearchTokens(resultSet.getString(3)));
+						familyTokens.addAll(FhirUtils.normalizeSearchTokens(resultSet.getString(4)));
+					}
+					
+					if (currentPersonId != null) {
+						addSearchTokens(insert, currentPersonId, FhirSearchToken.GIVEN, givenTokens);
+						addSearchTokens(insert, currentPersonId, FhirSearchToken.MIDDLE, middleTokens);
+						addSearchTokens(insert, currentPersonId, FhirSearchToken.FAMILY, familyTokens);
+					}
+				}
+			}
+			
+			try (PreparedStatement select = connection.prepareStatement(SELECT_IDENTIFIERS)) {
+				select.setBoolean(1, false);
+				
+				try (ResultSet resultSet = select.executeQuery()) {
+					Integer currentPersonId = null;
+					Set<String> identifierTokens = new LinkedHashSet<>();
+					
+					while (resultSet.next()) {
+						int personId = resultSet.getInt(1);
+						if (currentPersonId != null && personId != currentPersonId) {
+							addSearchTokens(insert, currentPersonId, FhirSearchToken.IDENTIFIER, identifierTokens);
+						}
+						
+						currentPersonId = personId;
+						String identifier = FhirUtils.normalizeSearchToken(resultSet.getString(2));
+						if (StringUtils.isNotEmpty(identifier)) {
+							identifierTokens.add(identifier);
+						}
+					}
+					
+					if (currentPersonId != null) {
+						addSearchTokens(insert, currentPersonId, FhirSearchToken.IDENTIFIER, identifierTokens);
+					}
+				}
+			}
+			
+			insert.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new CustomChangeException("Unable to populate the fhir_search_token table", e);
+		}
+	}
+	
+	private void addSearchTokens(PreparedStatement insert, Integer personId, String tokenType, Set<String> tokens)
+	        throws SQLException {
+		for (String token : tokens) {
+			insert.setInt(1, personId);
+			insert.setString(2, tokenType);
+			insert.setString(3, token);
+			insert.addBatch();
+			
+			if (++tokenCount % BATCH_SIZE == 0) {
+				insert.executeBatch();
+			}
+		}
+		
+		tokens.clear();
+	}
+	
+	@Override
+	public String getConfirmationMessage() {
+		return "Added " + tokenCount + " search tokens to the fhir_search_token table";
+	}
+	
+	@Override
+	public void setUp() {
+	}
+	
+	@Override
+	public void setFileOpener(ResourceAccessor resourceAccessor) {
+	}
+	
+	@Override
+	public ValidationErrors validate(Database database) {
+		return null;
+	}
+}
@@ -17,6 +17,8 @@ import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
 import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.OptionalParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
@@ -24,6 +26,7 @@ import ca.uhn.fhir.rest.annotation.Search;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
@@ -40,6 +43,8 @@ import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Practitioner;
 import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.StringType;
+import org.openmrs.module.fhir2.api.FhirBulkImportService;
 import org.openmrs.module.fhir2.api.FhirEncounterService;
 import org.openmrs.module.fhir2.providers.util.FhirProviderUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,6 +59,9 @@ public class EncounterFhirResourceProvider implements IResourceProvider {
 	@Autowired
 	private FhirEncounterService encounterService;
 	
+	@Autowired
+	private FhirBulkImportService bulkImportService;
+	
 	@Override
 	public Class<? extends IBaseResource> getResourceType() {
 		return Encounter.class;
@@ -70,22 +78,41 @@ public class EncounterFhirResourceProvider implements IResourceProvider {
 	
 	@Create
 	@SuppressWarnings("unused")
-	public MethodOutcome createEncounter(@ResourceParam Encounter encounter) {
+	public MethodOutcome createEncounter(@ResourceParam Encounter encounter, RequestDetails requestDetails) {
+		if (FhirProviderUtils.isMinimalResponse(requestDetails)) {
+			return FhirProviderUtils.withRequestedOperationOutcome(FhirProviderUtils
+			        .buildCreate(new IdType(getResourceType().getSimpleName(), encounterService.createMinimal(encounter))),
+			    requestDetails);
+		}
+		
 		return FhirProviderUtils.buildCreate(encounterService.create(encounter));
 	}
 	
 	@Update
 	@SuppressWarnings("unused")
-	public MethodOutcome updateEncounter(@IdParam IdType id, @ResourceParam Encounter encounter) {
+	public MethodOutcome updateEncounter(@IdParam IdType id, @ResourceParam Encounter encounter,
+	        RequestDetails requestDetails) {
 		if (id == null || id.getIdPart() == null) {
 			throw new InvalidRequestException("id must be specified to update");
 		}
 		
 		encounter.setId(id.getIdPart());
 		
+		if (FhirProviderUtils.isMinimalResponse(requestDetails)) {
+			encounterService.updateMinimal(id.getIdPart(), encounter);
+			return FhirProviderUtils.withRequestedOperationOutcome(
+			    FhirProviderUtils.buildUpdate(new IdType(getResourceType().getSimpleName(), id.getIdPart())),
+			    requestDetails);
+		}
+		
 		return FhirProviderUtils.buildUpdate(encounterService.update(id.getIdPart(), encounter));
 	}
 	
+	@Operation(name = "$import")
+	public OperationOutcome importEncounters(@OperationParam(name = "inputPath", min = 1) StringType inputPath) {
+		return bulkImportService.importResources(encounterService, Encounter.class, inputPath.getValue());
+	}
+	
 	@Delete
 	@SuppressWarnings("unused")
 	public OperationOutcome deleteEncounter(@IdParam @NotNull IdType id) {
@@ -12,19 +12,26 @@ package org.openmrs.module.fhir2.providers.r4;
 import javax.validation.constraints.NotNull;
 
 import java.util.List;
+import java.util.Map;
 
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.annotation.ConditionalUrlParam;
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
 import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.OptionalParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
 import ca.uhn.fhir.rest.annotation.Search;
 import ca.uhn.fhir.rest.annotation.Sort;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.QualifiedParamList;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
@@ -32,6 +39,7 @@ import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.server.IResourceProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import lombok.AccessLevel;
 import lombok.Setter;
@@ -42,6 +50,8 @@ import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.StringType;
+import org.openmrs.module.fhir2.api.FhirBulkImportService;
 import org.openmrs.module.fhir2.api.FhirObservationService;
 import org.openmrs.module.fhir2.providers.util.FhirProviderUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -57,6 +67,9 @@ public class ObservationFhirResourceProvider implements IResourceProvider {
 	@Autowired
 	private FhirObservationService observationService;
 	
+	@Autowired
+	private FhirBulkImportService bulkImportService;
+	
 	@Override
 	public Class<? extends IBaseResource> getResourceType() {
 		return Observation.class;
@@ -81,12 +94,38 @@ public class ObservationFhirResourceProvider implements IResourceProvider {
 	}
 	
 	@Create
-	public MethodOutcome createObservationResource(@ResourceParam Observation observation) {
+	public MethodOutcome createObservationResource(@ResourceParam Observation observation,
+	        @ConditionalUrlParam String conditionalUrl, RequestDetails requestDetails) {
+		boolean minimal = FhirProviderUtils.isMinimalResponse(requestDetails);
+		
+		if (conditionalUrl != null) {
+			return FhirProviderUtils.withRequestedOperationOutcome(
+			    FhirProviderUtils.buildConditional(
+			        observationService.createConditional(observation, conditionalUrl, minimal),
+			        getResourceType().getSimpleName()),
+			    requestDetails);
+		}
+		
+		if (minimal) {
+			IdType id = new IdType(getResourceType().getSimpleName(), observationService.createMinimal(observation));
+			return FhirProviderUtils.withRequestedOperationOutcome(FhirProviderUtils.buildCreate(id), requestDetails);
+		}
+		
 		return FhirProviderUtils.buildCreate(observationService.create(observation));
 	}
 	
+	@Operation(name = "$import")
+	public OperationOutcome importObservations(@OperationParam(name = "inputPath", min = 1) StringType inputPath) {
+		return bulkImportService.importResources(observationService, Observation.class, inputPath.getValue());
+	}
+	
 	@Delete
-	public OperationOutcome deleteObservationResource(@IdParam @NotNull IdType id) {
+	public OperationOutcome deleteObservationResource(@IdParam IdType id,
+	        @ConditionalUrlParam(supportsMultiple = true) String conditionalUrl, RequestDetails requestDetails) {
+		if ((id == null || id.getIdPart() == null) && conditionalUrl != null) {
+			return deleteObservationsMatching(conditionalUrl, requestDetails.getFhirContext());
+		}
+		
 		Observation observation = observationService.delete(id.getIdPart());
 		if (observation == null) {
 			throw new ResourceNotFoundException("Could not find observation to delete with id" + id.getIdPart());
@@ -121,4 +160,52 @@ public class ObservationFhirResourceProvider implements IResourceProvider {
 		return observationService.searchForObservations(encounterReference, patientReference, hasMemberReference,
 		    valueConcept, valueDateParam, valueQuantityParam, valueStringParam, date, code, category, id, lastUpdated, sort);
 	}
+	
+	private OperationOutcome deleteObservationsMatching(String conditionalUrl, FhirContext fhirContext) {
+		Map<String, List<QualifiedParamList>> params = FhirProviderUtils.parseConditionalUrl(conditionalUrl);
+		
+		ReferenceAndListParam encounterReference = FhirProviderUtils.removeConditionalParam(fhirContext, params,
+		    Observation.SP_ENCOUNTER, new ReferenceAndListParam());
+		ReferenceAndListParam patientReference = FhirProviderUtils.removeConditionalParam(fhirContext, params,
+		    Observation.SP_SUBJECT, new ReferenceAndListParam());
+		ReferenceAndListParam patientParam = FhirProviderUtils.removeConditionalParam(fhirContext, params,
+		    Observation.SP_PATIENT, new ReferenceAndListParam());
+		TokenAndListParam valueConcept = FhirProviderUtils.removeConditionalParam(fhirContext, params,
+		    Observation.SP_VALUE_CONCEPT, new TokenAndListParam());
+		DateRangeParam valueDateParam = FhirProviderUtils.removeConditionalParam(fhirContext, params,
+		    Observation.SP_VALUE_DATE, new DateRangeParam());
+		QuantityAndListParam valueQuantityParam = FhirProviderUtils.removeConditionalParam(fhirContext, params,
+		    Observation.SP_VALUE_QUANTITY, new QuantityAndListParam());
+		StringAndListParam valueStringParam = FhirProviderUtils.removeConditionalParam(fhirContext, params,
+		    Observation.SP_VALUE_STRING, new StringAndListParam());
+		DateRangeParam date = FhirProviderUtils.removeConditionalParam(fhirContext, params, Observation.SP_DATE,
+		    new DateRangeParam());
+		TokenAndListParam code = FhirProviderUtils.removeConditionalParam(fhirContext, params, Observation.SP_CODE,
+		    new TokenAndListParam());
+		TokenAndListParam category = FhirProviderUtils.removeConditionalParam(fhirContext, params,
+		    Observation.SP_CATEGORY, new TokenAndListParam());
+		TokenAndListParam id = FhirProviderUtils.removeConditionalParam(fhirContext, params, Observation.SP_RES_ID,
+		    new TokenAndListParam());
+		DateRangeParam lastUpdated = FhirProviderUtils.removeConditionalParam(fhirContext, params, "_lastUpdated",
+		    new DateRangeParam());
+		
+		// an unsupported parameter would otherwise be silently ignored, deleting more than was asked for
+		if (!params.isEmpty()) {
+			throw new InvalidRequestException(
+			        "Conditional delete of Observations does not support the parameters " + params.keySet());
+		}
+		
+		// unlike a search, where patient replaces subject, a delete must match both, so nothing is voided that
+		// only one of them selects
+		if (patientReference == null) {
+			patientReference = patientParam;
+		} else if (patientParam != null) {
+			patientParam.getValuesAsQueryTokens().forEach(patientReference::addAnd);
+		}
+		
+		int deleted = observationService.deleteObservations(encounterReference, patientReference, valueConcept,
+		    valueDateParam, valueQuantityParam, valueStringParam, date, code, category, id, lastUpdated);
+		
+		return FhirProviderUtils.buildDelete(deleted, getResourceType().getSimpleName());
+	}
 }
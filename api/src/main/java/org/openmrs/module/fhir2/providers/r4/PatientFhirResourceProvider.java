@@ -13,6 +13,7 @@ import javax.validation.constraints.NotNull;
 
 import java.util.List;
 
+import ca.uhn.fhir.rest.annotation.ConditionalUrlParam;
 import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
 import ca.uhn.fhir.rest.annotation.History;
@@ -26,6 +27,7 @@ import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
@@ -69,19 +71,52 @@ public class PatientFhirResourceProvider implements IResourceProvider {
 	}
 	
 	@Create
-	public MethodOutcome createPatient(@ResourceParam Patient patient) {
+	public MethodOutcome createPatient(@ResourceParam Patient patient, @ConditionalUrlParam String conditionalUrl,
+	        RequestDetails requestDetails) {
+		boolean minimal = FhirProviderUtils.isMinimalResponse(requestDetails);
+		
+		if (conditionalUrl != null) {
+			return FhirProviderUtils.withRequestedOperationOutcome(
+			    FhirProviderUtils.buildConditional(patientService.createConditional(patient, conditionalUrl, minimal),
+			        getResourceType().getSimpleName()),
+			    requestDetails);
+		}
+		
+		if (minimal) {
+			return FhirProviderUtils.withRequestedOperationOutcome(FhirProviderUtils
+			        .buildCreate(new IdType(getResourceType().getSimpleName(), patientService.createMinimal(patient))),
+			    requestDetails);
+		}
+		
 		return FhirProviderUtils.buildCreate(patientService.create(patient));
 	}
 	
 	@Update
 	@SuppressWarnings("unused")
-	public MethodOutcome updatePatient(@IdParam IdType id, @ResourceParam Patient patient) {
+	public MethodOutcome updatePatient(@IdParam IdType id, @ResourceParam Patient patient,
+	        @ConditionalUrlParam String conditionalUrl, RequestDetails requestDetails) {
+		boolean minimal = FhirProviderUtils.isMinimalResponse(requestDetails);
+		
+		if (conditionalUrl != null && (id == null || id.getIdPart() == null)) {
+			return FhirProviderUtils.withRequestedOperationOutcome(
+			    FhirProviderUtils.buildConditional(patientService.updateConditional(patient, conditionalUrl, minimal),
+			        getResourceType().getSimpleName()),
+			    requestDetails);
+		}
+		
 		if (id == null || id.getIdPart() == null) {
 			throw new InvalidRequestException("id must be specified to update");
 		}
 		
 		patient.setId(id.getIdPart());
 		
+		if (minimal) {
+			patientService.updateMinimal(id.getIdPart(), patient);
+			return FhirProviderUtils.withRequestedOperationOutcome(
+			    FhirProviderUtils.buildUpdate(new IdType(getResourceType().getSimpleName(), id.getIdPart())),
+			    requestDetails);
+		}
+		
 		return FhirProviderUtils.buildUpdate(patientService.update(id.getIdPart(), patient));
 	}
 	
@@ -9,10 +9,24 @@
  */
 package org.openmrs.module.fhir2.providers.util;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.rest.api.QualifiedParamList;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.util.UrlUtil;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.openmrs.module.fhir2.api.ConditionalResult;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class FhirProviderUtils {
@@ -43,6 +57,70 @@ public class FhirProviderUtils {
 		return buildWithResource(methodOutcome, resource);
 	}
 	
+	public static MethodOutcome buildCreate(IIdType id) {
+		MethodOutcome methodOutcome = new MethodOutcome();
+		methodOutcome.setCreated(true);
+		methodOutcome.setId(id);
+		return methodOutcome;
+	}
+	
+	public static MethodOutcome buildUpdate(IIdType id) {
+		MethodOutcome methodOutcome = new MethodOutcome();
+		methodOutcome.setCreated(false);
+		methodOutcome.setId(id);
+		return methodOutcome;
+	}
+	
+	public static MethodOutcome buildConditional(ConditionalResult<? extends IAnyResource> result, String resourceType) {
+		MethodOutcome methodOutcome = new MethodOutcome();
+		methodOutcome.setCreated(result.isCreated());
+		
+		if (result.getResource() == null) {
+			methodOutcome.setId(new org.hl7.fhir.r4.model.IdType(resourceType, result.getId()));
+			return methodOutcome;
+		}
+		
+		return buildWithResource(methodOutcome, result.getResource());
+	}
+	
+	/**
+	 * Determines whether the client asked not to have the resource returned from a create or update,
+	 * i.e. sent {@code Prefer: return=minimal} or {@code Prefer: return=OperationOutcome}, in which case
+	 * the saved object need not be translated back into a FHIR resource
+	 *
+	 * @param requestDetails the current request
+	 * @return true if the resource will not be returned to the client
+	 */
+	public static boolean isMinimalResponse(RequestDetails requestDetails) {
+		String preferredReturn = getPreferredReturn(requestDetails);
+		return Constants.HEADER_PREFER_RETURN_MINIMAL.equals(preferredReturn)
+		        || Constants.HEADER_PREFER_RETURN_OPERATION_OUTCOME.equals(preferredReturn);
+	}
+	
+	/**
+	 * Adds an informational OperationOutcome to the outcome of a create or update if the client sent
+	 * {@code Prefer: return=OperationOutcome}, as that is what HAPI returns instead of the resource
+	 *
+	 * @param methodOutcome the outcome of the create or update
+	 * @param requestDetails the current request
+	 * @return the same outcome
+	 */
+	public static MethodOutcome withRequestedOperationOutcome(MethodOutcome methodOutcome, RequestDetails requestDetails) {
+		if (!Constants.HEADER_PREFER_RETURN_OPERATION_OUTCOME.equals(getPreferredReturn(requestDetails))) {
+			return methodOutcome;
+		}
+		
+		org.hl7.fhir.r4.model.OperationOutcome outcome = new org.hl7.fhir.r4.model.OperationOutcome();
+		outcome.addIssue().setSeverity(org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity.INFORMATION)
+		        .setCode(org.hl7.fhir.r4.model.OperationOutcome.IssueType.INFORMATIONAL)
+		        .setDiagnostics(String.format("Successfully %s resource %s",
+		            Boolean.TRUE.equals(methodOutcome.getCreated()) ? "created" : "updated",
+		            methodOutcome.getId() == null ? "" : methodOutcome.getId().toUnqualifiedVersionless().getValue()));
+		methodOutcome.setOperationOutcome(outcome);
+		
+		return methodOutcome;
+	}
+	
 	public static org.hl7.fhir.r4.model.OperationOutcome buildDelete(org.hl7.fhir.r4.model.Resource resource) {
 		org.hl7.fhir.r4.model.OperationOutcome outcome = new org.hl7.fhir.r4.model.OperationOutcome();
 		outcome.addIssue().setSeverity(org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity.INFORMATION)
@@ -57,6 +135,81 @@ public class FhirProviderUtils {
 		return outcome;
 	}
 	
+	public static org.hl7.fhir.r4.model.OperationOutcome buildDelete(int deleted, String resourceType) {
+		org.hl7.fhir.r4.model.OperationOutcome outcome = new org.hl7.fhir.r4.model.OperationOutcome();
+		outcome.addIssue().setSeverity(org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity.INFORMATION)
+		        .setCode(org.hl7.fhir.r4.model.OperationOutcome.IssueType.INFORMATIONAL).setDetails(MSG_DELETED_R4)
+		        .setDiagnostics(String.format("Deleted %d %s resources", deleted, resourceType));
+		return outcome;
+	}
+	
+	/**
+	 * Splits the query string of a conditional url, e.g. {@code Observation?subject.identifier=1234},
+	 * into the parameter lists HAPI uses to populate search parameters, keyed by parameter name without
+	 * qualifiers or chains
+	 *
+	 * @param conditionalUrl the conditional url
+	 * @return the parameters of the url
+	 */
+	public static Map<String, List<QualifiedParamList>> parseConditionalUrl(String conditionalUrl) {
+		Map<String, List<QualifiedParamList>> params = new HashMap<>();
+		
+		UrlUtil.parseQueryString(conditionalUrl.substring(conditionalUrl.indexOf('?') + 1)).forEach((key, values) -> {
+			int qualifierStart = StringUtils.indexOfAny(key, ':', '.');
+			String name = qualifierStart < 0 ? key : key.substring(0, qualifierStart);
+			String qualifier = qualifierStart < 0 ? null : key.substring(qualifierStart);
+			
+			for (String value : values) {
+				params.computeIfAbsent(name, k -> new ArrayList<>())
+				        .add(QualifiedParamList.splitQueryStringByCommasIgnoreEscape(qualifier, value));
+			}
+		});
+		
+		return params;
+	}
+	
+	/**
+	 * Removes the named parameter from the parsed parameters of a conditional url and populates the
+	 * supplied search parameter from it
+	 *
+	 * @param fhirContext the current {@link FhirContext}
+	 * @param params the parameters returned by {@link #parseConditionalUrl(String)}
+	 * @param name the name of the parameter
+	 * @param param an empty search parameter of the appropriate type
+	 * @return the populated search parameter or null if the conditional url does not include it
+	 */
+	public static <T extends IQueryParameterAnd<?>> T removeConditionalParam(FhirContext fhirContext,
+	        Map<String, List<QualifiedParamList>> params, String name, T param) {
+		List<QualifiedParamList> values = params.remove(name);
+		
+		if (values == null) {
+			return null;
+		}
+		
+		param.setValuesAsQueryTokens(fhirContext, name, values);
+		return param;
+	}
+	
+	private static String getPreferredReturn(RequestDetails requestDetails) {
+		if (requestDetails == null) {
+			return null;
+		}
+		
+		String prefer = requestDetails.getHeader(Constants.HEADER_PREFER);
+		if (prefer == null) {
+			return null;
+		}
+		
+		for (String preference : prefer.split("[,;]")) {
+			String[] nameAndValue = preference.split("=", 2);
+			if (nameAndValue.length == 2 && Constants.HEADER_PREFER_RETURN.equals(nameAndValue[0].trim())) {
+				return StringUtils.strip(nameAndValue[1].trim(), "\"");
+			}
+		}
+		
+		return null;
+	}
+	
 	private static MethodOutcome buildWithResource(MethodOutcome methodOutcome, IAnyResource resource) {
 		if (resource != null) {
 			methodOutcome.setId(resource.getIdElement());
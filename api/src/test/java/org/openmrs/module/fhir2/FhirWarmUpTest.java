@@ -0,0 +1,128 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.narrative.INarrativeGenerator;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.rest.server.IResourceProvider;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.api.mappings.BaseMapping;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FhirWarmUpTest {
+	
+	@Mock
+	private FhirContext fhirR4;
+	
+	@Mock
+	private FhirContext fhirR3;
+	
+	@Mock
+	private IResourceProvider patientProvider;
+	
+	@Mock
+	private IResourceProvider observationProvider;
+	
+	@Mock
+	private BaseMapping mapping;
+	
+	@Mock
+	private BaseMapping otherMapping;
+	
+	@Mock
+	private INarrativeGenerator narrativeGenerator;
+	
+	@Mock
+	private RuntimeResourceDefinition observationDefinition;
+	
+	private FhirWarmUp fhirWarmUp;
+	
+	@Before
+	public void setup() {
+		fhirWarmUp = new FhirWarmUp();
+		fhirWarmUp.setFhirR4(fhirR4);
+		fhirWarmUp.setFhirR3(fhirR3);
+		fhirWarmUp.setResourceProviders(Arrays.asList(patientProvider, observationProvider));
+		fhirWarmUp.setMappings(Arrays.asList(mapping, otherMapping));
+	}
+	
+	@Test
+	public void warmUp_shouldInitializeEveryMapping() {
+		fhirWarmUp.warmUp();
+		
+		verify(mapping).initialize();
+		verify(otherMapping).initialize();
+	}
+	
+	@Test
+	public void warmUp_shouldScanEveryResourceTypeOfBothFhirVersions() {
+		fhirWarmUp.warmUp();
+		
+		verify(fhirR4).getResourceDefinition("Patient");
+		verify(fhirR4).getResourceDefinition("Observation");
+		verify(fhirR3).getResourceDefinition("Patient");
+		verify(fhirR3).getResourceDefinition("Observation");
+	}
+	
+	@Test
+	public void warmUp_shouldSkipNarrativesWhenNarrativeGeneratorIsMissing() {
+		when(fhirR4.getNarrativeGenerator()).thenReturn(null);
+		
+		fhirWarmUp.warmUp();
+		
+		verify(patientProvider, never()).getResourceType();
+		verify(observationProvider, never()).getResourceType();
+		verify(mapping).initialize();
+	}
+	
+	@Test
+	public void warmUp_shouldContinueWhenResourceTypeCannotBeScanned() {
+		when(fhirR4.getResourceDefinition("Account")).thenThrow(new DataFormatException("Unknown resource type"));
+		
+		fhirWarmUp.warmUp();
+		
+		verify(fhirR4).getResourceDefinition("Patient");
+		verify(mapping).initialize();
+	}
+	
+	@Test
+	public void warmUp_shouldRenderNarrativesOfRemainingResourceTypesWhenOneFails() {
+		Observation observation = new Observation();
+		when(fhirR4.getNarrativeGenerator()).thenReturn(narrativeGenerator);
+		doReturn(Patient.class).when(patientProvider).getResourceType();
+		doReturn(Observation.class).when(observationProvider).getResourceType();
+		when(fhirR4.getResourceDefinition(Patient.class)).thenThrow(new DataFormatException("Unable to scan Patient"));
+		when(fhirR4.getResourceDefinition(Observation.class)).thenReturn(observationDefinition);
+		when(observationDefinition.newInstance()).thenReturn(observation);
+		
+		fhirWarmUp.warmUp();
+		
+		verify(narrativeGenerator).populateResourceNarrative(fhirR4, observation);
+		verify(narrativeGenerator, never()).populateResourceNarrative(any(), any(Patient.class));
+		verify(mapping).initialize();
+		verify(otherMapping).initialize();
+	}
+}
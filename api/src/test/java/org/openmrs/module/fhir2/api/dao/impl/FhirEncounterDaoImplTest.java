@@ -59,4 +59,17 @@ public class FhirEncounterDaoImplTest extends BaseModuleContextSensitiveTest {
 		Encounter encounter = dao.get(UNKNOWN_ENCOUNTER_UUID);
 		assertThat(encounter, nullValue());
 	}
+	
+	@Test
+	public void getReference_shouldReturnReferenceToMatchingEncounter() {
+		Encounter encounter = dao.getReference(ENCOUNTER_UUID);
+		assertThat(encounter, notNullValue());
+		assertThat(encounter.getUuid(), equalTo(ENCOUNTER_UUID));
+	}
+	
+	@Test
+	public void getReference_shouldReturnNullWithUnknownEncounterUuid() {
+		Encounter encounter = dao.getReference(UNKNOWN_ENCOUNTER_UUID);
+		assertThat(encounter, nullValue());
+	}
 }
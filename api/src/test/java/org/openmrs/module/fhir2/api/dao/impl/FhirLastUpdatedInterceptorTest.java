@@ -0,0 +1,121 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hibernate.criterion.Restrictions.eq;
+
+import java.util.Date;
+import java.util.List;
+
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.FhirLastUpdated;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class FhirLastUpdatedInterceptorTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String LAST_UPDATED_INITIAL_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirLastUpdatedInterceptorTest_initial_data.xml";
+	
+	private static final String LOCATION_UUID = "c0938432-1691-11df-97a5-7038c432aaba";
+	
+	private static final String OTHER_LOCATION_UUID = "c0938432-1691-11df-97a5-7038c432aabb";
+	
+	private static final String UNINDEXED_LOCATION_UUID = "c0938432-1691-11df-97a5-7038c432aabd";
+	
+	private static final String NEW_LOCATION_UUID = "5a2e9b16-6d4b-4b7c-9d2b-6a1ec1f3b7a4";
+	
+	@Autowired
+	private FhirLastUpdatedInterceptor interceptor;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private FhirLocationDaoImpl fhirLocationDao;
+	
+	@Before
+	public void setup() throws Exception {
+		fhirLocationDao = new FhirLocationDaoImpl();
+		fhirLocationDao.setSessionFactory(sessionFactory);
+		executeDataSet(LAST_UPDATED_INITIAL_DATA_XML);
+	}
+	
+	@Test
+	public void postFlush_shouldRecordLastUpdatedForSavedObject() {
+		Date dateCreated = new Date();
+		Location location = new Location();
+		location.setUuid(NEW_LOCATION_UUID);
+		location.setDateCreated(dateCreated);
+		
+		interceptor.onSave(location, null, null, null, null);
+		interceptor.postFlush(null);
+		
+		FhirLastUpdated lastUpdated = (FhirLastUpdated) sessionFactory.getCurrentSession()
+		        .createCriteria(FhirLastUpdated.class).add(eq("resourceType", Location.class.getName()))
+		        .add(eq("resourceUuid", NEW_LOCATION_UUID)).uniqueResult();
+		
+		assertThat(lastUpdated, notNullValue());
+		assertThat(lastUpdated.getLastUpdated().getTime() / 1000, equalTo(dateCreated.getTime() / 1000));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldSearchByLastUpdatedUsingIndex() {
+		DateRangeParam lastUpdated = new DateRangeParam().setLowerBound("2020-01-01").setUpperBound("2020-01-01");
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.COMMON_SEARCH_HANDLER,
+		    FhirConstants.LAST_UPDATED_PROPERTY, lastUpdated);
+		
+		List<String> results = fhirLocationDao.getSearchResultUuids(theParams);
+		
+		assertThat(results, contains(LOCATION_UUID));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldSortByLastUpdatedUsingIndex() {
+		DateRangeParam lastUpdated = new DateRangeParam().setLowerBound("2020-01-01");
+		SortSpec sort = new SortSpec("_lastUpdated");
+		sort.setOrder(SortOrderEnum.DESC);
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY, lastUpdated)
+		        .setSortSpec(sort);
+		
+		List<String> results = fhirLocationDao.getSearchResultUuids(theParams);
+		
+		assertThat(results, contains(OTHER_LOCATION_UUID, LOCATION_UUID));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldSortObjectsWithoutIndexRowByDateChanged() {
+		SortSpec sort = new SortSpec("_lastUpdated");
+		sort.setOrder(SortOrderEnum.DESC);
+		SearchParameterMap theParams = new SearchParameterMap().setSortSpec(sort);
+		
+		List<String> results = fhirLocationDao.getSearchResultUuids(theParams);
+		
+		assertThat(results, hasItem(UNINDEXED_LOCATION_UUID));
+		assertThat(results.subList(0, 3), contains(UNINDEXED_LOCATION_UUID, OTHER_LOCATION_UUID, LOCATION_UUID));
+	}
+}
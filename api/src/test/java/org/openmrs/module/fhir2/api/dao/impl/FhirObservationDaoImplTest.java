@@ -15,6 +15,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import ca.uhn.fhir.rest.param.TokenAndListParam;
@@ -22,6 +23,7 @@ import ca.uhn.fhir.rest.param.TokenParam;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Obs;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
@@ -41,6 +43,10 @@ public class FhirObservationDaoImplTest extends BaseModuleContextSensitiveTest {
 	
 	private static final String OBS_CONCEPT_ID = "5089";
 	
+	private static final String OBS_GROUP_UUID = "4efa62d2-6b8b-4803-a8fa-3f32ee54db4f";
+	
+	private static final String OBS_GROUP_MEMBER_UUID = "744b91f8-bdbc-4950-833b-002244e9fa2b";
+	
 	@Autowired
 	private FhirObservationDao dao;
 	
@@ -80,4 +86,19 @@ public class FhirObservationDaoImplTest extends BaseModuleContextSensitiveTest {
 		assertThat(obs, notNullValue());
 	}
 	
+	@Test
+	public void voidObjects_shouldVoidObsAndTheirGroupMembers() {
+		int voided = dao.voidObjects(Collections.singletonList(OBS_GROUP_UUID), "Incorrect device reading");
+		
+		Context.clearSession();
+		
+		assertThat(voided, equalTo(2));
+		
+		Obs group = dao.get(OBS_GROUP_UUID);
+		assertThat(group.getVoided(), equalTo(true));
+		assertThat(group.getVoidReason(), equalTo("Incorrect device reading"));
+		assertThat(group.getVoidedBy(), equalTo(Context.getAuthenticatedUser()));
+		assertThat(dao.get(OBS_GROUP_MEMBER_UUID).getVoided(), equalTo(true));
+	}
+	
 }
@@ -10,15 +10,27 @@
 package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hibernate.criterion.Restrictions.eq;
 
+import java.util.List;
+
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
 import org.hibernate.SessionFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Patient;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.FhirIdentifierLock;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
@@ -30,6 +42,12 @@ public class FhirPatientDaoImplTest extends BaseModuleContextSensitiveTest {
 	
 	private static final String BAD_PATIENT_UUID = "282390a6-3608-496d-9025-aecbc1235670";
 	
+	private static final String IDENTIFIED_PATIENT_UUID = "61b38324-e2fd-4feb-95b7-9e9a2a4400df";
+	
+	private static final String PATIENT_IDENTIFIER = "1234-4";
+	
+	private static final String PATIENT_IDENTIFIER_TYPE_NAME = "Test Identifier Type";
+	
 	private static final String[] PATIENT_SEARCH_DATA_FILES = {
 	        "org/openmrs/module/fhir2/api/dao/impl/FhirPatientDaoImplTest_initial_data.xml",
 	        "org/openmrs/module/fhir2/api/dao/impl/FhirPatientDaoImplTest_address_data.xml" };
@@ -76,4 +94,77 @@ public class FhirPatientDaoImplTest extends BaseModuleContextSensitiveTest {
 		
 		assertThat(result, nullValue());
 	}
+	
+	@Test
+	public void getPatientsByIdentifier_shouldRetrievePatientByIdentifier() {
+		List<Patient> result = dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, null);
+		
+		assertThat(result, hasSize(1));
+		assertThat(result.get(0).getUuid(), equalTo(IDENTIFIED_PATIENT_UUID));
+	}
+	
+	@Test
+	public void getPatientsByIdentifier_shouldRetrievePatientByIdentifierAndIdentifierType() {
+		List<Patient> result = dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, PATIENT_IDENTIFIER_TYPE_NAME);
+		
+		assertThat(result, hasSize(1));
+		assertThat(result.get(0).getUuid(), equalTo(IDENTIFIED_PATIENT_UUID));
+	}
+	
+	@Test
+	public void getPatientsByIdentifier_shouldRetrievePatientByIdentifierOfRetiredIdentifierType() {
+		PatientIdentifierType identifierType = (PatientIdentifierType) sessionFactory.getCurrentSession()
+		        .get(PatientIdentifierType.class, 1);
+		identifierType.setRetired(true);
+		identifierType.setRetireReason("test");
+		sessionFactory.getCurrentSession().flush();
+		
+		List<Patient> result = dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, PATIENT_IDENTIFIER_TYPE_NAME);
+		
+		assertThat(result, hasSize(1));
+		assertThat(result.get(0).getUuid(), equalTo(IDENTIFIED_PATIENT_UUID));
+	}
+	
+	@Test
+	public void getPatientsByIdentifier_shouldReturnEmptyListForUnknownIdentifierType() {
+		assertThat(dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, "Unknown Identifier Type"), empty());
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldFindPatientBySingleIdentifier() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
+		    new TokenAndListParam().addAnd(new TokenParam(PATIENT_IDENTIFIER_TYPE_NAME, PATIENT_IDENTIFIER)));
+		
+		assertThat(dao.getSearchResultUuids(theParams), contains(IDENTIFIED_PATIENT_UUID));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldFindPatientBySingleIdentifierCombinedWithOtherParameters() {
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
+		            new TokenAndListParam().addAnd(new TokenParam(PATIENT_IDENTIFIER)))
+		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY,
+		            new TokenAndListParam().addAnd(new TokenParam(IDENTIFIED_PATIENT_UUID)));
+		
+		assertThat(dao.getSearchResultUuids(theParams), contains(IDENTIFIED_PATIENT_UUID));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldReturnEmptyListForUnknownIdentifier() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
+		    new TokenAndListParam().addAnd(new TokenParam("unknown-identifier")));
+		
+		assertThat(dao.getSearchResultUuids(theParams), empty());
+	}
+	
+	@Test
+	public void lockIdentifier_shouldCreateSingleLockRowForIdentifier() {
+		dao.lockIdentifier(PATIENT_IDENTIFIER_TYPE_NAME, PATIENT_IDENTIFIER);
+		dao.lockIdentifier(PATIENT_IDENTIFIER_TYPE_NAME, PATIENT_IDENTIFIER);
+		
+		List<?> locks = sessionFactory.getCurrentSession().createCriteria(FhirIdentifierLock.class)
+		        .add(eq("identifierType", PATIENT_IDENTIFIER_TYPE_NAME)).add(eq("identifier", PATIENT_IDENTIFIER)).list();
+		
+		assertThat(locks, hasSize(1));
+	}
 }
@@ -0,0 +1,177 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Restrictions;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.FhirPreferredName;
+import org.openmrs.module.fhir2.FhirSearchToken;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class FhirPersonIndexInterceptorTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String PERSON_INDEX_INITIAL_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirPersonIndexInterceptorTest_initial_data.xml";
+	
+	private static final String PERSON_UUID = "0b7a5e4c-2c1e-4f3a-9d55-0f1a6c3d1001";
+	
+	private static final String NON_PREFERRED_PERSON_UUID = "0b7a5e4c-2c1e-4f3a-9d55-0f1a6c3d1002";
+	
+	private static final String VOIDED_PREFERRED_PERSON_UUID = "0b7a5e4c-2c1e-4f3a-9d55-0f1a6c3d1003";
+	
+	private static final String FAMILY_NAME = "Indextest";
+	
+	@Autowired
+	private FhirPersonIndexInterceptor interceptor;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private FhirPersonDaoImpl fhirPersonDao;
+	
+	@Before
+	public void setup() throws Exception {
+		fhirPersonDao = new FhirPersonDaoImpl();
+		fhirPersonDao.setSessionFactory(sessionFactory);
+		executeDataSet(PERSON_INDEX_INITIAL_DATA_XML);
+	}
+	
+	@Test
+	public void postFlush_shouldRecordPreferredName() {
+		recordNameChange(1001);
+		
+		assertThat(getPreferredName(1001).getPersonNameId(), equalTo(1002));
+	}
+	
+	@Test
+	public void postFlush_shouldRecordFirstNonVoidedNameWhenThereIsNoPreferredName() {
+		recordNameChange(1004);
+		
+		FhirPreferredName preferredName = getPreferredName(1004);
+		
+		assertThat(preferredName, notNullValue());
+		assertThat(preferredName.getPersonNameId(), equalTo(1007));
+	}
+	
+	@Test
+	public void postFlush_shouldRecordNormalizedSearchTokens() {
+		recordNameChange(1002);
+		
+		assertThat(getSearchTokens(1002, FhirSearchToken.GIVEN), containsInAnyOrder("mid", "elodie"));
+		assertThat(getSearchTokens(1002, FhirSearchToken.FAMILY), contains("indextest"));
+	}
+	
+	@Test
+	public void postFlush_shouldNotRecordSearchTokensForVoidedNames() {
+		recordNameChange(1004);
+		
+		assertThat(getSearchTokens(1004, FhirSearchToken.GIVEN), contains("beta"));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldSearchByGivenNameIgnoringCaseAndAccents() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.GIVEN_PROPERTY, new StringAndListParam().addAnd(new StringParam("ELOD")));
+		
+		List<String> results = fhirPersonDao.getSearchResultUuids(theParams);
+		
+		assertThat(results, contains(NON_PREFERRED_PERSON_UUID));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldSearchByNameContainingToken() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY, new StringAndListParam().addAnd(new StringParam("oun").setContains(true)));
+		
+		List<String> results = fhirPersonDao.getSearchResultUuids(theParams);
+		
+		assertThat(results, contains(VOIDED_PREFERRED_PERSON_UUID));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldMatchAnyWordOfNameLikeSearchWithoutIndex() {
+		FhirPersonDaoImpl unindexedPersonDao = new FhirPersonDaoImpl() {
+			
+			@Override
+			protected boolean isSearchTokenIndexEnabled() {
+				return false;
+			}
+		};
+		unindexedPersonDao.setSessionFactory(sessionFactory);
+		
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.NAME_PROPERTY, new StringAndListParam().addAnd(new StringParam("Zed Young")));
+		
+		List<String> indexedResults = fhirPersonDao.getSearchResultUuids(theParams);
+		List<String> unindexedResults = unindexedPersonDao.getSearchResultUuids(theParams);
+		
+		assertThat(indexedResults, containsInAnyOrder(PERSON_UUID, VOIDED_PREFERRED_PERSON_UUID));
+		assertThat(unindexedResults, containsInAnyOrder(indexedResults.toArray()));
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldSortByPreferredName() {
+		SortSpec sort = new SortSpec();
+		sort.setParamName("given");
+		sort.setOrder(SortOrderEnum.ASC);
+		
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER,
+		    FhirConstants.FAMILY_PROPERTY, new StringAndListParam().addAnd(new StringParam(FAMILY_NAME)))
+		        .setSortSpec(sort);
+		
+		List<String> results = fhirPersonDao.getSearchResultUuids(theParams);
+		
+		assertThat(results, contains(PERSON_UUID, NON_PREFERRED_PERSON_UUID, VOIDED_PREFERRED_PERSON_UUID));
+	}
+	
+	private void recordNameChange(Integer personId) {
+		PersonName name = new PersonName();
+		name.setPerson(new Person(personId));
+		
+		interceptor.onSave(name, null, null, null, null);
+		interceptor.postFlush(null);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<String> getSearchTokens(Integer personId, String tokenType) {
+		List<FhirSearchToken> tokens = sessionFactory.getCurrentSession().createCriteria(FhirSearchToken.class)
+		        .add(Restrictions.eq("personId", personId)).add(Restrictions.eq("tokenType", tokenType)).list();
+		
+		return tokens.stream().map(FhirSearchToken::getToken).collect(Collectors.toList());
+	}
+	
+	private FhirPreferredName getPreferredName(Integer personId) {
+		return (FhirPreferredName) sessionFactory.getCurrentSession().get(FhirPreferredName.class, personId);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.Serializable;
+
+import com.google.common.cache.Cache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.transaction.TestTransaction;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class FhirReferenceCacheInterceptorTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String REFERENCE_CACHE_INITIAL_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirReferenceCacheInterceptorTest_initial_data.xml";
+	
+	private static final String LOCATION_UUID = "c0938432-1691-11df-97a5-7038c432aaba";
+	
+	private static final String NEW_LOCATION_UUID = "9d4f2c1e-3b7a-4e61-8c5d-2f6a8b1e7c30";
+	
+	@Autowired
+	private FhirReferenceCacheInterceptor interceptor;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private FhirLocationDaoImpl fhirLocationDao;
+	
+	private Cache<String, Serializable> locationIds;
+	
+	@Before
+	public void setup() throws Exception {
+		fhirLocationDao = new FhirLocationDaoImpl();
+		fhirLocationDao.setSessionFactory(sessionFactory);
+		executeDataSet(REFERENCE_CACHE_INITIAL_DATA_XML);
+		
+		locationIds = FhirReferenceCacheInterceptor.getIdsByUuid(Location.class);
+		locationIds.invalidateAll();
+	}
+	
+	@Test
+	public void onFlushDirty_shouldEvictIdOfRetiredObject() {
+		Location location = (Location) sessionFactory.getCurrentSession().get(Location.class, 1);
+		locationIds.put(LOCATION_UUID, location.getId());
+		
+		location.setRetired(true);
+		location.setRetireReason("test");
+		sessionFactory.getCurrentSession().flush();
+		interceptor.onFlushDirty(location, location.getId(), null, null, null, null);
+		
+		assertThat(locationIds.getIfPresent(LOCATION_UUID), nullValue());
+	}
+	
+	@Test
+	public void onFlushDirty_shouldNotEvictIdOfActiveObject() {
+		Location location = (Location) sessionFactory.getCurrentSession().get(Location.class, 1);
+		locationIds.put(LOCATION_UUID, location.getId());
+		
+		location.setDescription("Updated description");
+		sessionFactory.getCurrentSession().flush();
+		interceptor.onFlushDirty(location, location.getId(), null, null, null, null);
+		
+		assertThat(locationIds.getIfPresent(LOCATION_UUID), equalTo(location.getId()));
+	}
+	
+	@Test
+	public void onDelete_shouldEvictIdOfPurgedObjectSoGetReferenceReturnsNull() {
+		Location location = saveNewLocation();
+		locationIds.put(NEW_LOCATION_UUID, location.getId());
+		
+		Session session = sessionFactory.getCurrentSession();
+		session.delete(location);
+		session.flush();
+		interceptor.onDelete(location, location.getId(), null, null, null);
+		
+		assertThat(locationIds.getIfPresent(NEW_LOCATION_UUID), nullValue());
+		assertThat(fhirLocationDao.getReference(NEW_LOCATION_UUID), nullValue());
+	}
+	
+	@Test
+	public void getReference_shouldNotCacheIdReadInRolledBackTransaction() {
+		saveNewLocation();
+		
+		assertThat(fhirLocationDao.getReference(NEW_LOCATION_UUID), notNullValue());
+		
+		TestTransaction.flagForRollback();
+		TestTransaction.end();
+		try {
+			assertThat(locationIds.getIfPresent(NEW_LOCATION_UUID), nullValue());
+		}
+		finally {
+			TestTransaction.start();
+		}
+	}
+	
+	private Location saveNewLocation() {
+		Location location = new Location();
+		location.setUuid(NEW_LOCATION_UUID);
+		location.setName("New test location");
+		
+		Session session = sessionFactory.getCurrentSession();
+		session.save(location);
+		session.flush();
+		
+		return location;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.fhir2.FhirTestConstants;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class FhirTerminologyIndexDaoImplTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String TERMINOLOGY_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirTerminologyIndexDaoImplTest_initial_data.xml";
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private FhirTerminologyIndexDaoImpl dao;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(TERMINOLOGY_DATA_XML);
+		
+		dao = new FhirTerminologyIndexDaoImpl();
+		dao.setSessionFactory(sessionFactory);
+	}
+	
+	@Test
+	public void getConceptIdsBySystemAndCodes_shouldReturnConceptIdForMappedCode() {
+		Set<Integer> result = dao.getConceptIdsBySystemAndCodes(FhirTestConstants.LOINC_SYSTEM_URL,
+		    Collections.singletonList("1000-1"));
+		
+		assertThat(result, contains(3));
+	}
+	
+	@Test
+	public void getConceptIdsBySystemAndCodes_shouldReturnConceptIdsForMultipleCodes() {
+		Set<Integer> result = dao.getConceptIdsBySystemAndCodes(FhirTestConstants.LOINC_SYSTEM_URL,
+		    Arrays.asList("1000-1", "1000-2"));
+		
+		assertThat(result, containsInAnyOrder(3, 4));
+	}
+	
+	@Test
+	public void getConceptIdsBySystemAndCodes_shouldReturnEmptySetForUnmappedCode() {
+		Set<Integer> result = dao.getConceptIdsBySystemAndCodes(FhirTestConstants.LOINC_SYSTEM_URL,
+		    Collections.singletonList("9999-9"));
+		
+		assertThat(result, empty());
+	}
+	
+	@Test
+	public void getConceptIdsBySystemAndCodes_shouldReturnEmptySetForUnknownSystem() {
+		Set<Integer> result = dao.getConceptIdsBySystemAndCodes("https://www.example.com", Collections.singletonList("1000-1"));
+		
+		assertThat(result, empty());
+	}
+	
+	@Test
+	public void getConceptIdsBySystemAndCodes_shouldResolveCodesAgainAfterCacheIsCleared() {
+		dao.getConceptIdsBySystemAndCodes(FhirTestConstants.LOINC_SYSTEM_URL, Collections.singletonList("1000-1"));
+		dao.clearCache();
+		
+		Set<Integer> result = dao.getConceptIdsBySystemAndCodes(FhirTestConstants.LOINC_SYSTEM_URL,
+		    Collections.singletonList("1000-1"));
+		
+		assertThat(result, contains(3));
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.server.exceptions.ForbiddenOperationException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.PayloadTooLargeException;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirObservationService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FhirBulkImportServiceImplTest {
+	
+	private static final String OBSERVATION = "{\"resourceType\":\"Observation\",\"status\":\"final\"}";
+	
+	private static final String FILE_NAME = "observations.ndjson";
+	
+	@Rule
+	public TemporaryFolder importDirectory = new TemporaryFolder();
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private FhirObservationService observationService;
+	
+	private FhirBulkImportServiceImpl bulkImportService;
+	
+	private boolean hasImportPrivilege = true;
+	
+	@Before
+	public void setup() {
+		bulkImportService = new FhirBulkImportServiceImpl() {
+			
+			@Override
+			protected File getImportDirectory() {
+				return importDirectory.getRoot();
+			}
+			
+			@Override
+			protected boolean hasImportPrivilege() {
+				return hasImportPrivilege;
+			}
+		};
+		
+		bulkImportService.setGlobalPropertyService(globalPropertyService);
+		bulkImportService.setFhirContext(FhirContext.forR4());
+	}
+	
+	@Test
+	public void importResources_shouldCreateResourcesInChunks() throws IOException {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_MAXIMUM_FILE_SIZE, 100)).thenReturn(100);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_CHUNK_SIZE, 500)).thenReturn(2);
+		when(observationService.createBatch(anyList())).thenReturn(Collections.emptyMap());
+		writeImportFile(OBSERVATION, OBSERVATION, "", OBSERVATION);
+		
+		OperationOutcome result = bulkImportService.importResources(observationService, Observation.class, FILE_NAME);
+		
+		verify(observationService, times(2)).createBatch(anyList());
+		assertThat(result.getIssue(), hasSize(1));
+		assertThat(result.getIssueFirstRep().getDiagnostics(),
+		    equalTo("Imported 3 Observation resources from " + FILE_NAME + ", 0 lines failed"));
+	}
+	
+	@Test
+	public void importResources_shouldReportLinesWhichCannotBeParsedOrValidated() throws IOException {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_MAXIMUM_FILE_SIZE, 100)).thenReturn(100);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_CHUNK_SIZE, 500)).thenReturn(500);
+		when(observationService.createBatch(anyList())).thenReturn(Collections.singletonMap(1, "Invalid observation"));
+		writeImportFile(OBSERVATION, "{\"resourceType\":\"Patient\"}", OBSERVATION);
+		
+		OperationOutcome result = bulkImportService.importResources(observationService, Observation.class, FILE_NAME);
+		
+		assertThat(result.getIssue(), hasSize(3));
+		assertThat(result.getIssue().get(0).getDiagnostics(),
+		    equalTo("Imported 1 Observation resources from " + FILE_NAME + ", 2 lines failed"));
+		assertThat(result.getIssue().get(1).getSeverity(), equalTo(OperationOutcome.IssueSeverity.ERROR));
+		assertThat(result.getIssue().get(1).getDiagnostics().startsWith("Line 2: "), equalTo(true));
+		assertThat(result.getIssue().get(2).getDiagnostics(), equalTo("Line 3: Invalid observation"));
+	}
+	
+	@Test
+	public void importResources_shouldRetryLineByLineWhenChunkFails() throws IOException {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_MAXIMUM_FILE_SIZE, 100)).thenReturn(100);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_CHUNK_SIZE, 500)).thenReturn(500);
+		when(observationService.createBatch(anyList())).thenThrow(new IllegalStateException("Constraint violation"));
+		when(observationService.createMinimal(any())).thenThrow(new IllegalStateException("Constraint violation"))
+		        .thenReturn("obs-uuid");
+		writeImportFile(OBSERVATION, OBSERVATION);
+		
+		OperationOutcome result = bulkImportService.importResources(observationService, Observation.class, FILE_NAME);
+		
+		verify(observationService, times(2)).createMinimal(any());
+		assertThat(result.getIssue(), hasSize(2));
+		assertThat(result.getIssue().get(0).getDiagnostics(),
+		    equalTo("Imported 1 Observation resources from " + FILE_NAME + ", 1 lines failed"));
+		assertThat(result.getIssue().get(1).getDiagnostics(), equalTo("Line 1: Constraint violation"));
+	}
+	
+	@Test(expected = InvalidRequestException.class)
+	public void importResources_shouldNotImportFilesOutsideImportDirectory() throws IOException {
+		writeImportFile(OBSERVATION);
+		
+		bulkImportService.importResources(observationService, Observation.class, "../" + FILE_NAME);
+	}
+	
+	@Test(expected = PayloadTooLargeException.class)
+	public void importResources_shouldNotImportFilesLargerThanMaximumFileSize() throws IOException {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.BULK_IMPORT_MAXIMUM_FILE_SIZE, 100)).thenReturn(0);
+		writeImportFile(OBSERVATION);
+		
+		bulkImportService.importResources(observationService, Observation.class, FILE_NAME);
+	}
+	
+	@Test(expected = ForbiddenOperationException.class)
+	public void importResources_shouldNotImportWithoutPrivilege() throws IOException {
+		hasImportPrivilege = false;
+		writeImportFile(OBSERVATION);
+		
+		bulkImportService.importResources(observationService, Observation.class, FILE_NAME);
+	}
+	
+	private void writeImportFile(String... lines) throws IOException {
+		Files.write(new File(importDirectory.getRoot(), FILE_NAME).toPath(), Arrays.asList(lines),
+		    StandardCharsets.UTF_8);
+	}
+}
@@ -18,15 +18,24 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceOrListParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Patient;
@@ -131,4 +140,54 @@ public class FhirObservationServiceImplTest {
 		assertThat(resultList, not(empty()));
 		assertThat(resultList, hasSize(equalTo(1)));
 	}
+	
+	@Test
+	public void createBatch_shouldSkipObservationsWhichCannotBeTranslated() {
+		Obs obs = new Obs();
+		Observation observation = new Observation();
+		Observation invalidObservation = new Observation();
+		when(translator.toOpenmrsType(observation)).thenReturn(obs);
+		when(translator.toOpenmrsType(invalidObservation)).thenThrow(new IllegalArgumentException("Unknown concept"));
+		
+		Map<Integer, String> errors = fhirObservationService.createBatch(Arrays.asList(invalidObservation, observation));
+		
+		assertThat(errors, equalTo(Collections.singletonMap(0, "Unknown concept")));
+		verify(dao).createOrUpdate(obs);
+		verify(dao).flushAndClear();
+	}
+	
+	@Test
+	public void deleteObservations_shouldVoidMatchingObservations() {
+		TokenAndListParam code = new TokenAndListParam().addAnd(new TokenParam("5085"));
+		List<String> matchingUuids = Arrays.asList(OBS_UUID, "67890-fghij-67890");
+		fhirObservationService.setGlobalPropertyService(globalPropertyService);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.CONDITIONAL_DELETE_MAXIMUM, 10000)).thenReturn(2);
+		when(dao.getSearchResultUuids(any(), eq(3))).thenReturn(matchingUuids);
+		when(dao.voidObjects(matchingUuids, "Voided via FHIR API")).thenReturn(2);
+		
+		int deleted = fhirObservationService.deleteObservations(null, null, null, null, null, null, null, code, null, null,
+		    null);
+		
+		assertThat(deleted, equalTo(2));
+	}
+	
+	@Test(expected = PreconditionFailedException.class)
+	public void deleteObservations_shouldNotVoidMoreObservationsThanAllowed() {
+		TokenAndListParam code = new TokenAndListParam().addAnd(new TokenParam("5085"));
+		fhirObservationService.setGlobalPropertyService(globalPropertyService);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.CONDITIONAL_DELETE_MAXIMUM, 10000)).thenReturn(1);
+		when(dao.getSearchResultUuids(any(), eq(2))).thenReturn(Arrays.asList(OBS_UUID, "67890-fghij-67890"));
+		
+		try {
+			fhirObservationService.deleteObservations(null, null, null, null, null, null, null, code, null, null, null);
+		}
+		finally {
+			verify(dao, never()).voidObjects(any(), any());
+		}
+	}
+	
+	@Test(expected = InvalidRequestException.class)
+	public void deleteObservations_shouldRequireAtLeastOneSearchParameter() {
+		fhirObservationService.deleteObservations(null, null, null, null, null, null, null, null, null, null, null);
+	}
 }
@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api.impl;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
@@ -20,11 +21,15 @@ import static org.hamcrest.Matchers.not;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -35,17 +40,20 @@ import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.HumanName;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openmrs.Patient;
 import org.openmrs.PersonAddress;
 import org.openmrs.PersonName;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.ConditionalResult;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
@@ -60,6 +68,10 @@ public class FhirPatientServiceImplTest {
 	
 	private static final String WRONG_PATIENT_UUID = "Wrong uuid";
 	
+	private static final String PATIENT_IDENTIFIER = "1234-4";
+	
+	private static final String PATIENT_IDENTIFIER_TYPE = "OpenMRS ID";
+	
 	private static final String PATIENT_GIVEN_NAME = "Jeannette";
 	
 	private static final String PATIENT_GIVEN_NAME_NOT_MATCHED = "wafula";
@@ -693,6 +705,119 @@ public class FhirPatientServiceImplTest {
 		assertThat(get(results), empty());
 	}
 	
+	@Test
+	public void searchForPatients_shouldReturnCollectionOfPatientWhenIdentifierMatched() {
+		TokenAndListParam identifier = new TokenAndListParam().addAnd(new TokenParam(PATIENT_IDENTIFIER));
+		
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
+		    identifier);
+		
+		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(PATIENT_UUID));
+		when(dao.getSearchResults(any(), any(), anyInt(), anyInt())).thenReturn(Collections.singletonList(patient));
+		when(searchQuery.getQueryResults(any(), any(), any()))
+		        .thenReturn(new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService));
+		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
+		
+		IBundleProvider results = patientService.searchForPatients(null, null, null, identifier, null, null, null, null,
+		    null, null, null, null, null, null, null);
+		
+		assertThat(results, notNullValue());
+		assertThat(results.size(), equalTo(1));
+		assertThat(get(results), hasSize(equalTo(1)));
+		verify(dao, never()).getPatientsByIdentifier(any(), any());
+	}
+	
+	@Test
+	public void createConditional_shouldReturnExistingPatientMatchingIdentifier() {
+		when(dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, PATIENT_IDENTIFIER_TYPE))
+		        .thenReturn(Collections.singletonList(patient));
+		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
+		
+		ConditionalResult<org.hl7.fhir.r4.model.Patient> result = patientService.createConditional(fhirPatient,
+		    "Patient?identifier=OpenMRS%20ID|" + PATIENT_IDENTIFIER, false);
+		
+		assertThat(result.isCreated(), is(false));
+		assertThat(result.getResource(), equalTo(fhirPatient));
+		verify(dao, never()).createOrUpdate(any());
+	}
+	
+	@Test
+	public void createConditional_shouldCreatePatientWhenNoneMatches() {
+		when(dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, null)).thenReturn(Collections.emptyList());
+		when(patientTranslator.toOpenmrsType(fhirPatient)).thenReturn(patient);
+		when(dao.createOrUpdate(patient)).thenReturn(patient);
+		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
+		
+		ConditionalResult<org.hl7.fhir.r4.model.Patient> result = patientService.createConditional(fhirPatient,
+		    "identifier=" + PATIENT_IDENTIFIER, false);
+		
+		assertThat(result.isCreated(), is(true));
+		assertThat(result.getResource(), equalTo(fhirPatient));
+	}
+	
+	@Test
+	public void createConditional_shouldLockIdentifierBeforeLookingForMatch() {
+		when(dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, PATIENT_IDENTIFIER_TYPE)).thenReturn(Collections.emptyList());
+		when(patientTranslator.toOpenmrsType(fhirPatient)).thenReturn(patient);
+		when(dao.createOrUpdate(patient)).thenReturn(patient);
+		
+		patientService.createConditional(fhirPatient, "identifier=OpenMRS%20ID|" + PATIENT_IDENTIFIER, true);
+		
+		InOrder inOrder = inOrder(dao);
+		inOrder.verify(dao).lockIdentifier(PATIENT_IDENTIFIER_TYPE, PATIENT_IDENTIFIER);
+		inOrder.verify(dao).getPatientsByIdentifier(PATIENT_IDENTIFIER, PATIENT_IDENTIFIER_TYPE);
+		inOrder.verify(dao).createOrUpdate(patient);
+	}
+	
+	@Test(expected = PreconditionFailedException.class)
+	public void createConditional_shouldThrowPreconditionFailedExceptionWhenMultiplePatientsMatch() {
+		when(dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, null)).thenReturn(Arrays.asList(patient, new Patient()));
+		
+		patientService.createConditional(fhirPatient, "identifier=" + PATIENT_IDENTIFIER, false);
+	}
+	
+	@Test
+	public void updateConditional_shouldUpdatePatientMatchingIdentifier() {
+		org.hl7.fhir.r4.model.Patient updatedPatient = new org.hl7.fhir.r4.model.Patient();
+		
+		when(dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, null)).thenReturn(Collections.singletonList(patient));
+		when(dao.get(PATIENT_UUID)).thenReturn(patient);
+		when(patientTranslator.toOpenmrsType(patient, updatedPatient)).thenReturn(patient);
+		when(dao.createOrUpdate(patient)).thenReturn(patient);
+		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
+		
+		ConditionalResult<org.hl7.fhir.r4.model.Patient> result = patientService.updateConditional(updatedPatient,
+		    "Patient?identifier=" + PATIENT_IDENTIFIER, false);
+		
+		assertThat(result.isCreated(), is(false));
+		assertThat(result.getResource(), equalTo(fhirPatient));
+		assertThat(updatedPatient.getId(), equalTo(PATIENT_UUID));
+	}
+	
+	@Test
+	public void createMinimal_shouldNotTranslateCreatedPatient() {
+		when(patientTranslator.toOpenmrsType(fhirPatient)).thenReturn(patient);
+		when(dao.createOrUpdate(patient)).thenReturn(patient);
+		
+		String uuid = patientService.createMinimal(fhirPatient);
+		
+		assertThat(uuid, equalTo(PATIENT_UUID));
+		verify(patientTranslator, never()).toFhirResource(any());
+	}
+	
+	@Test
+	public void createConditional_shouldOnlyReturnIdWhenMinimalResponseRequested() {
+		when(dao.getPatientsByIdentifier(PATIENT_IDENTIFIER, null)).thenReturn(Collections.singletonList(patient));
+		
+		ConditionalResult<org.hl7.fhir.r4.model.Patient> result = patientService.createConditional(fhirPatient,
+		    "identifier=" + PATIENT_IDENTIFIER, true);
+		
+		assertThat(result.isCreated(), is(false));
+		assertThat(result.getId(), equalTo(PATIENT_UUID));
+		assertThat(result.getResource(), nullValue());
+		verify(patientTranslator, never()).toFhirResource(any());
+	}
+	
 	private List<IBaseResource> get(IBundleProvider results) {
 		return results.getResources(0, 10);
 	}
@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FhirRequestMetricsTest {
+	
+	private static final String PATIENT = "Patient";
+	
+	private static final String SEARCH = "search-type";
+	
+	private FhirRequestMetrics requestMetrics;
+	
+	@Before
+	public void setup() {
+		requestMetrics = new FhirRequestMetrics();
+	}
+	
+	@After
+	public void tearDown() {
+		RequestStatistics.stop();
+	}
+	
+	@Test
+	public void shouldRecordMetricsPerParameterShape() {
+		requestMetrics.record(PATIENT, SEARCH, "name", TimeUnit.MILLISECONDS.toNanos(3), 10, null, false);
+		requestMetrics.record(PATIENT, SEARCH, "name", TimeUnit.MILLISECONDS.toNanos(40), 5, null, true);
+		requestMetrics.record(PATIENT, SEARCH, "birthdate,name", TimeUnit.MILLISECONDS.toNanos(7), 1, null, false);
+		
+		List<OperationMetrics> operations = requestMetrics.getOperations();
+		
+		assertThat(operations, hasSize(2));
+		assertThat(operations.get(0).getParameterShape(), equalTo("birthdate,name"));
+		
+		OperationMetrics byName = operations.get(1);
+		assertThat(byName.getParameterShape(), equalTo("name"));
+		assertThat(byName.getCount(), equalTo(2L));
+		assertThat(byName.getErrors(), equalTo(1L));
+		assertThat(byName.getResults(), equalTo(15L));
+		assertThat(byName.getMaxMillis(), equalTo(40L));
+		assertThat(byName.getP50Millis(), equalTo(5L));
+		assertThat(byName.getP99Millis(), equalTo(40L));
+	}
+	
+	@Test
+	public void shouldRecordDatabaseWorkOfTheCurrentThread() {
+		RequestStatistics statistics = RequestStatistics.start();
+		RequestStatistics.statementPrepared("select 1");
+		RequestStatistics.statementPrepared("select 2");
+		RequestStatistics.entityLoaded();
+		RequestStatistics.stop();
+		RequestStatistics.statementPrepared("select 3");
+		
+		requestMetrics.record(PATIENT, "read", "", TimeUnit.MILLISECONDS.toNanos(1), 1, statistics, false);
+		
+		OperationMetrics read = requestMetrics.getOperations().get(0);
+		assertThat(read.getStatements(), equalTo(2L));
+		assertThat(read.getEntityLoads(), equalTo(1L));
+	}
+	
+	@Test
+	public void shouldRecordNewOperationsAsOtherOnceLimitIsReached() {
+		for (int i = 0; i < FhirRequestMetrics.MAXIMUM_OPERATIONS; i++) {
+			requestMetrics.record("Type" + i, "read", "", TimeUnit.MILLISECONDS.toNanos(1), 1, null, false);
+		}
+		
+		requestMetrics.record("Unknown", "read", "", TimeUnit.MILLISECONDS.toNanos(1), 1, null, false);
+		requestMetrics.record(PATIENT, SEARCH, "name", TimeUnit.MILLISECONDS.toNanos(1), 1, null, false);
+		
+		List<OperationMetrics> operations = requestMetrics.getOperations();
+		assertThat(operations, hasSize(FhirRequestMetrics.MAXIMUM_OPERATIONS + 1));
+		
+		OperationMetrics other = operations.get(operations.size() - 1);
+		assertThat(other.getResourceType(), equalTo(FhirRequestMetrics.OTHER));
+		assertThat(other.getOperation(), equalTo(FhirRequestMetrics.OTHER));
+		assertThat(other.getParameterShape(), equalTo(FhirRequestMetrics.OTHER));
+		assertThat(other.getCount(), equalTo(2L));
+	}
+	
+	@Test
+	public void shouldDiscardMetricsOnReset() {
+		requestMetrics.record(PATIENT, "read", "", TimeUnit.MILLISECONDS.toNanos(1), 1, null, false);
+		
+		requestMetrics.reset();
+		
+		assertThat(requestMetrics.getOperations(), empty());
+	}
+}
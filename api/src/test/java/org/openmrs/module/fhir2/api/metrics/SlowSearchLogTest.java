@@ -0,0 +1,92 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
+import org.slf4j.LoggerFactory;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SlowSearchLogTest {
+	
+	private static final String OBSERVATION = "Observation";
+	
+	private static final String SHAPE = "code,patient";
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	private SlowSearchLog slowSearchLog;
+	
+	@Before
+	public void setup() {
+		slowSearchLog = new SlowSearchLog();
+		slowSearchLog.setGlobalPropertyService(globalPropertyService);
+	}
+	
+	@After
+	public void tearDown() {
+		RequestStatistics.stop();
+	}
+	
+	@Test
+	public void shouldNotLogWhenDisabled() {
+		givenSettings(-1, 10);
+		
+		assertThat(slowSearchLog.isEnabled(), is(false));
+		assertThat(slowSearchLog.log(OBSERVATION, SHAPE, TimeUnit.SECONDS.toNanos(30), 10, null), is(false));
+	}
+	
+	@Test
+	public void shouldNotLogSearchesFasterThanThreshold() {
+		givenSettings(1000, 10);
+		
+		assertThat(slowSearchLog.log(OBSERVATION, SHAPE, TimeUnit.MILLISECONDS.toNanos(999), 10, null), is(false));
+	}
+	
+	@Test
+	public void shouldLogAtMostMaximumSearchesPerMinute() {
+		assumeTrue(LoggerFactory.getLogger(SlowSearchLog.LOGGER_NAME).isInfoEnabled());
+		givenSettings(1000, 2);
+		
+		RequestStatistics statistics = RequestStatistics.start(true);
+		try (StageTracer.Span span = StageTracer.start(Stage.SEARCH, "Obs")) {
+			RequestStatistics.statementPrepared("select this_.uuid from obs this_ where this_.concept_id=?");
+			span.rows(5000);
+		}
+		
+		assertThat(statistics.getCapturedStatements().size(), is(1));
+		
+		long elapsedNanos = TimeUnit.SECONDS.toNanos(2);
+		assertThat(slowSearchLog.log(OBSERVATION, SHAPE, elapsedNanos, 10, statistics), is(true));
+		assertThat(slowSearchLog.log(OBSERVATION, SHAPE, elapsedNanos, 10, statistics), is(true));
+		assertThat(slowSearchLog.log(OBSERVATION, SHAPE, elapsedNanos, 10, statistics), is(false));
+	}
+	
+	private void givenSettings(int thresholdMillis, int maximumPerMinute) {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.SLOW_SEARCH_THRESHOLD, -1)).thenReturn(thresholdMillis);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.SLOW_SEARCH_MAXIMUM_PER_MINUTE, 10))
+		        .thenReturn(maximumPerMinute);
+	}
+}
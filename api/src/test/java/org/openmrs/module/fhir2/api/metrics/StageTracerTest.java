@@ -0,0 +1,94 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assume.assumeFalse;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.module.fhir2.api.metrics.RequestStatistics.CapturedStatement;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Span;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
+import org.slf4j.LoggerFactory;
+
+public class StageTracerTest {
+	
+	private static final String OBSERVATION = "Observation";
+	
+	private static final String SEARCH_SQL = "select obs_id from obs";
+	
+	@After
+	public void tearDown() {
+		RequestStatistics.stop();
+	}
+	
+	@Test
+	public void start_shouldReturnNoopSpanWhenNothingIsRecording() {
+		assumeFalse(LoggerFactory.getLogger(StageTracer.LOGGER_NAME).isDebugEnabled());
+		
+		Span span = StageTracer.start(Stage.SEARCH, OBSERVATION);
+		
+		assertThat(span, sameInstance(StageTracer.start(Stage.TRANSLATION, OBSERVATION)));
+	}
+	
+	@Test
+	public void close_shouldAddTimeAndRowsToRequestStatistics() {
+		RequestStatistics statistics = RequestStatistics.start();
+		
+		try (Span span = StageTracer.start(Stage.SEARCH, OBSERVATION)) {
+			span.rows(10);
+		}
+		
+		assertThat(statistics.getStages(), hasKey(Stage.SEARCH));
+		assertThat(statistics.getStages().get(Stage.SEARCH).getRows(), equalTo(10L));
+		assertThat(statistics.getStages().get(Stage.SEARCH).getNanos(), greaterThan(0L));
+		assertThat(statistics.getStages(), not(hasKey(Stage.TRANSLATION)));
+	}
+	
+	@Test
+	public void close_shouldAccumulateRowsOfRepeatedStages() {
+		RequestStatistics statistics = RequestStatistics.start();
+		
+		try (Span span = StageTracer.start(Stage.HYDRATION, OBSERVATION)) {
+			span.rows(3);
+		}
+		try (Span span = StageTracer.start(Stage.HYDRATION, OBSERVATION)) {
+			span.rows(4);
+		}
+		try (Span ignored = StageTracer.start(Stage.HYDRATION, OBSERVATION)) {
+			// a stage without rows does not change the number of rows
+		}
+		
+		assertThat(statistics.getStages().get(Stage.HYDRATION).getRows(), equalTo(7L));
+	}
+	
+	@Test
+	public void close_shouldRestoreEnclosingStage() {
+		RequestStatistics statistics = RequestStatistics.start(true);
+		
+		try (Span ignored = StageTracer.start(Stage.SEARCH, OBSERVATION)) {
+			try (Span translation = StageTracer.start(Stage.TRANSLATION, OBSERVATION)) {
+				RequestStatistics.statementPrepared("select concept_id from concept");
+			}
+			
+			RequestStatistics.statementPrepared(SEARCH_SQL);
+		}
+		
+		assertThat(statistics.getCapturedStatements(), contains(new CapturedStatement(Stage.SEARCH, SEARCH_SQL)));
+		assertThat(statistics.getStatements(), equalTo(2L));
+	}
+}
@@ -10,15 +10,34 @@
 package org.openmrs.module.fhir2.api.search;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.exparity.hamcrest.date.DateMatchers;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.hl7.fhir.r4.model.Observation;
 import org.junit.Before;
@@ -35,6 +54,12 @@ import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
 @RunWith(MockitoJUnitRunner.class)
 public class SearchQueryBundleProviderTest {
 	
+	private static final String OBS_UUID = "39fb7f47-e80a-4056-9285-bd798be13c63";
+	
+	private static final String OTHER_OBS_UUID = "be48cdcb-6a76-47e3-9305-4d1a2b0ed1e4";
+	
+	private static final int CONCURRENT_REQUESTS = 8;
+	
 	@Mock
 	private ObservationTranslator translator;
 	
@@ -72,4 +97,71 @@ public class SearchQueryBundleProviderTest {
 	public void shouldReturnRandomUuid() {
 		assertThat(searchQueryBundleProvider.getUuid(), notNullValue());
 	}
+	
+	@Test
+	public void shouldOnlySearchOnceForConcurrentRequests() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(observationDao.getSearchResultUuids(any())).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return Arrays.asList(OBS_UUID, OTHER_OBS_UUID);
+		});
+		
+		Collection<Integer> sizes = new ConcurrentLinkedQueue<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+			Thread thread = new Thread(() -> sizes.add(searchQueryBundleProvider.size()));
+			threads.add(thread);
+			thread.start();
+		}
+		
+		// wait until every request is either running the search or waiting for it before letting the search finish
+		long deadline = System.currentTimeMillis() + 5000;
+		for (Thread thread : threads) {
+			while ((thread.getState() == Thread.State.NEW || thread.getState() == Thread.State.RUNNABLE)
+			        && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		}
+		
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(5000);
+		}
+		
+		assertThat(sizes, hasSize(CONCURRENT_REQUESTS));
+		assertThat(sizes, everyItem(equalTo(2)));
+		verify(observationDao, times(1)).getSearchResultUuids(any());
+	}
+	
+	@Test
+	public void shouldServeTheNextPageFromThePrefetchedPage() {
+		SearchPagePrefetcher prefetcher = mock(SearchPagePrefetcher.class);
+		when(prefetcher.prefetch(any())).thenAnswer(
+		    invocation -> CompletableFuture.completedFuture(((Supplier<?>) invocation.getArgument(0)).get()));
+		
+		List<String> uuids = Arrays.asList(OBS_UUID, OTHER_OBS_UUID);
+		when(observationDao.getSearchResultUuids(any())).thenReturn(uuids);
+		
+		Obs obs = new Obs();
+		Obs otherObs = new Obs();
+		when(observationDao.getSearchResults(any(), eq(uuids), eq(0), eq(1))).thenReturn(Collections.singletonList(obs));
+		when(observationDao.getSearchResults(any(), eq(uuids), eq(1), eq(2)))
+		        .thenReturn(Collections.singletonList(otherObs));
+		
+		Observation observation = new Observation();
+		Observation otherObservation = new Observation();
+		when(translator.toFhirResource(obs)).thenReturn(observation);
+		when(translator.toFhirResource(otherObs)).thenReturn(otherObservation);
+		
+		searchQueryBundleProvider = new SearchQueryBundleProvider<>(new SearchParameterMap(), observationDao, translator,
+		        globalPropertyService, null, prefetcher);
+		
+		List<IBaseResource> firstPage = searchQueryBundleProvider.getResources(0, 1);
+		List<IBaseResource> secondPage = searchQueryBundleProvider.getResources(1, 2);
+		
+		assertThat(firstPage, contains(observation));
+		assertThat(secondPage, contains(otherObservation));
+		verify(observationDao, times(1)).getSearchResults(any(), eq(uuids), eq(1), eq(2));
+		verify(prefetcher, times(1)).prefetch(any(Supplier.class));
+	}
 }
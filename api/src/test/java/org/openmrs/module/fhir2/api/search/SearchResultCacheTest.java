@@ -0,0 +1,119 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Encounter;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class SearchResultCacheTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String ENCOUNTER_UUID = "430bbb70-6a9c-4e1e-badb-9d1034b1b5e9";
+	
+	private FhirEncounterDao dao;
+	
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	private SearchResultCache searchResultCache;
+	
+	@Before
+	public void setup() {
+		dao = mock(FhirEncounterDao.class);
+		doReturn(Encounter.class).when(dao).getEntityType();
+		when(dao.getSearchResultUuids(any())).thenReturn(Collections.singletonList(ENCOUNTER_UUID));
+		
+		globalPropertyService = mock(FhirGlobalPropertyService.class);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.SEARCH_CACHE_ENABLED, "false")).thenReturn("true");
+		when(globalPropertyService.getGlobalProperty(FhirConstants.SEARCH_CACHE_TTL, 30)).thenReturn(30);
+		
+		searchResultCache = new SearchResultCache();
+		searchResultCache.setGlobalPropertyService(globalPropertyService);
+		searchResultCache.setFhirContext(FhirContext.forR4());
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldReuseResultsOfIdenticalSearches() {
+		List<String> first = searchResultCache.getSearchResultUuids(search("code-1", "code-2"), dao);
+		List<String> second = searchResultCache.getSearchResultUuids(search("code-1", "code-2"), dao);
+		
+		assertThat(first, contains(ENCOUNTER_UUID));
+		assertThat(second, contains(ENCOUNTER_UUID));
+		verify(dao, times(1)).getSearchResultUuids(any());
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldIgnoreTheOrderOfValues() {
+		searchResultCache.getSearchResultUuids(search("code-1", "code-2"), dao);
+		searchResultCache.getSearchResultUuids(search("code-2", "code-1"), dao);
+		
+		verify(dao, times(1)).getSearchResultUuids(any());
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldNotReuseResultsOfDifferentSearches() {
+		searchResultCache.getSearchResultUuids(search("code-1"), dao);
+		searchResultCache.getSearchResultUuids(search("code-2"), dao);
+		
+		verify(dao, times(2)).getSearchResultUuids(any());
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldNotReuseResultsAfterTheSearchedTypeChanges() {
+		searchResultCache.getSearchResultUuids(search("code-1"), dao);
+		SearchResultCache.invalidate(Encounter.class);
+		searchResultCache.getSearchResultUuids(search("code-1"), dao);
+		
+		verify(dao, times(2)).getSearchResultUuids(any());
+	}
+	
+	@Test
+	public void getSearchResultUuids_shouldNotCacheResultsWhenDisabled() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.SEARCH_CACHE_ENABLED, "false")).thenReturn("false");
+		
+		searchResultCache.getSearchResultUuids(search("code-1"), dao);
+		searchResultCache.getSearchResultUuids(search("code-1"), dao);
+		
+		verify(dao, times(2)).getSearchResultUuids(any());
+	}
+	
+	private SearchParameterMap search(String... codes) {
+		TokenOrListParam orList = new TokenOrListParam();
+		for (String code : codes) {
+			orList.add(new TokenParam(code));
+		}
+		
+		return new SearchParameterMap().addParameter(FhirConstants.CODED_SEARCH_HANDLER,
+		    new TokenAndListParam().addAnd(orList));
+	}
+}
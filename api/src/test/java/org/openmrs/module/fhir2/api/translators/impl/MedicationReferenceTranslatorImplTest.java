@@ -66,7 +66,7 @@ public class MedicationReferenceTranslatorImplTest {
 		        .setType(FhirConstants.MEDICATION);
 		Drug drug = new Drug();
 		drug.setUuid(MEDICATION_UUID);
-		when(dao.get(MEDICATION_UUID)).thenReturn(drug);
+		when(dao.getReference(MEDICATION_UUID)).thenReturn(drug);
 		
 		Drug result = medicationReferenceTranslator.toOpenmrsType(medicationReference);
 		
@@ -68,7 +68,7 @@ public class PractitionerReferenceTranslatorProviderImplTest {
 		        .setType(FhirConstants.PRACTITIONER);
 		Practitioner practitioner = new Practitioner();
 		practitioner.setId(PRACTITIONER_UUID);
-		when(practitionerDao.get(PRACTITIONER_UUID)).thenReturn(provider);
+		when(practitionerDao.getReference(PRACTITIONER_UUID)).thenReturn(provider);
 		
 		Provider result = referenceTranslatorProvider.toOpenmrsType(practitionerReference);
 		
@@ -180,7 +180,7 @@ public class EncounterFhirResourceProviderTest extends BaseFhirProvenanceResourc
 	public void createEncounter_shouldCreateNewEncounter() {
 		when(encounterService.create(encounter)).thenReturn(encounter);
 		
-		MethodOutcome result = resourceProvider.createEncounter(encounter);
+		MethodOutcome result = resourceProvider.createEncounter(encounter, null);
 		assertThat(result, notNullValue());
 		assertThat(result.getCreated(), is(true));
 		assertThat(result.getResource(), equalTo(encounter));
@@ -190,7 +190,7 @@ public class EncounterFhirResourceProviderTest extends BaseFhirProvenanceResourc
 	public void updateEncounter_shouldUpdateEncounter() {
 		when(encounterService.update(ENCOUNTER_UUID, encounter)).thenReturn(encounter);
 		
-		MethodOutcome result = resourceProvider.updateEncounter(new IdType().setValue(ENCOUNTER_UUID), encounter);
+		MethodOutcome result = resourceProvider.updateEncounter(new IdType().setValue(ENCOUNTER_UUID), encounter, null);
 		assertThat(result, notNullValue());
 		assertThat(result.getResource(), equalTo(encounter));
 	}
@@ -199,7 +199,7 @@ public class EncounterFhirResourceProviderTest extends BaseFhirProvenanceResourc
 	public void updateEncounter_shouldThrowInvalidRequestForUuidMismatch() {
 		when(encounterService.update(WRONG_ENCOUNTER_UUID, encounter)).thenThrow(InvalidRequestException.class);
 		
-		resourceProvider.updateEncounter(new IdType().setValue(WRONG_ENCOUNTER_UUID), encounter);
+		resourceProvider.updateEncounter(new IdType().setValue(WRONG_ENCOUNTER_UUID), encounter, null);
 	}
 	
 	@Test(expected = InvalidRequestException.class)
@@ -208,7 +208,7 @@ public class EncounterFhirResourceProviderTest extends BaseFhirProvenanceResourc
 		
 		when(encounterService.update(ENCOUNTER_UUID, noIdEncounter)).thenThrow(InvalidRequestException.class);
 		
-		resourceProvider.updateEncounter(new IdType().setValue(ENCOUNTER_UUID), noIdEncounter);
+		resourceProvider.updateEncounter(new IdType().setValue(ENCOUNTER_UUID), noIdEncounter, null);
 	}
 	
 	@Test(expected = MethodNotAllowedException.class)
@@ -218,7 +218,7 @@ public class EncounterFhirResourceProviderTest extends BaseFhirProvenanceResourc
 		
 		when(encounterService.update(WRONG_ENCOUNTER_UUID, wrongEncounter)).thenThrow(MethodNotAllowedException.class);
 		
-		resourceProvider.updateEncounter(new IdType().setValue(WRONG_ENCOUNTER_UUID), wrongEncounter);
+		resourceProvider.updateEncounter(new IdType().setValue(WRONG_ENCOUNTER_UUID), wrongEncounter, null);
 	}
 	
 	@Test
@@ -17,13 +17,17 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.Collections;
 import java.util.List;
 
+import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceOrListParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
@@ -39,12 +43,15 @@ import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Provenance;
 import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.StringType;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirBulkImportService;
 import org.openmrs.module.fhir2.api.FhirObservationService;
 import org.openmrs.module.fhir2.providers.BaseFhirProvenanceResourceTest;
 
@@ -58,6 +65,9 @@ public class ObservationFhirResourceProviderTest extends BaseFhirProvenanceResou
 	@Mock
 	private FhirObservationService observationService;
 	
+	@Mock
+	private FhirBulkImportService bulkImportService;
+	
 	@Getter(AccessLevel.PUBLIC)
 	private ObservationFhirResourceProvider resourceProvider;
 	
@@ -67,6 +77,7 @@ public class ObservationFhirResourceProviderTest extends BaseFhirProvenanceResou
 	public void setup() {
 		resourceProvider = new ObservationFhirResourceProvider();
 		resourceProvider.setObservationService(observationService);
+		resourceProvider.setBulkImportService(bulkImportService);
 	}
 	
 	@Before
@@ -184,7 +195,7 @@ public class ObservationFhirResourceProviderTest extends BaseFhirProvenanceResou
 	public void createObservation_shouldCreateNewObservation() {
 		when(observationService.create(observation)).thenReturn(observation);
 		
-		MethodOutcome result = resourceProvider.createObservationResource(observation);
+		MethodOutcome result = resourceProvider.createObservationResource(observation, null, null);
 		
 		assertThat(result, notNullValue());
 		assertThat(result.getCreated(), is(true));
@@ -195,7 +206,8 @@ public class ObservationFhirResourceProviderTest extends BaseFhirProvenanceResou
 	public void deleteObservation_shouldDeleteObservation() {
 		when(observationService.delete(OBSERVATION_UUID)).thenReturn(observation);
 		
-		OperationOutcome result = resourceProvider.deleteObservationResource(new IdType().setValue(OBSERVATION_UUID));
+		OperationOutcome result = resourceProvider.deleteObservationResource(new IdType().setValue(OBSERVATION_UUID), null,
+		    null);
 		
 		assertThat(result, notNullValue());
 		assertThat(result.getIssue(), notNullValue());
@@ -203,11 +215,39 @@ public class ObservationFhirResourceProviderTest extends BaseFhirProvenanceResou
 		assertThat(result.getIssueFirstRep().getDetails().getCodingFirstRep().getCode(), equalTo("MSG_DELETED"));
 	}
 	
+	@Test
+	public void deleteObservation_shouldRequireBothSubjectAndPatientWhenBothAreSupplied() {
+		RequestDetails requestDetails = mock(RequestDetails.class);
+		when(requestDetails.getFhirContext()).thenReturn(FhirContext.forR4());
+		ArgumentCaptor<ReferenceAndListParam> patientReference = ArgumentCaptor.forClass(ReferenceAndListParam.class);
+		when(observationService.deleteObservations(isNull(), patientReference.capture(), isNull(), isNull(), isNull(),
+		    isNull(), isNull(), isNull(), isNull(), isNull(), isNull())).thenReturn(1);
+		
+		resourceProvider.deleteObservationResource(new IdType(), "Observation?subject=Patient/123&patient=Patient/456",
+		    requestDetails);
+		
+		List<ReferenceOrListParam> patientReferences = patientReference.getValue().getValuesAsQueryTokens();
+		assertThat(patientReferences, hasSize(2));
+		assertThat(patientReferences.get(0).getValuesAsQueryTokens().get(0).getIdPart(), equalTo("123"));
+		assertThat(patientReferences.get(1).getValuesAsQueryTokens().get(0).getIdPart(), equalTo("456"));
+	}
+	
 	@Test(expected = ResourceNotFoundException.class)
 	public void deleteObservation_shouldThrowResourceNotFoundExceptionWhenIdRefersToNonExistentObservation() {
 		when(observationService.delete(WRONG_OBSERVATION_UUID)).thenReturn(null);
 		
-		resourceProvider.deleteObservationResource(new IdType().setValue(WRONG_OBSERVATION_UUID));
+		resourceProvider.deleteObservationResource(new IdType().setValue(WRONG_OBSERVATION_UUID), null, null);
 	}
 	
+	
+	@Test
+	public void importObservations_shouldImportObservationsFromFile() {
+		OperationOutcome outcome = new OperationOutcome();
+		when(bulkImportService.importResources(observationService, Observation.class, "observations.ndjson"))
+		        .thenReturn(outcome);
+		
+		OperationOutcome result = resourceProvider.importObservations(new StringType("observations.ndjson"));
+		
+		assertThat(result, equalTo(outcome));
+	}
 }
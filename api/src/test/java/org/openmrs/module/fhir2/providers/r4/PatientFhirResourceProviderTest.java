@@ -17,7 +17,11 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.hamcrest.MockitoHamcrest.argThat;
 
@@ -25,8 +29,10 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.StringOrListParam;
@@ -51,6 +57,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.ConditionalResult;
 import org.openmrs.module.fhir2.api.FhirPatientService;
 import org.openmrs.module.fhir2.providers.BaseFhirProvenanceResourceTest;
 import org.openmrs.module.fhir2.providers.r3.MockIBundleProvider;
@@ -426,7 +433,7 @@ public class PatientFhirResourceProviderTest extends BaseFhirProvenanceResourceT
 		
 		when(patientService.update(PATIENT_UUID, patient)).thenReturn(patient);
 		
-		MethodOutcome result = resourceProvider.updatePatient(new IdType().setValue(PATIENT_UUID), patient);
+		MethodOutcome result = resourceProvider.updatePatient(new IdType().setValue(PATIENT_UUID), patient, null, null);
 		assertThat(result, notNullValue());
 		assertThat(result.getResource(), equalTo(patient));
 	}
@@ -435,7 +442,7 @@ public class PatientFhirResourceProviderTest extends BaseFhirProvenanceResourceT
 	public void updatePatient_shouldThrowInvalidRequestExceptionForUuidMismatch() {
 		when(patientService.update(WRONG_PATIENT_UUID, patient)).thenThrow(InvalidRequestException.class);
 		
-		resourceProvider.updatePatient(new IdType().setValue(WRONG_PATIENT_UUID), patient);
+		resourceProvider.updatePatient(new IdType().setValue(WRONG_PATIENT_UUID), patient, null, null);
 	}
 	
 	@Test(expected = InvalidRequestException.class)
@@ -444,7 +451,7 @@ public class PatientFhirResourceProviderTest extends BaseFhirProvenanceResourceT
 		
 		when(patientService.update(PATIENT_UUID, noIdPatient)).thenThrow(InvalidRequestException.class);
 		
-		resourceProvider.updatePatient(new IdType().setValue(PATIENT_UUID), noIdPatient);
+		resourceProvider.updatePatient(new IdType().setValue(PATIENT_UUID), noIdPatient, null, null);
 	}
 	
 	@Test(expected = MethodNotAllowedException.class)
@@ -453,7 +460,7 @@ public class PatientFhirResourceProviderTest extends BaseFhirProvenanceResourceT
 		
 		when(patientService.update(WRONG_PATIENT_UUID, patient)).thenThrow(MethodNotAllowedException.class);
 		
-		resourceProvider.updatePatient(new IdType().setValue(WRONG_PATIENT_UUID), patient);
+		resourceProvider.updatePatient(new IdType().setValue(WRONG_PATIENT_UUID), patient, null, null);
 	}
 	
 	@Test
@@ -480,9 +487,71 @@ public class PatientFhirResourceProviderTest extends BaseFhirProvenanceResourceT
 	public void createPatient_shouldCreateNewPatient() {
 		when(patientService.create(patient)).thenReturn(patient);
 		
-		MethodOutcome result = resourceProvider.createPatient(patient);
+		MethodOutcome result = resourceProvider.createPatient(patient, null, null);
 		
 		assertThat(result, notNullValue());
 		assertThat(result.getResource(), equalTo(patient));
 	}
+	
+	@Test
+	public void createPatient_shouldReturnExistingPatientForConditionalCreate() {
+		when(patientService.createConditional(patient, "identifier=1234", false))
+		        .thenReturn(new ConditionalResult<>(PATIENT_UUID, patient, false));
+		
+		MethodOutcome result = resourceProvider.createPatient(patient, "identifier=1234", null);
+		
+		assertThat(result, notNullValue());
+		assertThat(result.getCreated(), is(false));
+		assertThat(result.getResource(), equalTo(patient));
+	}
+	
+	@Test
+	public void updatePatient_shouldUpdatePatientMatchingConditionalUrl() {
+		when(patientService.updateConditional(patient, "Patient?identifier=1234", false))
+		        .thenReturn(new ConditionalResult<>(PATIENT_UUID, patient, false));
+		
+		MethodOutcome result = resourceProvider.updatePatient(null, patient, "Patient?identifier=1234", null);
+		
+		assertThat(result, notNullValue());
+		assertThat(result.getCreated(), is(false));
+		assertThat(result.getResource(), equalTo(patient));
+	}
+	
+	@Test
+	public void createPatient_shouldNotTranslatePatientWhenMinimalResponseRequested() {
+		RequestDetails requestDetails = mock(RequestDetails.class);
+		when(requestDetails.getHeader(Constants.HEADER_PREFER)).thenReturn("return=minimal");
+		when(patientService.createMinimal(patient)).thenReturn(PATIENT_UUID);
+		
+		MethodOutcome result = resourceProvider.createPatient(patient, null, requestDetails);
+		
+		assertThat(result, notNullValue());
+		assertThat(result.getCreated(), is(true));
+		assertThat(result.getResource(), nullValue());
+		assertThat(result.getId().getIdPart(), equalTo(PATIENT_UUID));
+		assertThat(result.getOperationOutcome(), nullValue());
+		verify(patientService, never()).create(any());
+	}
+	
+	@Test
+	public void updatePatient_shouldNotTranslatePatientWhenOperationOutcomeRequested() {
+		RequestDetails requestDetails = mock(RequestDetails.class);
+		when(requestDetails.getHeader(Constants.HEADER_PREFER)).thenReturn("return=OperationOutcome");
+		
+		MethodOutcome result = resourceProvider.updatePatient(new IdType().setValue(PATIENT_UUID), patient, null,
+		    requestDetails);
+		
+		assertThat(result, notNullValue());
+		assertThat(result.getResource(), nullValue());
+		assertThat(result.getId().getIdPart(), equalTo(PATIENT_UUID));
+		assertThat(result.getOperationOutcome(), notNullValue());
+		
+		OperationOutcome outcome = (OperationOutcome) result.getOperationOutcome();
+		assertThat(outcome.getIssue(), hasSize(1));
+		assertThat(outcome.getIssueFirstRep().getSeverity(), equalTo(OperationOutcome.IssueSeverity.INFORMATION));
+		assertThat(outcome.getIssueFirstRep().getDiagnostics(),
+		    equalTo("Successfully updated resource Patient/" + PATIENT_UUID));
+		verify(patientService).updateMinimal(PATIENT_UUID, patient);
+		verify(patientService, never()).update(any(), any());
+	}
 }
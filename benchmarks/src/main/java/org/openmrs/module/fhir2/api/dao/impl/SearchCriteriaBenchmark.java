@@ -0,0 +1,151 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
+import ca.uhn.fhir.rest.param.QuantityOrListParam;
+import ca.uhn.fhir.rest.param.QuantityParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.Criteria;
+import org.hibernate.internal.CriteriaImpl;
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+/**
+ * Measures the time taken to turn a {@link SearchParameterMap} into Hibernate criteria for some
+ * typical Patient, Observation and Encounter searches. Only the construction of the criteria is
+ * measured; rendering them to SQL requires a session factory and is covered by the benchmarks in the
+ * integration-tests module.
+ * <p>
+ * The search token index is treated as disabled, since checking it requires a session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchCriteriaBenchmark {
+	
+	private FhirPatientDaoImpl patientDao;
+	
+	private FhirObservationDaoImpl observationDao;
+	
+	private FhirEncounterDaoImpl encounterDao;
+	
+	private SearchParameterMap patientSearch;
+	
+	private SearchParameterMap observationSearch;
+	
+	private SearchParameterMap encounterSearch;
+	
+	@Setup
+	public void setup() {
+		patientDao = new FhirPatientDaoImpl() {
+			
+			@Override
+			protected boolean isSearchTokenIndexEnabled() {
+				return false;
+			}
+		};
+		
+		observationDao = new FhirObservationDaoImpl() {
+			
+			@Override
+			protected boolean isSearchTokenIndexEnabled() {
+				return false;
+			}
+		};
+		
+		encounterDao = new FhirEncounterDaoImpl() {
+			
+			@Override
+			protected boolean isSearchTokenIndexEnabled() {
+				return false;
+			}
+		};
+		
+		patientSearch = new SearchParameterMap()
+		        .addParameter(FhirConstants.GENDER_SEARCH_HANDLER, "gender",
+		            new TokenAndListParam().addAnd(new TokenParam("female")))
+		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "birthdate", lastYears(40))
+		        .addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
+		            new TokenAndListParam().addAnd(new TokenParam("OpenMRS ID", "100234")));
+		
+		observationSearch = new SearchParameterMap()
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER,
+		            reference(new ReferenceParam(Patient.SP_IDENTIFIER, "100234")))
+		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "obsDatetime", lastYears(1))
+		        .addParameter(FhirConstants.QUANTITY_SEARCH_HANDLER, "valueNumeric",
+		            new QuantityAndListParam().addAnd(new QuantityOrListParam().add(new QuantityParam("gt70"))));
+		
+		encounterSearch = new SearchParameterMap()
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER,
+		            reference(new ReferenceParam("Patient/a7e04421-525f-442f-8138-05b3e8b3a0b6")))
+		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, lastYears(1))
+		        .addParameter(FhirConstants.LOCATION_REFERENCE_SEARCH_HANDLER,
+		            reference(new ReferenceParam("Location/8d6c993e-c2cc-11de-8d13-0010c6dffd0f")));
+	}
+	
+	@Benchmark
+	public Criteria patient() {
+		Criteria criteria = new CriteriaImpl(org.openmrs.Patient.class.getName(), null);
+		patientDao.setupSearchParams(criteria, patientSearch);
+		return criteria;
+	}
+	
+	@Benchmark
+	public Criteria observation() {
+		Criteria criteria = new CriteriaImpl(Obs.class.getName(), null);
+		observationDao.setupSearchParams(criteria, observationSearch);
+		return criteria;
+	}
+	
+	@Benchmark
+	public Criteria encounter() {
+		Criteria criteria = new CriteriaImpl(Encounter.class.getName(), null);
+		encounterDao.setupSearchParams(criteria, encounterSearch);
+		return criteria;
+	}
+	
+	private static ReferenceAndListParam reference(ReferenceParam reference) {
+		return new ReferenceAndListParam().addAnd(new ReferenceOrListParam().add(reference));
+	}
+	
+	private static DateRangeParam lastYears(int years) {
+		Calendar calendar = new GregorianCalendar(2020, Calendar.SEPTEMBER, 1);
+		Date upperBound = calendar.getTime();
+		calendar.add(Calendar.YEAR, -years);
+		return new DateRangeParam(calendar.getTime(), upperBound);
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators.impl;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.lang.reflect.Field;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.openmrs.Auditable;
+import org.openmrs.ConceptSource;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Patient;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.PersonService;
+import org.openmrs.api.ProviderService;
+import org.openmrs.module.fhir2.FhirConceptSource;
+import org.openmrs.module.fhir2.FhirTask;
+import org.openmrs.module.fhir2.api.FhirConceptService;
+import org.openmrs.module.fhir2.api.FhirConceptSourceService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirPatientService;
+import org.openmrs.module.fhir2.api.FhirUserDefaultProperties;
+import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
+import org.openmrs.module.fhir2.api.dao.FhirLocationDao;
+import org.openmrs.module.fhir2.api.dao.FhirMedicationRequestDao;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.dao.FhirPersonDao;
+import org.openmrs.module.fhir2.api.dao.FhirPractitionerDao;
+import org.openmrs.module.fhir2.api.dao.FhirServiceRequestDao;
+import org.openmrs.module.fhir2.api.dao.FhirUserDao;
+import org.openmrs.module.fhir2.api.dao.FhirVisitDao;
+import org.openmrs.module.fhir2.api.mappings.BaseMapping;
+import org.openmrs.module.fhir2.api.mappings.EncounterClassMap;
+import org.openmrs.module.fhir2.api.mappings.ObservationCategoryMap;
+import org.openmrs.module.fhir2.api.translators.ConceptTranslator;
+import org.openmrs.module.fhir2.api.translators.ProvenanceTranslator;
+import org.openmrs.module.fhir2.benchmark.BenchmarkFixtures;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Wires the real translator implementations together the way Spring does at runtime, for use by the
+ * benchmarks. Services and DAOs are replaced with stub-only mocks, so that the benchmarks measure the
+ * translation itself rather than the database. This class lives in the translators package so that
+ * it can use the package-private setters on the translators.
+ */
+public class BenchmarkTranslators {
+	
+	private final ConceptTranslatorImpl conceptTranslator;
+	
+	private final PatientReferenceTranslatorImpl patientReferenceTranslator;
+	
+	private final EncounterReferenceTranslatorImpl encounterReferenceTranslator;
+	
+	private final PractitionerReferenceTranslatorUserImpl practitionerReferenceTranslator;
+	
+	public BenchmarkTranslators() {
+		FhirUserDefaultProperties userDefaultProperties = stub(FhirUserDefaultProperties.class);
+		when(userDefaultProperties.getDefaultLocale()).thenReturn(Locale.ENGLISH);
+		
+		FhirConceptSourceService conceptSourceService = stub(FhirConceptSourceService.class);
+		when(conceptSourceService.getFhirConceptSourceByConceptSourceName(BenchmarkFixtures.CIEL_SOURCE))
+		        .thenReturn(Optional.of(conceptSource(BenchmarkFixtures.CIEL_SOURCE, "urn:oid:2.16.840.1.113883.3.7201")));
+		when(conceptSourceService.getFhirConceptSourceByConceptSourceName(BenchmarkFixtures.LOINC_SOURCE))
+		        .thenReturn(Optional.of(conceptSource(BenchmarkFixtures.LOINC_SOURCE, "http://loinc.org")));
+		
+		conceptTranslator = new ConceptTranslatorImpl();
+		conceptTranslator.setConceptService(stub(FhirConceptService.class));
+		conceptTranslator.setConceptSourceService(conceptSourceService);
+		conceptTranslator.setUserDefaultProperties(userDefaultProperties);
+		
+		patientReferenceTranslator = new PatientReferenceTranslatorImpl();
+		patientReferenceTranslator.setPatientDao(stub(FhirPatientDao.class));
+		
+		encounterReferenceTranslator = new EncounterReferenceTranslatorImpl();
+		encounterReferenceTranslator.setEncounterDao(stub(FhirEncounterDao.class));
+		
+		practitionerReferenceTranslator = new PractitionerReferenceTranslatorUserImpl();
+		practitionerReferenceTranslator.setUserDao(stub(FhirUserDao.class));
+	}
+	
+	public ConceptTranslator getConceptTranslator() {
+		return conceptTranslator;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public ObservationTranslatorImpl newObservationTranslator() {
+		ObservationReferenceTranslatorImpl observationReferenceTranslator = new ObservationReferenceTranslatorImpl();
+		observationReferenceTranslator.setObservationDao(stub(FhirObservationDao.class));
+		
+		ObservationValueTranslatorImpl observationValueTranslator = new ObservationValueTranslatorImpl();
+		observationValueTranslator.setConceptTranslator(conceptTranslator);
+		
+		ObservationCategoryTranslatorImpl categoryTranslator = new ObservationCategoryTranslatorImpl();
+		setField(categoryTranslator, "categoryMap", initialize(new ObservationCategoryMap()));
+		
+		ObservationBasedOnReferenceTranslatorImpl basedOnTranslator = new ObservationBasedOnReferenceTranslatorImpl();
+		basedOnTranslator.setServiceRequestDao(stub(FhirServiceRequestDao.class));
+		basedOnTranslator.setMedicationRequestDao(stub(FhirMedicationRequestDao.class));
+		
+		ObservationTranslatorImpl translator = new ObservationTranslatorImpl();
+		translator.setObservationStatusTranslator(new ObservationStatusTranslatorImpl());
+		translator.setObservationReferenceTranslator(observationReferenceTranslator);
+		translator.setObservationValueTranslator(observationValueTranslator);
+		translator.setConceptTranslator(conceptTranslator);
+		translator.setCategoryTranslator(categoryTranslator);
+		translator.setEncounterReferenceTranslator(encounterReferenceTranslator);
+		translator.setPatientReferenceTranslator(patientReferenceTranslator);
+		translator.setInterpretationTranslator(new ObservationInterpretationTranslatorImpl());
+		translator.setReferenceRangeTranslator(new ObservationReferenceRangeTranslatorImpl());
+		translator.setProvenanceTranslator(this.<Obs> newProvenanceTranslator());
+		translator.setBasedOnReferenceTranslator(basedOnTranslator);
+		translator.setDatetimeTranslator(new ObservationEffectiveDatetimeTranslatorImpl());
+		return translator;
+	}
+	
+	public PatientTranslatorImpl newPatientTranslator() {
+		PatientIdentifierTranslatorImpl identifierTranslator = new PatientIdentifierTranslatorImpl();
+		identifierTranslator.setPatientService(stub(FhirPatientService.class));
+		identifierTranslator.setLocationDao(stub(FhirLocationDao.class));
+		
+		FhirGlobalPropertyService globalPropertyService = stub(FhirGlobalPropertyService.class);
+		
+		TelecomTranslatorImpl telecomTranslator = new TelecomTranslatorImpl();
+		telecomTranslator.setPersonService(stub(PersonService.class));
+		telecomTranslator.setLocationService(stub(LocationService.class));
+		telecomTranslator.setProviderService(stub(ProviderService.class));
+		telecomTranslator.setGlobalPropertyService(globalPropertyService);
+		
+		PatientTranslatorImpl translator = new PatientTranslatorImpl();
+		translator.setIdentifierTranslator(identifierTranslator);
+		translator.setNameTranslator(new PersonNameTranslatorImpl());
+		translator.setGenderTranslator(new GenderTranslatorImpl());
+		translator.setAddressTranslator(new PersonAddressTranslatorImpl());
+		translator.setGlobalPropertyService(globalPropertyService);
+		translator.setFhirPersonDao(stub(FhirPersonDao.class));
+		translator.setTelecomTranslator(telecomTranslator);
+		translator.setProvenanceTranslator(this.<Patient> newProvenanceTranslator());
+		return translator;
+	}
+	
+	public EncounterTranslatorImpl newEncounterTranslator() {
+		EncounterParticipantTranslatorImpl participantTranslator = new EncounterParticipantTranslatorImpl();
+		participantTranslator.setPractitionerDao(stub(FhirPractitionerDao.class));
+		
+		EncounterLocationTranslatorImpl encounterLocationTranslator = new EncounterLocationTranslatorImpl();
+		encounterLocationTranslator.setLocationDao(stub(FhirLocationDao.class));
+		
+		VisitReferenceTranslatorImpl visitReferenceTranslator = new VisitReferenceTranslatorImpl();
+		visitReferenceTranslator.setDao(stub(FhirVisitDao.class));
+		
+		EncounterTranslatorImpl translator = new EncounterTranslatorImpl();
+		translator.setParticipantTranslator(participantTranslator);
+		translator.setEncounterLocationTranslator(encounterLocationTranslator);
+		translator.setPatientReferenceTranslator(patientReferenceTranslator);
+		translator.setProvenanceTranslator(this.<Encounter> newProvenanceTranslator());
+		translator.setEncounterReferenceTranslator(visitReferenceTranslator);
+		translator.setEncounterClassMap(initialize(new EncounterClassMap()));
+		return translator;
+	}
+	
+	public TaskTranslatorImpl newTaskTranslator() {
+		TaskTranslatorImpl translator = new TaskTranslatorImpl();
+		translator.setProvenanceTranslator(this.<FhirTask> newProvenanceTranslator());
+		translator.setReferenceTranslator(new ReferenceTranslatorImpl());
+		translator.setConceptTranslator(conceptTranslator);
+		return translator;
+	}
+	
+	private <T extends OpenmrsObject & Auditable> ProvenanceTranslator<T> newProvenanceTranslator() {
+		ProvenanceTranslatorImpl<T> translator = new ProvenanceTranslatorImpl<>();
+		translator.setPractitionerReferenceTranslator(practitionerReferenceTranslator);
+		return translator;
+	}
+	
+	private static FhirConceptSource conceptSource(String name, String url) {
+		ConceptSource source = new ConceptSource();
+		source.setName(name);
+		
+		FhirConceptSource fhirConceptSource = new FhirConceptSource();
+		fhirConceptSource.setConceptSource(source);
+		fhirConceptSource.setUrl(url);
+		return fhirConceptSource;
+	}
+	
+	private static <T extends BaseMapping> T initialize(T mapping) {
+		setField(mapping, "resourceLoader", new DefaultResourceLoader(BenchmarkTranslators.class.getClassLoader()));
+		mapping.initialize();
+		return mapping;
+	}
+	
+	private static void setField(Object target, String name, Object value) {
+		Field field = ReflectionUtils.findField(target.getClass(), name);
+		ReflectionUtils.makeAccessible(field);
+		ReflectionUtils.setField(field, target, value);
+	}
+	
+	private static <T> T stub(Class<T> type) {
+		return mock(type, withSettings().stubOnly());
+	}
+}
@@ -0,0 +1,267 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.benchmark;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openmrs.Auditable;
+import org.openmrs.Concept;
+import org.openmrs.ConceptClass;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptMapType;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptNumeric;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterProvider;
+import org.openmrs.EncounterRole;
+import org.openmrs.EncounterType;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.PersonAddress;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+import org.openmrs.User;
+import org.openmrs.Visit;
+import org.openmrs.module.fhir2.FhirReference;
+import org.openmrs.module.fhir2.FhirTask;
+import org.openmrs.module.fhir2.FhirTaskInput;
+
+/**
+ * Builds in-memory OpenMRS objects for the benchmarks. The objects are generated from a fixed seed,
+ * so that each run of a benchmark translates exactly the same data.
+ */
+public class BenchmarkFixtures {
+	
+	public static final String CIEL_SOURCE = "CIEL";
+	
+	public static final String LOINC_SOURCE = "LOINC";
+	
+	private static final String[] GIVEN_NAMES = { "Jane", "John", "Amina", "Kofi", "Maria", "Wei", "Priya", "Ahmed" };
+	
+	private static final String[] FAMILY_NAMES = { "Doe", "Otieno", "Mensah", "Garcia", "Chen", "Patel", "Hassan" };
+	
+	private static final String[] CITIES = { "Kampala", "Nairobi", "Kigali", "Lilongwe", "Maputo" };
+	
+	private final Random random;
+	
+	private final Date now = new Date(1_600_000_000_000L);
+	
+	private final User user = new User(1);
+	
+	private final Location location;
+	
+	private final PatientIdentifierType identifierType;
+	
+	private final EncounterType encounterType;
+	
+	private final EncounterRole encounterRole;
+	
+	private final Provider provider;
+	
+	private final ConceptNumeric weight;
+	
+	private final Concept diagnosis;
+	
+	public BenchmarkFixtures(long seed) {
+		random = new Random(seed);
+		
+		user.setUuid(uuid());
+		user.setUsername("admin");
+		
+		location = new Location(1);
+		location.setUuid(uuid());
+		location.setName("Outpatient Clinic");
+		
+		identifierType = new PatientIdentifierType(1);
+		identifierType.setUuid(uuid());
+		identifierType.setName("OpenMRS ID");
+		
+		encounterType = new EncounterType(1);
+		encounterType.setUuid(uuid());
+		encounterType.setName("Adult Visit");
+		
+		encounterRole = new EncounterRole(1);
+		encounterRole.setUuid(uuid());
+		
+		provider = new Provider(1);
+		provider.setUuid(uuid());
+		provider.setIdentifier("PROV-1");
+		provider.setName("Dr. Provider");
+		
+		ConceptClass testClass = new ConceptClass(1);
+		testClass.setUuid("8d4907b2-c2cc-11de-8d13-0010c6dffd0f");
+		ConceptClass diagnosisClass = new ConceptClass(4);
+		diagnosisClass.setUuid("8d4918b0-c2cc-11de-8d13-0010c6dffd0f");
+		
+		weight = new ConceptNumeric(5089);
+		weight.setUnits("kg");
+		weight.setHiAbsolute(250.0);
+		weight.setLowAbsolute(0.0);
+		weight.setHiNormal(100.0);
+		weight.setLowNormal(40.0);
+		initializeConcept(weight, testClass, "Weight (kg)", "5089", "3141-9");
+		
+		diagnosis = new Concept(1284);
+		initializeConcept(diagnosis, diagnosisClass, "Problem list", "1284", "11450-4");
+	}
+	
+	public Patient newPatient() {
+		Patient patient = new Patient(random.nextInt(Integer.MAX_VALUE));
+		audit(patient);
+		patient.setUuid(uuid());
+		patient.setGender(random.nextBoolean() ? "M" : "F");
+		patient.setBirthdate(daysAgo(365 * (1 + random.nextInt(90))));
+		patient.setDead(false);
+		patient.setVoided(false);
+		
+		PersonName name = new PersonName(pick(GIVEN_NAMES), null, pick(FAMILY_NAMES));
+		name.setUuid(uuid());
+		name.setPreferred(true);
+		patient.addName(name);
+		
+		PatientIdentifier identifier = new PatientIdentifier(String.valueOf(100000 + random.nextInt(900000)),
+		        identifierType, location);
+		identifier.setUuid(uuid());
+		identifier.setPreferred(true);
+		patient.addIdentifier(identifier);
+		
+		PersonAddress address = new PersonAddress();
+		address.setUuid(uuid());
+		address.setCityVillage(pick(CITIES));
+		address.setCountry("Uganda");
+		address.setPreferred(true);
+		patient.addAddress(address);
+		
+		return patient;
+	}
+	
+	public Encounter newEncounter(Patient patient) {
+		Visit visit = new Visit(random.nextInt(Integer.MAX_VALUE));
+		visit.setUuid(uuid());
+		visit.setPatient(patient);
+		visit.setStartDatetime(daysAgo(random.nextInt(365)));
+		
+		Encounter encounter = new Encounter(random.nextInt(Integer.MAX_VALUE));
+		audit(encounter);
+		encounter.setUuid(uuid());
+		encounter.setPatient(patient);
+		encounter.setVisit(visit);
+		encounter.setLocation(location);
+		encounter.setEncounterType(encounterType);
+		encounter.setEncounterDatetime(visit.getStartDatetime());
+		
+		EncounterProvider encounterProvider = new EncounterProvider();
+		encounterProvider.setUuid(uuid());
+		encounterProvider.setEncounter(encounter);
+		encounterProvider.setEncounterRole(encounterRole);
+		encounterProvider.setProvider(provider);
+		encounter.setEncounterProviders(new HashSet<>());
+		encounter.getEncounterProviders().add(encounterProvider);
+		
+		return encounter;
+	}
+	
+	public Obs newObs(Encounter encounter) {
+		Obs obs = new Obs(encounter.getPatient(), weight, encounter.getEncounterDatetime(), location);
+		obs.setId(random.nextInt(Integer.MAX_VALUE));
+		audit(obs);
+		obs.setUuid(uuid());
+		obs.setEncounter(encounter);
+		obs.setValueNumeric(40.0 + random.nextInt(600) / 10.0);
+		return obs;
+	}
+	
+	public FhirTask newTask(Encounter encounter) {
+		FhirTask task = new FhirTask();
+		audit(task);
+		task.setUuid(uuid());
+		task.setName("Lab order task");
+		task.setStatus(FhirTask.TaskStatus.REQUESTED);
+		task.setIntent(FhirTask.TaskIntent.ORDER);
+		task.setForReference(reference("Patient", encounter.getPatient().getUuid()));
+		task.setEncounterReference(reference("Encounter", encounter.getUuid()));
+		task.setOwnerReference(reference("Practitioner", provider.getUuid()));
+		task.setBasedOnReferences(new HashSet<>());
+		task.getBasedOnReferences().add(reference("ServiceRequest", uuid()));
+		
+		FhirTaskInput input = new FhirTaskInput();
+		input.setUuid(uuid());
+		input.setName("Comment");
+		input.setType(diagnosis);
+		input.setValueText("Follow up in two weeks");
+		task.setInput(new HashSet<>());
+		task.getInput().add(input);
+		
+		return task;
+	}
+	
+	public ConceptNumeric getWeight() {
+		return weight;
+	}
+	
+	public Concept getDiagnosis() {
+		return diagnosis;
+	}
+	
+	private void initializeConcept(Concept concept, ConceptClass conceptClass, String name, String cielCode,
+	        String loincCode) {
+		concept.setUuid(uuid());
+		concept.setConceptClass(conceptClass);
+		concept.addName(new ConceptName(name, Locale.ENGLISH));
+		concept.addConceptMapping(mapping(CIEL_SOURCE, cielCode));
+		concept.addConceptMapping(mapping(LOINC_SOURCE, loincCode));
+	}
+	
+	private ConceptMap mapping(String sourceName, String code) {
+		ConceptSource source = new ConceptSource();
+		source.setName(sourceName);
+		
+		ConceptReferenceTerm term = new ConceptReferenceTerm(source, code, null);
+		ConceptMap mapping = new ConceptMap(term, new ConceptMapType());
+		mapping.setUuid(uuid());
+		return mapping;
+	}
+	
+	private FhirReference reference(String type, String uuid) {
+		FhirReference reference = new FhirReference();
+		reference.setType(type);
+		reference.setReference(uuid);
+		return reference;
+	}
+	
+	private void audit(Auditable auditable) {
+		auditable.setCreator(user);
+		auditable.setDateCreated(daysAgo(400));
+		auditable.setChangedBy(user);
+		auditable.setDateChanged(daysAgo(random.nextInt(30)));
+	}
+	
+	private Date daysAgo(int days) {
+		return new Date(now.getTime() - TimeUnit.DAYS.toMillis(days));
+	}
+	
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+	
+	private String uuid() {
+		return new UUID(random.nextLong(), random.nextLong()).toString();
+	}
+}
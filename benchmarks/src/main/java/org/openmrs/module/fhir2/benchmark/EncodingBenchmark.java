@@ -0,0 +1,112 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Encounter;
+import org.openmrs.module.fhir2.api.search.SearchQueryBundleProviderR3Wrapper;
+import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.module.fhir2.api.translators.PatientTranslator;
+import org.openmrs.module.fhir2.api.translators.impl.BenchmarkTranslators;
+
+/**
+ * Measures the work done on a page of search results after translation: converting the R4
+ * resources to STU3 for the R3 endpoint and encoding the page as JSON. Each page holds
+ * {@link #pageSize} Observations and the Patients they refer to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+	
+	@Param({ "42" })
+	public long seed;
+	
+	@Param({ "10", "50" })
+	public int pageSize;
+	
+	private IBundleProvider r3BundleProvider;
+	
+	private IParser r4Parser;
+	
+	private IParser r3Parser;
+	
+	private Bundle r4Bundle;
+	
+	private org.hl7.fhir.dstu3.model.Bundle r3Bundle;
+	
+	@Setup
+	public void setup() {
+		BenchmarkTranslators translators = new BenchmarkTranslators();
+		ObservationTranslator observationTranslator = translators.newObservationTranslator();
+		PatientTranslator patientTranslator = translators.newPatientTranslator();
+		
+		BenchmarkFixtures fixtures = new BenchmarkFixtures(seed);
+		List<IBaseResource> resources = new ArrayList<>(pageSize * 2);
+		for (int i = 0; i < pageSize; i++) {
+			org.openmrs.Patient patient = fixtures.newPatient();
+			Encounter encounter = fixtures.newEncounter(patient);
+			resources.add(observationTranslator.toFhirResource(fixtures.newObs(encounter)));
+			resources.add(patientTranslator.toFhirResource(patient));
+		}
+		
+		r3BundleProvider = new SearchQueryBundleProviderR3Wrapper(new SimpleBundleProvider(resources));
+		
+		r4Parser = FhirContext.forR4().newJsonParser();
+		r3Parser = FhirContext.forDstu3().newJsonParser();
+		
+		r4Bundle = new Bundle().setType(Bundle.BundleType.SEARCHSET).setTotal(resources.size());
+		resources.forEach(resource -> r4Bundle.addEntry().setResource((Resource) resource));
+		
+		r3Bundle = new org.hl7.fhir.dstu3.model.Bundle().setType(org.hl7.fhir.dstu3.model.Bundle.BundleType.SEARCHSET)
+		        .setTotal(resources.size());
+		r3BundleProvider.getResources(0, resources.size()).forEach(
+		    resource -> r3Bundle.addEntry().setResource((org.hl7.fhir.dstu3.model.Resource) resource));
+	}
+	
+	@Benchmark
+	public List<IBaseResource> convertToR3() {
+		return r3BundleProvider.getResources(0, pageSize * 2);
+	}
+	
+	@Benchmark
+	public String encodeR4Json() {
+		return r4Parser.encodeResourceToString(r4Bundle);
+	}
+	
+	@Benchmark
+	public String encodeR3Json() {
+		return r3Parser.encodeResourceToString(r3Bundle);
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openmrs.Concept;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirTask;
+import org.openmrs.module.fhir2.api.translators.ConceptTranslator;
+import org.openmrs.module.fhir2.api.translators.EncounterTranslator;
+import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.module.fhir2.api.translators.PatientTranslator;
+import org.openmrs.module.fhir2.api.translators.TaskTranslator;
+import org.openmrs.module.fhir2.api.translators.impl.BenchmarkTranslators;
+
+/**
+ * Measures the time taken to translate OpenMRS objects into FHIR resources. Each invocation
+ * translates a batch of {@link #batchSize} objects, roughly the size of a page of search results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslatorBenchmark {
+	
+	@Param({ "42" })
+	public long seed;
+	
+	@Param({ "10" })
+	public int batchSize;
+	
+	private ObservationTranslator observationTranslator;
+	
+	private PatientTranslator patientTranslator;
+	
+	private EncounterTranslator<org.openmrs.Encounter> encounterTranslator;
+	
+	private ConceptTranslator conceptTranslator;
+	
+	private TaskTranslator taskTranslator;
+	
+	private final List<org.openmrs.Patient> patients = new ArrayList<>();
+	
+	private final List<org.openmrs.Encounter> encounters = new ArrayList<>();
+	
+	private final List<Obs> observations = new ArrayList<>();
+	
+	private final List<FhirTask> tasks = new ArrayList<>();
+	
+	private Concept concept;
+	
+	@Setup
+	public void setup() {
+		BenchmarkTranslators translators = new BenchmarkTranslators();
+		observationTranslator = translators.newObservationTranslator();
+		patientTranslator = translators.newPatientTranslator();
+		encounterTranslator = translators.newEncounterTranslator();
+		conceptTranslator = translators.getConceptTranslator();
+		taskTranslator = translators.newTaskTranslator();
+		
+		BenchmarkFixtures fixtures = new BenchmarkFixtures(seed);
+		for (int i = 0; i < batchSize; i++) {
+			org.openmrs.Patient patient = fixtures.newPatient();
+			org.openmrs.Encounter encounter = fixtures.newEncounter(patient);
+			patients.add(patient);
+			encounters.add(encounter);
+			observations.add(fixtures.newObs(encounter));
+			tasks.add(fixtures.newTask(encounter));
+		}
+		
+		concept = fixtures.getWeight();
+	}
+	
+	@Benchmark
+	public void observation(Blackhole blackhole) {
+		for (Obs obs : observations) {
+			Observation result = observationTranslator.toFhirResource(obs);
+			blackhole.consume(result);
+		}
+	}
+	
+	@Benchmark
+	public void patient(Blackhole blackhole) {
+		for (org.openmrs.Patient patient : patients) {
+			Patient result = patientTranslator.toFhirResource(patient);
+			blackhole.consume(result);
+		}
+	}
+	
+	@Benchmark
+	public void encounter(Blackhole blackhole) {
+		for (org.openmrs.Encounter encounter : encounters) {
+			Encounter result = encounterTranslator.toFhirResource(encounter);
+			blackhole.consume(result);
+		}
+	}
+	
+	@Benchmark
+	public CodeableConcept concept() {
+		return conceptTranslator.toFhirResource(concept);
+	}
+	
+	@Benchmark
+	public void task(Blackhole blackhole) {
+		for (FhirTask task : tasks) {
+			Task result = taskTranslator.toFhirResource(task);
+			blackhole.consume(result);
+		}
+	}
+}
@@ -0,0 +1,561 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.benchmark;
+
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+import javax.servlet.ServletConfig;
+
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.util.BundleUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.DelegatingWebApplicationContext;
+import org.openmrs.module.fhir2.IntegrationTestConfiguration;
+import org.openmrs.module.fhir2.api.metrics.RequestStatistics;
+import org.openmrs.module.fhir2.dataset.SyntheticDataset;
+import org.openmrs.module.fhir2.dataset.SyntheticDatasetGenerator;
+import org.openmrs.module.fhir2.web.servlet.FhirR3RestServlet;
+import org.openmrs.module.fhir2.web.servlet.FhirRestServlet;
+import org.openmrs.web.test.BaseModuleWebContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Replays a mix of reads, searches, paged searches and writes against the R4 and R3 servlets from a
+ * number of concurrent clients, and reports the throughput, latency percentiles and the number of
+ * database statements and entity loads per request for each scenario. The servlets run against a
+ * dataset created by {@link SyntheticDatasetGenerator}, which is committed for the duration of the
+ * run and deleted afterwards.
+ * <p>
+ * Each request runs in its own transaction, as it would behind the OpenMRS web application, and the
+ * reported latency includes opening and committing that transaction.
+ * <p>
+ * This is not run as part of the normal build. Run it with
+ * {@code mvn test -Pbenchmarks -Dtest=FhirLoadBenchmark} from the integration-tests module. The
+ * following system properties control the run:
+ * <ul>
+ * <li>{@code benchmark.clients}: the number of concurrent clients, 8 by default</li>
+ * <li>{@code benchmark.warmupSeconds} and {@code benchmark.durationSeconds}: how long to run before
+ * and while measuring, 10 and 30 seconds by default</li>
+ * <li>{@code benchmark.versions}: the FHIR versions to send requests to, {@code R4,R3} by default</li>
+ * <li>{@code benchmark.mix}: the relative weight of each scenario, e.g.
+ * {@code read.patient=5,search.observation=3,create.observation=1}. Scenarios that are not listed
+ * are not run. By default all scenarios are run with the weights given in {@link Scenario}</li>
+ * <li>{@code benchmark.pageSize}: the page size used by searches, 10 by default</li>
+ * </ul>
+ * The size of the dataset is controlled by the {@code dataset.*} properties described in
+ * {@link SyntheticDataset#fromSystemProperties()}.
+ */
+@Slf4j
+@ContextConfiguration(classes = IntegrationTestConfiguration.class, inheritLocations = false)
+public class FhirLoadBenchmark extends BaseModuleWebContextSensitiveTest {
+	
+	private static final int CLIENTS = Integer.getInteger("benchmark.clients", 8);
+	
+	private static final int WARMUP_SECONDS = Integer.getInteger("benchmark.warmupSeconds", 10);
+	
+	private static final int DURATION_SECONDS = Integer.getInteger("benchmark.durationSeconds", 30);
+	
+	private static final String VERSIONS = System.getProperty("benchmark.versions", "R4,R3");
+	
+	private static final String MIX = System.getProperty("benchmark.mix");
+	
+	private static final int PAGE_SIZE = Integer.getInteger("benchmark.pageSize", 10);
+	
+	private static final int SAMPLE_SIZE = 1000;
+	
+	private static final ThreadLocal<RequestStatistics> REQUEST_STATISTICS = new ThreadLocal<>();
+	
+	/**
+	 * The scenarios that can be run, with their default weights in the mix
+	 */
+	enum Scenario {
+		
+		READ_PATIENT("read.patient", 20),
+		READ_OBSERVATION("read.observation", 15),
+		SEARCH_PATIENT("search.patient", 10),
+		SEARCH_OBSERVATION("search.observation", 20),
+		SEARCH_ENCOUNTER("search.encounter", 10),
+		PAGE_OBSERVATION("page.observation", 10),
+		CREATE_OBSERVATION("create.observation", 5);
+		
+		private final String id;
+		
+		private final int defaultWeight;
+		
+		Scenario(String id, int defaultWeight) {
+			this.id = id;
+			this.defaultWeight = defaultWeight;
+		}
+	}
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	private SyntheticDataset dataset;
+	
+	private List<String[]> encounters;
+	
+	private List<String> observations;
+	
+	private String numericConceptUuid;
+	
+	@Test
+	public void runLoadTest() throws Exception {
+		dataset = SyntheticDataset.fromSystemProperties();
+		new SyntheticDatasetGenerator(dataset).generate(getConnection(), false);
+		loadSamples();
+		
+		List<Server> servers = new ArrayList<>();
+		for (String version : VERSIONS.split(",")) {
+			servers.add("R3".equalsIgnoreCase(version.trim())
+			        ? new Server("R3", "fhir2R3Servlet", new FhirR3RestServlet(), FhirContext.forDstu3())
+			        : new Server("R4", "fhir2Servlet", new FhirRestServlet(), FhirContext.forR4()));
+		}
+		
+		// the clients run in their own threads and transactions, so they can only see committed data
+		TestTransaction.flagForCommit();
+		TestTransaction.end();
+		
+		try {
+			Map<String, ScenarioResults> results = run(servers, mix());
+			report(results);
+		}
+		finally {
+			TestTransaction.start();
+			deleteAllData();
+		}
+	}
+	
+	private Map<String, ScenarioResults> run(List<Server> servers, Scenario[] mix) throws Exception {
+		long start = System.nanoTime();
+		long measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+		long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+		try {
+			List<Future<Map<String, ScenarioResults>>> futures = new ArrayList<>(CLIENTS);
+			for (int i = 0; i < CLIENTS; i++) {
+				Client client = new Client(new Random(dataset.getSeed() + i), servers, mix);
+				futures.add(executor.submit(() -> client.run(measureFrom, measureUntil)));
+			}
+			
+			Map<String, ScenarioResults> results = new LinkedHashMap<>();
+			for (Future<Map<String, ScenarioResults>> future : futures) {
+				future.get().forEach((name, clientResults) -> results.merge(name, clientResults, ScenarioResults::merge));
+			}
+			
+			return results;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private Scenario[] mix() {
+		Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+		if (MIX == null) {
+			for (Scenario scenario : Scenario.values()) {
+				weights.put(scenario, scenario.defaultWeight);
+			}
+		} else {
+			for (String entry : MIX.split(",")) {
+				String[] parts = entry.trim().split("=");
+				Scenario scenario = Arrays.stream(Scenario.values()).filter(s -> s.id.equals(parts[0])).findFirst()
+				        .orElseThrow(() -> new IllegalArgumentException("Unknown scenario " + parts[0]));
+				weights.put(scenario, parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+			}
+		}
+		
+		// each scenario appears in the array once per unit of weight, so that a random element follows the mix
+		List<Scenario> mix = new ArrayList<>();
+		weights.forEach((scenario, weight) -> {
+			for (int i = 0; i < weight; i++) {
+				mix.add(scenario);
+			}
+		});
+		
+		return mix.toArray(new Scenario[0]);
+	}
+	
+	private void loadSamples() throws SQLException {
+		String generatedIdentifiers = "SYN" + dataset.getSeed() + "-%";
+		
+		encounters = new ArrayList<>();
+		try (PreparedStatement statement = getConnection().prepareStatement(
+		    "select e.uuid, p.uuid from encounter e join person p on p.person_id = e.patient_id "
+		            + "join patient_identifier pi on pi.patient_id = e.patient_id where pi.identifier like ?")) {
+			statement.setMaxRows(SAMPLE_SIZE);
+			statement.setString(1, generatedIdentifiers);
+			try (ResultSet results = statement.executeQuery()) {
+				while (results.next()) {
+					encounters.add(new String[] { results.getString(1), results.getString(2) });
+				}
+			}
+		}
+		
+		observations = new ArrayList<>();
+		try (PreparedStatement statement = getConnection().prepareStatement("select o.uuid from obs o "
+		        + "join patient_identifier pi on pi.patient_id = o.person_id where pi.identifier like ?")) {
+			statement.setMaxRows(SAMPLE_SIZE);
+			statement.setString(1, generatedIdentifiers);
+			try (ResultSet results = statement.executeQuery()) {
+				while (results.next()) {
+					observations.add(results.getString(1));
+				}
+			}
+		}
+		
+		try (PreparedStatement statement = getConnection().prepareStatement("select c.uuid from concept c "
+		        + "join concept_numeric cn on cn.concept_id = c.concept_id where c.retired = false order by c.concept_id")) {
+			statement.setMaxRows(1);
+			try (ResultSet results = statement.executeQuery()) {
+				numericConceptUuid = results.next() ? results.getString(1) : null;
+			}
+		}
+		
+		if (encounters.isEmpty() || observations.isEmpty() || numericConceptUuid == null) {
+			throw new IllegalStateException("The generated dataset must contain encounters and numeric obs");
+		}
+	}
+	
+	private void report(Map<String, ScenarioResults> results) {
+		log.info("{} clients, {} s, {} patients, {} encounters, {} obs", CLIENTS, DURATION_SECONDS, dataset.getPatients(),
+		    dataset.getEncounterCount(), dataset.getObsCount());
+		log.info(String.format("%-24s %9s %7s %9s %9s %9s %9s %9s %11s %11s", "scenario", "requests", "errors", "req/s",
+		    "p50 ms", "p90 ms", "p99 ms", "max ms", "stmts/req", "loads/req"));
+		
+		results.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+			ScenarioResults scenario = entry.getValue();
+			long[] latencies = Arrays.copyOf(scenario.latencies, scenario.count);
+			Arrays.sort(latencies);
+			
+			log.info(String.format("%-24s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %11.1f %11.1f", entry.getKey(),
+			    scenario.count, scenario.errors, scenario.count / (double) DURATION_SECONDS, percentile(latencies, 0.5),
+			    percentile(latencies, 0.9), percentile(latencies, 0.99), percentile(latencies, 1.0),
+			    scenario.statements / (double) Math.max(scenario.count, 1),
+			    scenario.entityLoads / (double) Math.max(scenario.count, 1)));
+		});
+		
+		results.forEach((name, scenario) -> {
+			if (scenario.firstError != null) {
+				log.info("First error for {}: {}", name, scenario.firstError);
+			}
+		});
+	}
+	
+	private static double percentile(long[] sortedLatencies, double percentile) {
+		if (sortedLatencies.length == 0) {
+			return 0.0;
+		}
+		
+		int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+		return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+	}
+	
+	private ServletConfig servletConfig(String servletName) {
+		MockServletContext servletContext = new MockServletContext();
+		WebApplicationContext wac = new DelegatingWebApplicationContext(applicationContext, servletContext);
+		servletContext.setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE, wac);
+		return new MockServletConfig(servletContext, servletName);
+	}
+	
+	private class Server {
+		
+		private final String version;
+		
+		private final String servletName;
+		
+		private final FhirRestServlet servlet;
+		
+		private final FhirContext fhirContext;
+		
+		private Server(String version, String servletName, FhirRestServlet servlet, FhirContext fhirContext)
+		        throws Exception {
+			this.version = version;
+			this.servletName = servletName;
+			this.servlet = servlet;
+			this.fhirContext = fhirContext;
+			
+			servlet.setFhirContext(fhirContext);
+			servlet.init(servletConfig(servletName));
+			// registered after the servlet's own interceptors, so the statistics for the request have been started
+			servlet.registerInterceptor(new RequestStatisticsCapture());
+		}
+	}
+	
+	private class Client {
+		
+		private final Random random;
+		
+		private final List<Server> servers;
+		
+		private final Scenario[] mix;
+		
+		private final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		
+		private final Map<String, ScenarioResults> results = new LinkedHashMap<>();
+		
+		private Client(Random random, List<Server> servers, Scenario[] mix) {
+			this.random = random;
+			this.servers = servers;
+			this.mix = mix;
+		}
+		
+		private Map<String, ScenarioResults> run(long measureFrom, long measureUntil) {
+			Context.openSession();
+			try {
+				transactionTemplate.execute(status -> {
+					Context.authenticate("admin", "test");
+					return null;
+				});
+				
+				long now;
+				while ((now = System.nanoTime()) < measureUntil) {
+					Server server = servers.get(random.nextInt(servers.size()));
+					Scenario scenario = mix[random.nextInt(mix.length)];
+					Response response = execute(server, scenario);
+					
+					if (now >= measureFrom) {
+						results.computeIfAbsent(server.version + " " + scenario.id, name -> new ScenarioResults())
+						        .record(response);
+					}
+				}
+				
+				return results;
+			}
+			finally {
+				Context.closeSession();
+			}
+		}
+		
+		private Response execute(Server server, Scenario scenario) {
+			String patient = dataset.getPatientUuid(random.nextInt(dataset.getPatients()));
+			String[] encounter = encounters.get(random.nextInt(encounters.size()));
+			
+			switch (scenario) {
+				case READ_PATIENT:
+					return get(server, "/Patient/" + patient);
+				case READ_OBSERVATION:
+					return get(server, "/Observation/" + observations.get(random.nextInt(observations.size())));
+				case SEARCH_PATIENT:
+					return get(server,
+					    "/Patient?identifier=" + dataset.getPatientIdentifier(random.nextInt(dataset.getPatients())));
+				case SEARCH_OBSERVATION:
+					return get(server, "/Observation?patient=" + patient + "&date=ge"
+					        + dataset.getReferenceDate().minusYears(1) + "&_count=" + PAGE_SIZE);
+				case SEARCH_ENCOUNTER:
+					return get(server, "/Encounter?patient=" + patient + "&_count=" + PAGE_SIZE);
+				case PAGE_OBSERVATION:
+					// only the request for the second page is measured
+					Response firstPage = get(server, "/Observation?patient=" + patient + "&_count=" + PAGE_SIZE);
+					String next = firstPage.failed() ? null : nextPageQuery(server, firstPage.content);
+					return next == null ? firstPage : get(server, "/?" + next);
+				case CREATE_OBSERVATION:
+					return send(server, "POST", "/Observation", createObservation(encounter));
+				default:
+					throw new IllegalArgumentException("Unknown scenario " + scenario);
+			}
+		}
+		
+		private String createObservation(String[] encounter) {
+			return "{\"resourceType\":\"Observation\",\"status\":\"final\","
+			        + "\"code\":{\"coding\":[{\"code\":\"" + numericConceptUuid + "\"}]},"
+			        + "\"subject\":{\"reference\":\"Patient/" + encounter[1] + "\"},"
+			        + "\"encounter\":{\"reference\":\"Encounter/" + encounter[0] + "\"},"
+			        + "\"effectiveDateTime\":\"" + dataset.getReferenceDate() + "\","
+			        + "\"valueQuantity\":{\"value\":" + (40 + random.nextInt(600) / 10.0) + "}}";
+		}
+		
+		private String nextPageQuery(Server server, String content) {
+			IBaseBundle bundle = (IBaseBundle) server.fhirContext.newJsonParser().parseResource(content);
+			String next = BundleUtil.getLinkUrlOfType(server.fhirContext, bundle, "next");
+			if (next == null) {
+				return null;
+			}
+			
+			try {
+				return new URL(next).getQuery();
+			}
+			catch (MalformedURLException e) {
+				return null;
+			}
+		}
+		
+		private Response get(Server server, String uri) {
+			return send(server, "GET", uri, null);
+		}
+		
+		private Response send(Server server, String method, String uri, String json) {
+			int queryStart = uri.indexOf('?');
+			
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			request.setMethod(method);
+			request.setServletPath("/ms/");
+			request.setRequestURI("/ms/" + server.servletName + (queryStart < 0 ? uri : uri.substring(0, queryStart)));
+			request.setQueryString(queryStart < 0 ? null : uri.substring(queryStart + 1));
+			if (json != null) {
+				request.addHeader(CONTENT_TYPE, "application/fhir+json");
+				request.setContent(json.getBytes(StandardCharsets.UTF_8));
+			}
+			
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			
+			long start = System.nanoTime();
+			try {
+				transactionTemplate.execute(status -> {
+					try {
+						server.servlet.service(request, response);
+					}
+					catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+					
+					return null;
+				});
+			}
+			catch (RuntimeException e) {
+				response.setStatus(500);
+			}
+			
+			long elapsedNanos = System.nanoTime() - start;
+			
+			RequestStatistics statistics = REQUEST_STATISTICS.get();
+			REQUEST_STATISTICS.remove();
+			
+			String content;
+			try {
+				content = response.getContentAsString();
+			}
+			catch (UnsupportedEncodingException e) {
+				content = "";
+			}
+			
+			return new Response(response.getStatus(), content, elapsedNanos, statistics);
+		}
+	}
+	
+	private static class Response {
+		
+		private final int status;
+		
+		private final String content;
+		
+		private final long elapsedNanos;
+		
+		private final RequestStatistics statistics;
+		
+		private Response(int status, String content, long elapsedNanos, RequestStatistics statistics) {
+			this.status = status;
+			this.content = content;
+			this.elapsedNanos = elapsedNanos;
+			this.statistics = statistics;
+		}
+		
+		private boolean failed() {
+			return status >= 400;
+		}
+	}
+	
+	private static class ScenarioResults {
+		
+		private long[] latencies = new long[1024];
+		
+		private int count;
+		
+		private long errors;
+		
+		private long statements;
+		
+		private long entityLoads;
+		
+		private String firstError;
+		
+		private void record(Response response) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			
+			latencies[count++] = response.elapsedNanos;
+			
+			if (response.statistics != null) {
+				statements += response.statistics.getStatements();
+				entityLoads += response.statistics.getEntityLoads();
+			}
+			
+			if (response.failed()) {
+				errors++;
+				if (firstError == null) {
+					firstError = response.status + " "
+					        + response.content.substring(0, Math.min(response.content.length(), 500));
+				}
+			}
+		}
+		
+		private ScenarioResults merge(ScenarioResults other) {
+			latencies = Arrays.copyOf(latencies, count + other.count);
+			System.arraycopy(other.latencies, 0, latencies, count, other.count);
+			count += other.count;
+			errors += other.errors;
+			statements += other.statements;
+			entityLoads += other.entityLoads;
+			firstError = firstError == null ? other.firstError : firstError;
+			return this;
+		}
+	}
+	
+	/**
+	 * Keeps hold of the statistics the module collects for each request, which are otherwise discarded
+	 * once the request completes
+	 */
+	@Interceptor
+	public static class RequestStatisticsCapture {
+		
+		@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+		public boolean incomingRequestPostProcessed(RequestDetails requestDetails) {
+			REQUEST_STATISTICS.set(RequestStatistics.current());
+			return true;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.benchmark;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.IntegrationTestConfiguration;
+import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.dataset.SyntheticDataset;
+import org.openmrs.module.fhir2.dataset.SyntheticDatasetGenerator;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Compares the latency of {@code Patient?identifier=} searches answered by the direct identifier
+ * lookup with the same searches run through the generic search criteria. The generic search is
+ * forced by repeating the identifier, which matches the same patient but is not a search for a
+ * single identifier.
+ * <p>
+ * This is not run as part of the normal build. Run it with {@code mvn test -Pbenchmarks} from the
+ * integration-tests module. The searches run against a dataset created by
+ * {@link SyntheticDatasetGenerator}, whose size is controlled by the {@code dataset.*} properties
+ * described in {@link SyntheticDataset#fromSystemProperties()}. The number of searches can be
+ * adjusted using the {@code benchmark.iterations} system property.
+ */
+@Slf4j
+@ContextConfiguration(classes = IntegrationTestConfiguration.class, inheritLocations = false)
+public class PatientIdentifierBenchmark extends BaseModuleContextSensitiveTest {
+	
+	private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 1_000);
+	
+	@Autowired
+	private FhirPatientDao patientDao;
+	
+	private SyntheticDataset dataset;
+	
+	private String identifierTypeName;
+	
+	@Before
+	public void setup() throws Exception {
+		dataset = SyntheticDataset.fromSystemProperties();
+		new SyntheticDatasetGenerator(dataset).generate(getConnection(), false);
+		identifierTypeName = loadIdentifierTypeName();
+	}
+	
+	@Test
+	public void compareGenericSearchWithIdentifierLookup() {
+		IntFunction<SearchParameterMap> genericSearch = i -> identifierSearch(
+		    new TokenAndListParam().addAnd(identifier(i)).addAnd(identifier(i)));
+		IntFunction<SearchParameterMap> identifierLookup = i -> identifierSearch(
+		    new TokenAndListParam().addAnd(identifier(i)));
+		
+		// warm up both paths before measuring anything
+		time(ITERATIONS / 10, genericSearch);
+		time(ITERATIONS / 10, identifierLookup);
+		
+		long[] generic = time(ITERATIONS, genericSearch);
+		long[] direct = time(ITERATIONS, identifierLookup);
+		
+		report("generic search", generic);
+		report("identifier lookup", direct);
+	}
+	
+	/**
+	 * @return the time in nanoseconds taken by each search, sorted in ascending order
+	 */
+	private long[] time(int iterations, IntFunction<SearchParameterMap> searchForIteration) {
+		long[] timings = new long[iterations];
+		for (int i = 0; i < iterations; i++) {
+			SearchParameterMap theParams = searchForIteration.apply(i);
+			
+			long start = System.nanoTime();
+			assertThat(patientDao.getSearchResults(theParams, patientDao.getSearchResultUuids(theParams), 0, 1),
+			    hasSize(1));
+			timings[i] = System.nanoTime() - start;
+			
+			// don't let the session cache answer later searches
+			Context.flushSession();
+			Context.clearSession();
+		}
+		
+		Arrays.sort(timings);
+		return timings;
+	}
+	
+	private void report(String search, long[] timings) {
+		log.info(String.format("Patient?identifier %-18s p50: %8.3f ms, p95: %8.3f ms, p99: %8.3f ms (%d patients)",
+		    search, percentile(timings, 50), percentile(timings, 95), percentile(timings, 99), dataset.getPatients()));
+	}
+	
+	private double percentile(long[] sortedTimings, int percentile) {
+		int index = Math.min(sortedTimings.length - 1, (int) Math.ceil(percentile / 100.0 * sortedTimings.length) - 1);
+		return sortedTimings[Math.max(index, 0)] / 1_000_000.0;
+	}
+	
+	private SearchParameterMap identifierSearch(TokenAndListParam identifier) {
+		return new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER, identifier);
+	}
+	
+	private TokenParam identifier(int iteration) {
+		return new TokenParam(identifierTypeName, dataset.getPatientIdentifier(iteration % dataset.getPatients()));
+	}
+	
+	private String loadIdentifierTypeName() throws SQLException {
+		try (PreparedStatement statement = getConnection().prepareStatement("select pit.name from patient_identifier pi "
+		        + "join patient_identifier_type pit on pit.patient_identifier_type_id = pi.identifier_type "
+		        + "where pi.identifier = ?")) {
+			statement.setString(1, dataset.getPatientIdentifier(0));
+			try (ResultSet results = statement.executeQuery()) {
+				if (!results.next()) {
+					throw new IllegalStateException("The generated dataset must contain patient identifiers");
+				}
+				
+				return results.getString(1);
+			}
+		}
+	}
+}
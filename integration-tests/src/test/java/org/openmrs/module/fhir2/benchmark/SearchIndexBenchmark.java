@@ -0,0 +1,286 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.benchmark;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.TestOrder;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.IntegrationTestConfiguration;
+import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.dao.FhirServiceRequestDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.dataset.SyntheticDataset;
+import org.openmrs.module.fhir2.dataset.SyntheticDatasetGenerator;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Compares the time taken by typical Observation, Encounter and ServiceRequest searches with and
+ * without the search indexes created by the module's Liquibase change sets when the
+ * {@code fhir2.createSearchIndexes} global property is enabled. The indexes are created from the
+ * {@code add_fhir_*_search_index} change sets in the module's liquibase.xml, so the benchmark
+ * always measures the indexes which are actually shipped.
+ * <p>
+ * This is not run as part of the normal build. Run it with {@code mvn test -Pbenchmarks} from the
+ * integration-tests module. The searches run against a dataset created by
+ * {@link SyntheticDatasetGenerator}, whose size is controlled by the {@code dataset.*} properties
+ * described in {@link SyntheticDataset#fromSystemProperties()}. The number of searches of each kind
+ * can be adjusted using the {@code benchmark.iterations} system property.
+ */
+@Slf4j
+@ContextConfiguration(classes = IntegrationTestConfiguration.class, inheritLocations = false)
+public class SearchIndexBenchmark extends BaseModuleContextSensitiveTest {
+	
+	private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+	
+	private static final Pattern SEARCH_INDEX_CHANGE_SET = Pattern.compile("add_fhir_.*_search_index_.*");
+	
+	private static final int SAMPLE_SIZE = 20;
+	
+	@Autowired
+	private FhirObservationDao observationDao;
+	
+	@Autowired
+	private FhirEncounterDao encounterDao;
+	
+	@Autowired
+	private FhirServiceRequestDao<TestOrder> serviceRequestDao;
+	
+	private SyntheticDataset dataset;
+	
+	private List<Integer> obsConceptIds;
+	
+	private List<Integer> orderConceptIds;
+	
+	@Before
+	public void setup() throws Exception {
+		dataset = SyntheticDataset.fromSystemProperties();
+		new SyntheticDatasetGenerator(dataset).generate(getConnection(), false);
+		
+		String generatedIdentifiers = "SYN" + dataset.getSeed() + "-%";
+		obsConceptIds = loadConceptIds("select distinct o.concept_id from obs o "
+		        + "join patient_identifier pi on pi.patient_id = o.person_id where pi.identifier like ?",
+		    generatedIdentifiers);
+		orderConceptIds = loadConceptIds("select distinct o.concept_id from orders o "
+		        + "join patient_identifier pi on pi.patient_id = o.patient_id where pi.identifier like ?",
+		    generatedIdentifiers);
+		
+		if (obsConceptIds.isEmpty() || orderConceptIds.isEmpty()) {
+			throw new IllegalStateException("The generated dataset must contain obs and test orders");
+		}
+	}
+	
+	@Test
+	public void compareSearchTimesWithAndWithoutSearchIndexes() throws Exception {
+		List<SearchIndex> indexes = loadSearchIndexes();
+		
+		// warm up the query paths before measuring anything
+		runObservationSearches(ITERATIONS / 10);
+		runEncounterSearches(ITERATIONS / 10);
+		runServiceRequestSearches(ITERATIONS / 10);
+		
+		long observationsWithout = runObservationSearches(ITERATIONS);
+		long encountersWithout = runEncounterSearches(ITERATIONS);
+		long serviceRequestsWithout = runServiceRequestSearches(ITERATIONS);
+		
+		createIndexes(indexes);
+		try {
+			long observationsWith = runObservationSearches(ITERATIONS);
+			long encountersWith = runEncounterSearches(ITERATIONS);
+			long serviceRequestsWith = runServiceRequestSearches(ITERATIONS);
+			
+			log.info("{} patients, {} encounters, {} obs, indexes: {}", dataset.getPatients(),
+			    dataset.getEncounterCount(), dataset.getObsCount(), indexes);
+			report("Observation?patient&code&date", observationsWithout, observationsWith);
+			report("Encounter?patient&date", encountersWithout, encountersWith);
+			report("ServiceRequest?patient&code&date", serviceRequestsWithout, serviceRequestsWith);
+		}
+		finally {
+			dropIndexes(indexes);
+		}
+	}
+	
+	private long runObservationSearches(int iterations) {
+		return time(iterations, observationDao::getSearchResultUuids,
+		    i -> new SearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patientReference(i))
+		            .addParameter(FhirConstants.CODED_SEARCH_HANDLER, code(obsConceptIds, i))
+		            .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "obsDatetime", lastYear()));
+	}
+	
+	private long runEncounterSearches(int iterations) {
+		return time(iterations, encounterDao::getSearchResultUuids,
+		    i -> new SearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patientReference(i))
+		            .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, lastYear()));
+	}
+	
+	private long runServiceRequestSearches(int iterations) {
+		return time(iterations, serviceRequestDao::getSearchResultUuids,
+		    i -> new SearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patientReference(i))
+		            .addParameter(FhirConstants.CODED_SEARCH_HANDLER, code(orderConceptIds, i))
+		            .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, lastYear()));
+	}
+	
+	/**
+	 * @return the mean time in nanoseconds taken to run the searches
+	 */
+	private long time(int iterations, Function<SearchParameterMap, List<String>> search,
+	        IntFunction<SearchParameterMap> searchForIteration) {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			search.apply(searchForIteration.apply(i));
+		}
+		
+		return (System.nanoTime() - start) / Math.max(iterations, 1);
+	}
+	
+	private void report(String search, long nanosWithout, long nanosWith) {
+		log.info(String.format("%-34s without indexes: %8.3f ms/search, with indexes: %8.3f ms/search", search,
+		    nanosWithout / 1_000_000.0, nanosWith / 1_000_000.0));
+	}
+	
+	private ReferenceAndListParam patientReference(int iteration) {
+		return new ReferenceAndListParam().addAnd(new ReferenceOrListParam()
+		        .add(new ReferenceParam().setValue(dataset.getPatientUuid(iteration % dataset.getPatients()))));
+	}
+	
+	private TokenAndListParam code(List<Integer> conceptIds, int iteration) {
+		return new TokenAndListParam()
+		        .addAnd(new TokenParam(String.valueOf(conceptIds.get(iteration % conceptIds.size()))));
+	}
+	
+	private DateRangeParam lastYear() {
+		LocalDate referenceDate = dataset.getReferenceDate();
+		return new DateRangeParam(toDate(referenceDate.minusYears(1)), toDate(referenceDate));
+	}
+	
+	private Date toDate(LocalDate date) {
+		return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
+	
+	private List<Integer> loadConceptIds(String sql, String generatedIdentifiers) throws SQLException {
+		List<Integer> conceptIds = new ArrayList<>();
+		try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
+			statement.setMaxRows(SAMPLE_SIZE);
+			statement.setString(1, generatedIdentifiers);
+			try (ResultSet results = statement.executeQuery()) {
+				while (results.next()) {
+					conceptIds.add(results.getInt(1));
+				}
+			}
+		}
+		
+		return conceptIds;
+	}
+	
+	/**
+	 * Reads the indexes to compare from the {@code createIndex} elements of the module's search index
+	 * change sets
+	 */
+	private List<SearchIndex> loadSearchIndexes() throws Exception {
+		List<SearchIndex> indexes = new ArrayList<>();
+		try (InputStream liquibase = getClass().getClassLoader().getResourceAsStream("liquibase.xml")) {
+			if (liquibase == null) {
+				throw new IllegalStateException("Could not find the module's liquibase.xml");
+			}
+			
+			NodeList changeSets = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(liquibase)
+			        .getElementsByTagName("changeSet");
+			for (int i = 0; i < changeSets.getLength(); i++) {
+				Element changeSet = (Element) changeSets.item(i);
+				if (!SEARCH_INDEX_CHANGE_SET.matcher(changeSet.getAttribute("id")).matches()) {
+					continue;
+				}
+				
+				NodeList createIndexes = changeSet.getElementsByTagName("createIndex");
+				for (int j = 0; j < createIndexes.getLength(); j++) {
+					Element createIndex = (Element) createIndexes.item(j);
+					List<String> columns = new ArrayList<>();
+					NodeList columnElements = createIndex.getElementsByTagName("column");
+					for (int k = 0; k < columnElements.getLength(); k++) {
+						columns.add(((Element) columnElements.item(k)).getAttribute("name"));
+					}
+					
+					indexes.add(new SearchIndex(createIndex.getAttribute("indexName"),
+					        createIndex.getAttribute("tableName"), String.join(", ", columns)));
+				}
+			}
+		}
+		
+		if (indexes.isEmpty()) {
+			throw new IllegalStateException("The module's liquibase.xml does not define any search indexes");
+		}
+		
+		return indexes;
+	}
+	
+	private void createIndexes(List<SearchIndex> indexes) throws SQLException {
+		try (Statement statement = getConnection().createStatement()) {
+			for (SearchIndex index : indexes) {
+				statement.execute(String.format("create index %s on %s (%s)", index.name, index.table, index.columns));
+			}
+		}
+	}
+	
+	private void dropIndexes(List<SearchIndex> indexes) throws SQLException {
+		try (Statement statement = getConnection().createStatement()) {
+			for (SearchIndex index : indexes) {
+				statement.execute(String.format("drop index %s", index.name));
+			}
+		}
+	}
+	
+	private static class SearchIndex {
+		
+		private final String name;
+		
+		private final String table;
+		
+		private final String columns;
+		
+		private SearchIndex(String name, String table, String columns) {
+			this.name = name;
+			this.table = table;
+			this.columns = columns;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
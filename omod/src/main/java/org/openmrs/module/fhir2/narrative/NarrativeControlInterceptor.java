@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.narrative;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.util.CachedGlobalProperties;
+
+/**
+ * Decides, before a request is handled, whether narratives should be generated for the resources in
+ * its response. Narratives are not generated if:
+ * <ul>
+ * <li>the request includes {@code _narrative=false}</li>
+ * <li>the narrative would not be returned anyway, i.e. {@code _summary} is {@code true},
+ * {@code data} or {@code count}, or {@code _elements} does not include {@code text}</li>
+ * <li>the current user is listed in the {@link FhirConstants#NARRATIVES_DISABLED_FOR_USERS}
+ * global property, unless the request includes {@code _narrative=true}</li>
+ * </ul>
+ * The decision is held by the thread handling the request and is cleared once the request has been
+ * processed, whether or not it succeeded.
+ */
+@Interceptor
+public class NarrativeControlInterceptor {
+	
+	public static final String NARRATIVE_PARAM = "_narrative";
+	
+	private final FhirGlobalPropertyService globalPropertyService;
+	
+	private final CachedGlobalProperties globalProperties = new CachedGlobalProperties();
+	
+	public NarrativeControlInterceptor(FhirGlobalPropertyService globalPropertyService) {
+		this.globalPropertyService = globalPropertyService;
+	}
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public boolean incomingRequestPostProcessed(RequestDetails requestDetails) {
+		OpenMRSThymeleafNarrativeGenerator.setNarrativesEnabled(isNarrativeRequired(requestDetails));
+		return true;
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void processingCompleted() {
+		OpenMRSThymeleafNarrativeGenerator.resetNarrativesEnabled();
+	}
+	
+	private boolean isNarrativeRequired(RequestDetails requestDetails) {
+		Map<String, String[]> parameters = requestDetails.getParameters();
+		if (parameters == null) {
+			return isNarrativeEnabledForUser();
+		}
+		
+		String[] narrative = parameters.get(NARRATIVE_PARAM);
+		if (narrative != null) {
+			// _narrative is not a search parameter, so it is removed to prevent it being treated as one
+			Map<String, String[]> remainingParameters = new HashMap<>(parameters);
+			remainingParameters.remove(NARRATIVE_PARAM);
+			requestDetails.setParameters(remainingParameters);
+			
+			if (narrative.length > 0) {
+				return !"false".equalsIgnoreCase(narrative[0].trim());
+			}
+		}
+		
+		String[] summary = parameters.get(Constants.PARAM_SUMMARY);
+		if (summary != null && Arrays.stream(summary).anyMatch(
+		    s -> "true".equalsIgnoreCase(s) || "data".equalsIgnoreCase(s) || "count".equalsIgnoreCase(s))) {
+			return false;
+		}
+		
+		String[] elements = parameters.get(Constants.PARAM_ELEMENTS);
+		if (elements != null && Arrays.stream(elements).flatMap(e -> Arrays.stream(e.split(",")))
+		        .noneMatch(e -> "text".equals(e.trim()) || e.trim().endsWith(".text"))) {
+			return false;
+		}
+		
+		return isNarrativeEnabledForUser();
+	}
+	
+	private boolean isNarrativeEnabledForUser() {
+		String disabledForUsers = globalProperties.get(FhirConstants.NARRATIVES_DISABLED_FOR_USERS,
+		    () -> globalPropertyService.getGlobalProperty(FhirConstants.NARRATIVES_DISABLED_FOR_USERS, ""));
+		if (disabledForUsers.trim().isEmpty()) {
+			return true;
+		}
+		
+		User user = Context.getAuthenticatedUser();
+		if (user == null) {
+			return true;
+		}
+		
+		return Arrays.stream(disabledForUsers.split(",")).map(String::trim)
+		        .noneMatch(username -> username.equalsIgnoreCase(user.getUsername())
+		                || username.equalsIgnoreCase(user.getSystemId()));
+	}
+}
@@ -23,19 +23,45 @@ package org.openmrs.module.fhir2.narrative;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.narrative2.ThymeleafNarrativeGenerator;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.Validate;
+import org.hl7.fhir.instance.model.api.IBaseMetaType;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IDomainResource;
+import org.hl7.fhir.instance.model.api.INarrative;
+import org.openmrs.module.fhir2.api.metrics.StageTracer;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
 import org.springframework.context.MessageSource;
 
+@Slf4j
 public class OpenMRSThymeleafNarrativeGenerator extends ThymeleafNarrativeGenerator {
 	
+	// the total number of characters of narrative which may be cached
+	private static final long MAXIMUM_CACHED_CHARACTERS = 10_000_000L;
+	
+	private static final ThreadLocal<Boolean> narrativesEnabled = ThreadLocal.withInitial(() -> true);
+	
 	private boolean isInitialized;
 	
+	// narratives rendered by this generator; as the cache belongs to the generator, entries are implicitly specific to
+	// its set of templates. Changes to related objects which do not change a resource's version or last updated time are
+	// reflected once the entry expires
+	private final Cache<NarrativeKey, CachedNarrative> narratives = Caffeine.newBuilder()
+	        .maximumWeight(MAXIMUM_CACHED_CHARACTERS)
+	        .<NarrativeKey, CachedNarrative> weigher((key, narrative) -> narrative.getDiv().length())
+	        .expireAfterWrite(10, TimeUnit.MINUTES).build();
+	
 	private List<String> propertyFile;
 	
 	public OpenMRSThymeleafNarrativeGenerator(MessageSource messageSource, String... propertyFile) {
@@ -53,12 +79,51 @@ public class OpenMRSThymeleafNarrativeGenerator extends ThymeleafNarrativeGenera
 		return propertyFile;
 	}
 	
+	/**
+	 * Sets whether narratives are generated for resources encoded by the current thread, i.e. in
+	 * response to the current request
+	 *
+	 * @param enabled false if narratives should not be generated
+	 */
+	public static void setNarrativesEnabled(boolean enabled) {
+		narrativesEnabled.set(enabled);
+	}
+	
+	/**
+	 * Restores the default of generating narratives for the current thread, e.g. once the request it
+	 * was handling has completed, so that the setting is not left behind on pooled threads
+	 */
+	public static void resetNarrativesEnabled() {
+		narrativesEnabled.remove();
+	}
+	
 	@Override
 	public boolean populateResourceNarrative(FhirContext theFhirContext, IBaseResource theResource) {
+		if (!narrativesEnabled.get()) {
+			return false;
+		}
+		
 		if (!isInitialized) {
 			initialize();
 		}
-		super.populateResourceNarrative(theFhirContext, theResource);
+		
+		NarrativeKey key = getNarrativeKey(theFhirContext, theResource);
+		if (key != null) {
+			CachedNarrative cached = narratives.getIfPresent(key);
+			if (cached != null && applyNarrative(cached, theResource)) {
+				return false;
+			}
+		}
+		
+		try (StageTracer.Span ignored = StageTracer.start(Stage.NARRATIVE, theResource.getClass().getSimpleName())
+		        .rows(1)) {
+			super.populateResourceNarrative(theFhirContext, theResource);
+		}
+		
+		if (key != null) {
+			cacheNarrative(key, theResource);
+		}
+		
 		return false;
 	}
 	
@@ -77,4 +142,82 @@ public class OpenMRSThymeleafNarrativeGenerator extends ThymeleafNarrativeGenera
 			isInitialized = true;
 		}
 	}
+	
+	/**
+	 * Identifies the narrative of a particular version of a resource. Only resources with an id and
+	 * either a version id or last updated time have a key, as the narrative of any other resource
+	 * cannot be safely reused.
+	 */
+	private NarrativeKey getNarrativeKey(FhirContext fhirContext, IBaseResource resource) {
+		if (!(resource instanceof IDomainResource) || resource.getIdElement() == null
+		        || resource.getIdElement().getIdPart() == null) {
+			return null;
+		}
+		
+		IBaseMetaType meta = resource.getMeta();
+		String versionId = meta == null ? null : meta.getVersionId();
+		Date lastUpdated = meta == null ? null : meta.getLastUpdated();
+		if (versionId == null && lastUpdated == null) {
+			return null;
+		}
+		
+		// templates are rendered using the default locale
+		return new NarrativeKey(fhirContext.getVersion().getVersion().name(),
+		        fhirContext.getResourceDefinition(resource).getName(), resource.getIdElement().getIdPart(), versionId,
+		        lastUpdated == null ? null : lastUpdated.getTime(), Locale.getDefault());
+	}
+	
+	private boolean applyNarrative(CachedNarrative cached, IBaseResource resource) {
+		try {
+			INarrative narrative = ((IDomainResource) resource).getText();
+			narrative.setDivAsString(cached.getDiv());
+			narrative.setStatusAsString(cached.getStatus());
+			return true;
+		}
+		catch (Exception e) {
+			log.debug("Unable to apply cached narrative, generating it instead", e);
+			return false;
+		}
+	}
+	
+	private void cacheNarrative(NarrativeKey key, IBaseResource resource) {
+		try {
+			INarrative narrative = ((IDomainResource) resource).getText();
+			if (narrative == null || narrative.isEmpty()) {
+				return;
+			}
+			
+			String div = narrative.getDivAsString();
+			if (div != null) {
+				narratives.put(key, new CachedNarrative(div, narrative.getStatusAsString()));
+			}
+		}
+		catch (Exception e) {
+			log.debug("Unable to cache generated narrative", e);
+		}
+	}
+	
+	@Value
+	private static class NarrativeKey {
+		
+		String fhirVersion;
+		
+		String resourceType;
+		
+		String id;
+		
+		String versionId;
+		
+		Long lastUpdated;
+		
+		Locale locale;
+	}
+	
+	@Value
+	private static class CachedNarrative {
+		
+		String div;
+		
+		String status;
+	}
 }
@@ -0,0 +1,149 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.interceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.IServerConformanceProvider;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import lombok.Value;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+/**
+ * Serves {@code /metadata} requests from a cache of the encoded CapabilityStatement, so that the
+ * statement is not rebuilt from every registered resource provider and encoded again for every
+ * request. The statement is built once for each server base, encoding and pretty printing setting,
+ * for a limited number of such combinations, and is discarded whenever the providers registered
+ * with the server change. Responses carry an ETag, so clients revalidating their copy of the
+ * statement receive a 304 without a body.
+ * <p/>
+ * Requests with parameters other than {@code _format} and {@code _pretty}, e.g. {@code _summary},
+ * are handled by the server as usual.
+ */
+@Interceptor
+public class CapabilityStatementCachingInterceptor {
+	
+	private static final String METADATA = "metadata";
+	
+	// the server base comes from the Host and forwarded headers of the request, so the number of statements is
+	// bounded to stop clients sending arbitrary hosts from filling memory
+	private static final long MAXIMUM_CACHED_STATEMENTS = 32L;
+	
+	private final RestfulServer server;
+	
+	private final Cache<StatementKey, EncodedStatement> statements = CacheBuilder.newBuilder()
+	        .maximumSize(MAXIMUM_CACHED_STATEMENTS).build();
+	
+	public CapabilityStatementCachingInterceptor(RestfulServer server) {
+		this.server = server;
+	}
+	
+	/**
+	 * Discards the cached statements, e.g. because the providers registered with the server changed
+	 */
+	public void invalidate() {
+		statements.invalidateAll();
+	}
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public boolean incomingRequestPostProcessed(RequestDetails requestDetails, HttpServletRequest request,
+	        HttpServletResponse response) throws IOException {
+		if (requestDetails.getRequestType() != RequestTypeEnum.GET || requestDetails.getResourceName() != null
+		        || !METADATA.equals(requestDetails.getOperation()) || hasOtherParameters(requestDetails)) {
+			return true;
+		}
+		
+		EncodingEnum encoding = RestfulServerUtils.determineResponseEncodingWithDefault(requestDetails).getEncoding();
+		boolean prettyPrint = RestfulServerUtils.prettyPrintResponse(server, requestDetails);
+		StatementKey key = new StatementKey(requestDetails.getFhirServerBase(), encoding, prettyPrint);
+		
+		EncodedStatement statement = statements.getIfPresent(key);
+		if (statement == null) {
+			statement = encode(requestDetails, request, encoding, prettyPrint);
+			statements.put(key, statement);
+		}
+		
+		response.setHeader(Constants.HEADER_ETAG, statement.getETag());
+		
+		String ifNoneMatch = request.getHeader(Constants.HEADER_IF_NONE_MATCH);
+		if (ifNoneMatch != null && (ifNoneMatch.contains(statement.getETag()) || "*".equals(ifNoneMatch.trim()))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return false;
+		}
+		
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(statement.getContentType());
+		response.setContentLength(statement.getBody().length);
+		try (OutputStream out = response.getOutputStream()) {
+			out.write(statement.getBody());
+		}
+		
+		return false;
+	}
+	
+	private boolean hasOtherParameters(RequestDetails requestDetails) {
+		Map<String, String[]> parameters = requestDetails.getParameters();
+		return parameters != null && parameters.keySet().stream()
+		        .anyMatch(p -> !Constants.PARAM_FORMAT.equals(p) && !Constants.PARAM_PRETTY.equals(p));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private EncodedStatement encode(RequestDetails requestDetails, HttpServletRequest request, EncodingEnum encoding,
+	        boolean prettyPrint) {
+		IBaseResource capabilityStatement = ((IServerConformanceProvider<IBaseResource>) server
+		        .getServerConformanceProvider()).getServerConformance(request, requestDetails);
+		
+		IParser parser = encoding.newParser(server.getFhirContext()).setPrettyPrint(prettyPrint);
+		byte[] body = parser.encodeResourceToString(capabilityStatement).getBytes(StandardCharsets.UTF_8);
+		
+		String eTag = "W/\"" + Hashing.sha256().hashBytes(body).toString() + "\"";
+		String contentType = encoding.getResourceContentTypeNonLegacy() + Constants.CHARSET_UTF8_CTSUFFIX;
+		
+		return new EncodedStatement(body, eTag, contentType);
+	}
+	
+	@Value
+	private static class StatementKey {
+		
+		String serverBase;
+		
+		EncodingEnum encoding;
+		
+		boolean prettyPrint;
+	}
+	
+	@Value
+	private static class EncodedStatement {
+		
+		byte[] body;
+		
+		String eTag;
+		
+		String contentType;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.interceptor;
+
+import java.util.Map;
+import java.util.TreeSet;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.util.BundleUtil;
+import lombok.RequiredArgsConstructor;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir2.api.metrics.FhirRequestMetrics;
+import org.openmrs.module.fhir2.api.metrics.RequestStatistics;
+import org.openmrs.module.fhir2.api.metrics.SlowSearchLog;
+import org.openmrs.module.fhir2.api.metrics.StageTracer;
+import org.openmrs.module.fhir2.api.metrics.StageTracer.Stage;
+
+/**
+ * Records the latency, number of resources returned and database work of each request handled by
+ * the server in the {@link FhirRequestMetrics} and traces the encoding of responses with the
+ * {@link StageTracer}. Searches are recorded per parameter shape, i.e. the sorted names of the
+ * search parameters used, so that expensive combinations of parameters can be told apart, and
+ * passed to the {@link SlowSearchLog}.
+ */
+@Interceptor
+@RequiredArgsConstructor
+public class RequestMetricsInterceptor {
+	
+	private static final String STATE_KEY = RequestMetricsInterceptor.class.getName() + ".state";
+	
+	private final FhirContext fhirContext;
+	
+	private final FhirRequestMetrics requestMetrics;
+	
+	private final SlowSearchLog slowSearchLog;
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public boolean incomingRequestPostProcessed(RequestDetails requestDetails) {
+		// checked before counting starts, as reading the settings of the log may itself run a statement
+		boolean captureStatements = slowSearchLog != null && slowSearchLog.isEnabled();
+		requestDetails.getUserData().put(STATE_KEY,
+		    new RequestState(System.nanoTime(), RequestStatistics.start(captureStatements)));
+		return true;
+	}
+	
+	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+	public boolean outgoingResponse(RequestDetails requestDetails, IBaseResource resource) {
+		RequestState state = (RequestState) requestDetails.getUserData().get(STATE_KEY);
+		if (state != null && resource != null) {
+			state.results = resource instanceof IBaseBundle
+			        ? BundleUtil.toListOfResources(fhirContext, (IBaseBundle) resource).size()
+			        : 1;
+			// the response is encoded, including any narratives, once this hook returns
+			state.encoding = StageTracer.start(Stage.ENCODING, requestDetails.getResourceName()).rows(state.results);
+		}
+		
+		return true;
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED_NORMALLY)
+	public void processingCompletedNormally(RequestDetails requestDetails) {
+		record(requestDetails, false);
+	}
+	
+	@Hook(Pointcut.SERVER_HANDLE_EXCEPTION)
+	public boolean handleException(RequestDetails requestDetails) {
+		record(requestDetails, true);
+		return true;
+	}
+	
+	private void record(RequestDetails requestDetails, boolean failed) {
+		RequestState state = (RequestState) requestDetails.getUserData().remove(STATE_KEY);
+		if (state == null) {
+			return;
+		}
+		
+		if (state.encoding != null) {
+			state.encoding.close();
+		}
+		
+		try {
+			RestOperationTypeEnum operationType = requestDetails.getRestOperationType();
+			String operation = operationType == null ? "unknown" : operationType.getCode();
+			if (operationType == RestOperationTypeEnum.EXTENDED_OPERATION_TYPE
+			        || operationType == RestOperationTypeEnum.EXTENDED_OPERATION_INSTANCE
+			        || operationType == RestOperationTypeEnum.EXTENDED_OPERATION_SERVER) {
+				operation = requestDetails.getOperation();
+			}
+			
+			String parameterShape = operationType == RestOperationTypeEnum.SEARCH_TYPE
+			        ? getParameterShape(requestDetails.getParameters())
+			        : "";
+			
+			long elapsedNanos = System.nanoTime() - state.startTime;
+			requestMetrics.record(requestDetails.getResourceName(), operation, parameterShape, elapsedNanos,
+			    state.results, state.statistics, failed);
+			
+			if (slowSearchLog != null && operationType == RestOperationTypeEnum.SEARCH_TYPE) {
+				slowSearchLog.log(requestDetails.getResourceName(), parameterShape, elapsedNanos, state.results,
+				    state.statistics);
+			}
+		}
+		finally {
+			RequestStatistics.stop();
+		}
+	}
+	
+	private static String getParameterShape(Map<String, String[]> parameters) {
+		if (parameters == null) {
+			return "";
+		}
+		
+		TreeSet<String> names = new TreeSet<>(parameters.keySet());
+		names.remove(Constants.PARAM_FORMAT);
+		names.remove(Constants.PARAM_PRETTY);
+		return String.join(",", names);
+	}
+	
+	private static class RequestState {
+		
+		private final long startTime;
+		
+		private final RequestStatistics statistics;
+		
+		private int results;
+		
+		private StageTracer.Span encoding;
+		
+		RequestState(long startTime, RequestStatistics statistics) {
+			this.startTime = startTime;
+			this.statistics = statistics;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.api.metrics.FhirRequestMetrics;
+import org.openmrs.module.fhir2.api.metrics.OperationMetrics;
+import org.openmrs.util.PrivilegeConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.context.support.SpringBeanAutowiringSupport;
+
+/**
+ * Exposes the {@link FhirRequestMetrics} in the Prometheus text format, so that they can be scraped
+ * by common monitoring tools. The same metrics are also available through JMX.
+ */
+public class FhirMetricsServlet extends HttpServlet {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	@Autowired
+	private transient FhirRequestMetrics requestMetrics;
+	
+	@Override
+	public void init() throws ServletException {
+		super.init();
+		
+		// ensure properties for this class are properly injected
+		if (requestMetrics == null) {
+			SpringBeanAutowiringSupport.processInjectionBasedOnServletContext(this, getServletContext());
+		}
+	}
+	
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (!Context.hasPrivilege(PrivilegeConstants.VIEW_ADMIN_FUNCTIONS)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		
+		response.setContentType(CONTENT_TYPE);
+		write(requestMetrics.getOperations(), response.getWriter());
+	}
+	
+	private void write(List<OperationMetrics> operations, PrintWriter out) {
+		out.println("# TYPE fhir2_request_duration_seconds histogram");
+		for (OperationMetrics metrics : operations) {
+			String labels = labels(metrics);
+			long cumulative = 0;
+			for (int i = 0; i < FhirRequestMetrics.LATENCY_BUCKETS_MILLIS.length; i++) {
+				cumulative += metrics.getLatencyBuckets()[i];
+				out.println("fhir2_request_duration_seconds_bucket{" + labels + ",le=\""
+				        + seconds(FhirRequestMetrics.LATENCY_BUCKETS_MILLIS[i]) + "\"} " + cumulative);
+			}
+			
+			out.println("fhir2_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} " + metrics.getCount());
+			out.println("fhir2_request_duration_seconds_sum{" + labels + "} "
+			        + seconds(metrics.getMeanMillis() * metrics.getCount()));
+			out.println("fhir2_request_duration_seconds_count{" + labels + "} " + metrics.getCount());
+		}
+		
+		counter(out, operations, "fhir2_request_errors_total", OperationMetrics::getErrors);
+		counter(out, operations, "fhir2_request_results_total", OperationMetrics::getResults);
+		counter(out, operations, "fhir2_request_sql_statements_total", OperationMetrics::getStatements);
+		counter(out, operations, "fhir2_request_entity_loads_total", OperationMetrics::getEntityLoads);
+		out.flush();
+	}
+	
+	private static void counter(PrintWriter out, List<OperationMetrics> operations, String name,
+	        ToLongFunction<OperationMetrics> value) {
+		out.println("# TYPE " + name + " counter");
+		for (OperationMetrics metrics : operations) {
+			out.println(name + "{" + labels(metrics) + "} " + value.applyAsLong(metrics));
+		}
+	}
+	
+	private static String labels(OperationMetrics metrics) {
+		return "resource=\"" + escape(metrics.getResourceType()) + "\",operation=\"" + escape(metrics.getOperation())
+		        + "\",shape=\"" + escape(metrics.getParameterShape()) + "\"";
+	}
+	
+	private static String seconds(double millis) {
+		return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+	}
+	
+	private static String escape(String value) {
+		return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -23,7 +23,12 @@ import lombok.Setter;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.metrics.FhirRequestMetrics;
+import org.openmrs.module.fhir2.api.metrics.SlowSearchLog;
+import org.openmrs.module.fhir2.narrative.NarrativeControlInterceptor;
 import org.openmrs.module.fhir2.narrative.OpenMRSThymeleafNarrativeGenerator;
+import org.openmrs.module.fhir2.web.interceptor.CapabilityStatementCachingInterceptor;
+import org.openmrs.module.fhir2.web.interceptor.RequestMetricsInterceptor;
 import org.openmrs.module.fhir2.web.util.NarrativeUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -44,8 +49,17 @@ public class FhirRestServlet extends RestfulServer {
 	@Qualifier("hapiLoggingInterceptor")
 	private LoggingInterceptor loggingInterceptor;
 	
+	@Autowired
+	private FhirRequestMetrics requestMetrics;
+	
+	@Autowired
+	private SlowSearchLog slowSearchLog;
+	
 	private MessageSource messageSource;
 	
+	@Setter(AccessLevel.NONE)
+	private transient CapabilityStatementCachingInterceptor capabilityStatementCachingInterceptor;
+	
 	@Override
 	protected void initialize() {
 		// ensure properties for this class are properly injected
@@ -65,6 +79,11 @@ public class FhirRestServlet extends RestfulServer {
 		setPagingProvider(pp);
 		setDefaultResponseEncoding(EncodingEnum.JSON);
 		registerInterceptor(loggingInterceptor);
+		registerInterceptor(new NarrativeControlInterceptor(globalPropertyService));
+		
+		capabilityStatementCachingInterceptor = new CapabilityStatementCachingInterceptor(this);
+		registerInterceptor(capabilityStatementCachingInterceptor);
+		registerInterceptor(new RequestMetricsInterceptor(getFhirContext(), requestMetrics, slowSearchLog));
 		
 		String narrativesOverridePropertyFile = NarrativeUtils.getValidatedPropertiesFilePath(
 		    globalPropertyService.getGlobalProperty(FhirConstants.NARRATIVES_OVERRIDE_PROPERTY_FILE, ""));
@@ -82,6 +101,18 @@ public class FhirRestServlet extends RestfulServer {
 		        .setNarrativeGenerator(new OpenMRSThymeleafNarrativeGenerator(messageSource, narrativePropertiesFiles));
 	}
 	
+	@Override
+	public void registerProviders(Collection<?> theProviders) {
+		super.registerProviders(theProviders);
+		invalidateCapabilityStatement();
+	}
+	
+	@Override
+	public void unregisterProviders(Collection<?> theProviders) {
+		super.unregisterProviders(theProviders);
+		invalidateCapabilityStatement();
+	}
+	
 	@Override
 	protected String createPoweredByHeaderComponentName() {
 		return FhirConstants.OPENMRS_FHIR_SERVER_NAME;
@@ -117,4 +148,11 @@ public class FhirRestServlet extends RestfulServer {
 	public void setMessageSource(MessageSource messageSource) {
 		this.messageSource = messageSource;
 	}
+	
+	private void invalidateCapabilityStatement() {
+		// providers are also registered before the servlet is initialized
+		if (capabilityStatementCachingInterceptor != null) {
+			capabilityStatementCachingInterceptor.invalidate();
+		}
+	}
 }
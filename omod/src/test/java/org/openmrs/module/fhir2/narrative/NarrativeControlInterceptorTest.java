@@ -0,0 +1,137 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.narrative;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NarrativeControlInterceptorTest extends BaseFhirNarrativeTest {
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Captor
+	private ArgumentCaptor<Map<String, String[]>> parametersCaptor;
+	
+	private NarrativeControlInterceptor interceptor;
+	
+	private Patient patient;
+	
+	@Before
+	public void setupInterceptor() {
+		interceptor = new NarrativeControlInterceptor(globalPropertyService);
+		
+		patient = new Patient();
+		patient.setId("f5b2d0d8-0e0a-4d6a-9b3c-5d3c8a0e6f7a");
+		patient.addName().setFamily("Smith");
+	}
+	
+	@After
+	public void resetNarratives() {
+		OpenMRSThymeleafNarrativeGenerator.resetNarrativesEnabled();
+	}
+	
+	@Test
+	public void shouldGenerateNarrativesByDefault() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.NARRATIVES_DISABLED_FOR_USERS, "")).thenReturn("");
+		
+		interceptor.incomingRequestPostProcessed(request(new HashMap<>()));
+		
+		assertThat(encode(patient).hasText(), is(true));
+	}
+	
+	@Test
+	public void shouldNotGenerateNarrativesWhenNarrativeIsFalse() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put(NarrativeControlInterceptor.NARRATIVE_PARAM, new String[] { "false" });
+		RequestDetails requestDetails = request(parameters);
+		
+		interceptor.incomingRequestPostProcessed(requestDetails);
+		
+		assertThat(encode(patient).hasText(), is(false));
+		verify(requestDetails).setParameters(parametersCaptor.capture());
+		assertThat(parametersCaptor.getValue(), not(hasKey(NarrativeControlInterceptor.NARRATIVE_PARAM)));
+	}
+	
+	@Test
+	public void shouldNotGenerateNarrativesForSummaryData() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_summary", new String[] { "data" });
+		
+		interceptor.incomingRequestPostProcessed(request(parameters));
+		
+		assertThat(encode(patient).hasText(), is(false));
+	}
+	
+	@Test
+	public void shouldNotGenerateNarrativesWhenElementsExcludeText() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_elements", new String[] { "name,gender" });
+		
+		interceptor.incomingRequestPostProcessed(request(parameters));
+		
+		assertThat(encode(patient).hasText(), is(false));
+	}
+	
+	@Test
+	public void shouldGenerateNarrativesWhenNarrativeIsTrueForSummaryData() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_summary", new String[] { "data" });
+		parameters.put(NarrativeControlInterceptor.NARRATIVE_PARAM, new String[] { "true" });
+		
+		interceptor.incomingRequestPostProcessed(request(parameters));
+		
+		assertThat(encode(patient).getText().getStatusAsString(), equalTo("generated"));
+	}
+	
+	@Test
+	public void shouldGenerateNarrativesAgainOnceRequestIsCompleted() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put(NarrativeControlInterceptor.NARRATIVE_PARAM, new String[] { "false" });
+		interceptor.incomingRequestPostProcessed(request(parameters));
+		
+		interceptor.processingCompleted();
+		
+		assertThat(encode(patient).hasText(), is(true));
+	}
+	
+	private RequestDetails request(Map<String, String[]> parameters) {
+		RequestDetails requestDetails = mock(RequestDetails.class);
+		when(requestDetails.getParameters()).thenReturn(parameters);
+		return requestDetails;
+	}
+	
+	private Patient encode(Patient patient) {
+		return parser.parseResource(Patient.class, parser.encodeResourceToString(patient));
+	}
+}
@@ -11,9 +11,11 @@ package org.openmrs.module.fhir2.narrative;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 
 import java.io.IOException;
+import java.util.Date;
 
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.Test;
@@ -44,4 +46,29 @@ public class PatientNarrativeTest extends BaseFhirNarrativeTest {
 		assertThat(result.getText().getStatusAsString(), equalTo("generated"));
 		assertThat(result.getText().getDivAsString(), equalTo(readNarrativeFile(EXPECTED_NARRATIVE_PATH)));
 	}
+	
+	/**
+	 * Check that the narrative of an unchanged Patient is reused rather than generated again
+	 */
+	@Test
+	public void shouldReuseNarrativeOfUnchangedPatient() {
+		Patient patient = new Patient();
+		patient.setId("f5b2d0d8-0e0a-4d6a-9b3c-5d3c8a0e6f7a");
+		patient.getMeta().setLastUpdated(new Date(1_000L));
+		patient.addName().setFamily("Smith");
+		
+		Patient first = parser.parseResource(Patient.class, parser.encodeResourceToString(patient));
+		
+		// a change which does not update the last updated time cannot be detected, so the cached narrative is used
+		patient.setText(null);
+		patient.getNameFirstRep().setFamily("Jones");
+		Patient second = parser.parseResource(Patient.class, parser.encodeResourceToString(patient));
+		
+		patient.setText(null);
+		patient.getMeta().setLastUpdated(new Date(2_000L));
+		Patient third = parser.parseResource(Patient.class, parser.encodeResourceToString(patient));
+		
+		assertThat(second.getText().getDivAsString(), equalTo(first.getText().getDivAsString()));
+		assertThat(third.getText().getDivAsString(), not(equalTo(first.getText().getDivAsString())));
+	}
 }
@@ -37,6 +37,7 @@ import org.junit.Before;
 import org.openmrs.api.APIException;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.impl.FhirGlobalPropertyServiceImpl;
+import org.openmrs.module.fhir2.api.metrics.FhirRequestMetrics;
 import org.openmrs.module.fhir2.web.servlet.FhirRestServlet;
 import org.springframework.context.support.ReloadableResourceBundleMessageSource;
 import org.springframework.http.HttpStatus;
@@ -88,6 +89,7 @@ public abstract class BaseFhirResourceProviderWebTest<T extends IResourceProvide
 		servlet = getRestfulServer();
 		servlet.setFhirContext(getFhirContext());
 		servlet.setLoggingInterceptor(interceptor);
+		servlet.setRequestMetrics(new FhirRequestMetrics());
 		servlet.setGlobalPropertyService(new FhirGlobalPropertyServiceImpl() {
 			
 			@Override
@@ -247,6 +249,11 @@ public abstract class BaseFhirResourceProviderWebTest<T extends IResourceProvide
 			return this;
 		}
 		
+		public FhirRequestBuilder header(@NotNull String name, @NotNull String value) {
+			request.addHeader(name, value);
+			return this;
+		}
+		
 		public FhirRequestBuilder jsonContent(@NotNull String json) {
 			request.addHeader(CONTENT_TYPE, FhirMediaTypes.JSON.toString());
 			request.setContent(json.getBytes());
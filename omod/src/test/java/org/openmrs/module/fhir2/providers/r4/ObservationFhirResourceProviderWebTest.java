@@ -188,6 +188,31 @@ public class ObservationFhirResourceProviderWebTest extends BaseFhirR4ResourcePr
 		assertThat(response.getStatus(), equalTo(404));
 	}
 	
+	@Test
+	public void deleteObservation_shouldDeleteObservationsMatchingConditionalUrl() throws Exception {
+		when(observationService.deleteObservations(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(),
+		    any())).thenReturn(2);
+		
+		MockHttpServletResponse response = delete("/Observation?subject=" + PATIENT_UUID + "&code=5085")
+		        .accept(FhirMediaTypes.JSON).go();
+		
+		assertThat(response, isOk());
+		verify(observationService).deleteObservations(isNull(), patientCaptor.capture(), isNull(), isNull(), isNull(),
+		    isNull(), isNull(), codeCaptor.capture(), isNull(), isNull(), isNull());
+		assertThat(patientCaptor.getValue().getValuesAsQueryTokens().get(0).getValuesAsQueryTokens().get(0).getIdPart(),
+		    equalTo(PATIENT_UUID));
+		assertThat(codeCaptor.getValue().getValuesAsQueryTokens().get(0).getValuesAsQueryTokens().get(0).getValue(),
+		    equalTo("5085"));
+	}
+	
+	@Test
+	public void deleteObservation_shouldRejectConditionalUrlWithUnsupportedParameters() throws Exception {
+		MockHttpServletResponse response = delete("/Observation?code=5085&performer=" + PATIENT_UUID)
+		        .accept(FhirMediaTypes.JSON).go();
+		
+		assertThat(response, isBadRequest());
+	}
+	
 	@Test
 	public void shouldGetObservationsBySubjectUuid() throws Exception {
 		verifyUri("/Observation?subject=" + PATIENT_UUID);
@@ -10,6 +10,7 @@
 package org.openmrs.module.fhir2.providers.r4;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.containsStringIgnoringCase;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
@@ -59,6 +60,7 @@ import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirPatientService;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
 import org.openmrs.module.fhir2.providers.r3.MockIBundleProvider;
+import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockHttpServletResponse;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -651,4 +653,24 @@ public class PatientFhirResourceProviderWebTest extends BaseFhirR4ResourceProvid
 		assertThat(response.getContentType(), equalTo(FhirMediaTypes.JSON.toString()));
 	}
 	
+	@Test
+	public void metadata_shouldReturnCapabilityStatementWithETag() throws Exception {
+		MockHttpServletResponse response = get("/metadata").accept(FhirMediaTypes.JSON).go();
+		
+		assertThat(response, isOk());
+		assertThat(response.getContentAsString(), containsString("CapabilityStatement"));
+		assertThat(response.getHeader("ETag"), notNullValue());
+	}
+	
+	@Test
+	public void metadata_shouldReturnNotModifiedForMatchingETag() throws Exception {
+		String eTag = get("/metadata").accept(FhirMediaTypes.JSON).go().getHeader("ETag");
+		
+		MockHttpServletResponse response = get("/metadata").accept(FhirMediaTypes.JSON).header("If-None-Match", eTag)
+		        .go();
+		
+		assertThat(response, statusEquals(HttpStatus.NOT_MODIFIED));
+		assertThat(response.getContentAsString(), equalTo(""));
+	}
+	
 }
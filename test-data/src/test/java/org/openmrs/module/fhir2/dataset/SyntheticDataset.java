@@ -0,0 +1,129 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.dataset;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Describes the size and shape of a dataset to be created by {@link SyntheticDatasetGenerator}. Two
+ * datasets with the same settings generated against the same database contain exactly the same
+ * data, so the {@link #seed} identifies a dataset for the purposes of comparing test runs.
+ * <p>
+ * All dates are calculated relative to the {@link #referenceDate} rather than the current date, so
+ * that searches by date match the same rows no matter when the dataset was generated.
+ */
+@Value
+@Builder
+public class SyntheticDataset {
+	
+	@Builder.Default
+	long seed = 42L;
+	
+	@Builder.Default
+	int patients = 1000;
+	
+	@Builder.Default
+	int encountersPerPatient = 5;
+	
+	@Builder.Default
+	int obsPerEncounter = 8;
+	
+	@Builder.Default
+	int obsGroupsPerEncounter = 1;
+	
+	@Builder.Default
+	int membersPerObsGroup = 3;
+	
+	@Builder.Default
+	int ordersPerEncounter = 1;
+	
+	@Builder.Default
+	int allergiesPerPatient = 1;
+	
+	@Builder.Default
+	int conditionsPerPatient = 2;
+	
+	/**
+	 * The number of patients whose data is written to the database in a single JDBC batch
+	 */
+	@Builder.Default
+	int batchSize = 100;
+	
+	@Builder.Default
+	LocalDate referenceDate = LocalDate.of(2020, 9, 1);
+	
+	/**
+	 * Reads the settings for a dataset from the {@code dataset.*} system properties, e.g.
+	 * {@code -Ddataset.patients=100000 -Ddataset.encountersPerPatient=10}. Any settings not specified
+	 * keep their default values.
+	 *
+	 * @return the dataset described by the system properties
+	 */
+	public static SyntheticDataset fromSystemProperties() {
+		SyntheticDataset defaults = SyntheticDataset.builder().build();
+		String referenceDate = System.getProperty("dataset.referenceDate");
+		
+		return SyntheticDataset.builder().seed(Long.getLong("dataset.seed", defaults.seed))
+		        .patients(property("patients", defaults.patients))
+		        .encountersPerPatient(property("encountersPerPatient", defaults.encountersPerPatient))
+		        .obsPerEncounter(property("obsPerEncounter", defaults.obsPerEncounter))
+		        .obsGroupsPerEncounter(property("obsGroupsPerEncounter", defaults.obsGroupsPerEncounter))
+		        .membersPerObsGroup(property("membersPerObsGroup", defaults.membersPerObsGroup))
+		        .ordersPerEncounter(property("ordersPerEncounter", defaults.ordersPerEncounter))
+		        .allergiesPerPatient(property("allergiesPerPatient", defaults.allergiesPerPatient))
+		        .conditionsPerPatient(property("conditionsPerPatient", defaults.conditionsPerPatient))
+		        .batchSize(property("batchSize", defaults.batchSize))
+		        .referenceDate(referenceDate == null ? defaults.referenceDate : LocalDate.parse(referenceDate)).build();
+	}
+	
+	/**
+	 * @param index the index of the patient within this dataset, from 0 up to {@link #patients}
+	 * @return the uuid of the generated patient
+	 */
+	public String getPatientUuid(int index) {
+		return uuid("patient", index);
+	}
+	
+	/**
+	 * @param index the index of the patient within this dataset, from 0 up to {@link #patients}
+	 * @return the identifier of the generated patient
+	 */
+	public String getPatientIdentifier(int index) {
+		return String.format("SYN%d-%07d", seed, index);
+	}
+	
+	/**
+	 * @return the total number of encounters in this dataset
+	 */
+	public long getEncounterCount() {
+		return (long) patients * encountersPerPatient;
+	}
+	
+	/**
+	 * @return the total number of obs in this dataset, including obs groups and their members
+	 */
+	public long getObsCount() {
+		return getEncounterCount() * (obsPerEncounter + obsGroupsPerEncounter * (1L + membersPerObsGroup));
+	}
+	
+	private static int property(String name, int defaultValue) {
+		return Integer.getInteger("dataset." + name, defaultValue);
+	}
+	
+	String uuid(String type, long index) {
+		return UUID.nameUUIDFromBytes(("fhir2-dataset:" + seed + ":" + type + ":" + index).getBytes(UTF_8)).toString();
+	}
+}
@@ -0,0 +1,535 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.dataset;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Writes a {@link SyntheticDataset} into an OpenMRS database using plain JDBC, so that it can be used
+ * both with the in-memory H2 database used by the tests and with a MySQL database. For each patient
+ * it creates a name, an identifier, encounters with providers, obs (including obs groups), test
+ * orders, allergies and, where the database has a {@code conditions} table, conditions.
+ * <p>
+ * As the rows are not written through Hibernate, the module's interceptors do not run for them.
+ * Where the database has the module's {@code fhir_last_updated}, {@code fhir_preferred_name} and
+ * {@code fhir_search_token} tables, the generator fills them in itself, in the same way as the
+ * interceptors and the changesets populating those tables.
+ * <p>
+ * The generator only creates clinical data. The metadata it refers to, i.e. locations, identifier
+ * types, encounter types, providers, concepts, etc. is taken from what is already in the database,
+ * such as the standard test dataset or a concept dictionary. New rows are numbered from the highest
+ * existing id in each table.
+ * <p>
+ * To populate a local MySQL database, run this class with the test classpath of this module, e.g.
+ *
+ * <pre>
+ * java -Ddataset.url=jdbc:mysql://localhost:3306/openmrs -Ddataset.username=openmrs -Ddataset.password=openmrs \
+ *     -Ddataset.patients=100000 org.openmrs.module.fhir2.dataset.SyntheticDatasetGenerator
+ * </pre>
+ */
+public class SyntheticDatasetGenerator {
+	
+	private static final String[] GIVEN_NAMES = { "Jane", "John", "Amina", "Kofi", "Maria", "Wei", "Priya", "Ahmed", "Grace",
+	        "Samuel", "Fatuma", "Joseph", "Esther", "Daniel", "Ruth", "Moses", "Sarah", "Peter", "Agnes", "David" };
+	
+	private static final String[] FAMILY_NAMES = { "Doe", "Otieno", "Mensah", "Garcia", "Chen", "Patel", "Hassan", "Wanjiru",
+	        "Okello", "Banda", "Nkosi", "Mwangi", "Kamau", "Achieng", "Mutua", "Phiri", "Tembo", "Mbeki", "Osei", "Diallo" };
+	
+	private static final String[] ALLERGEN_TYPES = { "DRUG", "FOOD", "ENVIRONMENT" };
+	
+	private static final String[] CLINICAL_STATUSES = { "ACTIVE", "ACTIVE", "INACTIVE", "HISTORY_OF" };
+	
+	private static final long DAY = 24L * 60L * 60L * 1000L;
+	
+	// the token types and normalization of org.openmrs.module.fhir2.FhirSearchToken and FhirUtils, which this module
+	// cannot depend on
+	private static final String GIVEN_TOKEN = "given";
+	
+	private static final String FAMILY_TOKEN = "family";
+	
+	private static final String IDENTIFIER_TOKEN = "identifier";
+	
+	private static final Pattern SEARCH_TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+	
+	private final SyntheticDataset dataset;
+	
+	private final Random random;
+	
+	private final Timestamp dateCreated;
+	
+	private final Map<String, Integer> rowCounts = new LinkedHashMap<>();
+	
+	private int creator;
+	
+	private int location;
+	
+	private int identifierType;
+	
+	private int encounterType;
+	
+	private int encounterRole;
+	
+	private int provider;
+	
+	private int careSetting;
+	
+	private Integer testOrderType;
+	
+	private List<double[]> numericConcepts;
+	
+	private List<Integer> codedConcepts;
+	
+	private int groupConcept;
+	
+	private boolean hasConditions;
+	
+	private boolean hasLastUpdatedIndex;
+	
+	private boolean hasPreferredNameIndex;
+	
+	private boolean hasSearchTokenIndex;
+	
+	private int lastUpdatedId;
+	
+	private int searchTokenId;
+	
+	public SyntheticDatasetGenerator(SyntheticDataset dataset) {
+		this.dataset = dataset;
+		this.random = new Random(dataset.getSeed());
+		this.dateCreated = new Timestamp(Date.valueOf(dataset.getReferenceDate()).getTime());
+	}
+	
+	/**
+	 * Generates the dataset in the given database.
+	 *
+	 * @param connection the connection to the database
+	 * @param commitBatches whether to commit after each batch of patients. This should be false when
+	 *            the connection is managed by a test, which will roll the data back, and true when
+	 *            populating a database with a large dataset
+	 * @return the number of rows created in each table
+	 * @throws SQLException if the data could not be written
+	 */
+	public Map<String, Integer> generate(Connection connection, boolean commitBatches) throws SQLException {
+		loadMetadata(connection);
+		
+		int personId = nextId(connection, "person", "person_id");
+		int personNameId = nextId(connection, "person_name", "person_name_id");
+		int identifierId = nextId(connection, "patient_identifier", "patient_identifier_id");
+		int encounterId = nextId(connection, "encounter", "encounter_id");
+		int encounterProviderId = nextId(connection, "encounter_provider", "encounter_provider_id");
+		int obsId = nextId(connection, "obs", "obs_id");
+		int orderId = nextId(connection, "orders", "order_id");
+		int allergyId = nextId(connection, "allergy", "allergy_id");
+		int conditionId = hasConditions ? nextId(connection, "conditions", "condition_id") : 0;
+		lastUpdatedId = hasLastUpdatedIndex ? nextId(connection, "fhir_last_updated", "fhir_last_updated_id") : 0;
+		searchTokenId = hasSearchTokenIndex ? nextId(connection, "fhir_search_token", "fhir_search_token_id") : 0;
+		
+		try (Batch batch = new Batch(connection)) {
+			for (int i = 0; i < dataset.getPatients(); i++, personId++) {
+				addPatient(batch, i, personId, personNameId++, identifierId++);
+				
+				for (int j = 0; j < dataset.getEncountersPerPatient(); j++, encounterId++) {
+					Timestamp encounterDatetime = timestamp(dataset.getReferenceDate(), random.nextInt(3 * 365));
+					addEncounter(batch, personId, encounterId, encounterProviderId++, encounterDatetime);
+					
+					for (int k = 0; k < dataset.getObsPerEncounter(); k++) {
+						addObs(batch, obsId++, null, personId, encounterId, encounterDatetime);
+					}
+					
+					for (int k = 0; k < dataset.getObsGroupsPerEncounter(); k++) {
+						int groupId = obsId++;
+						addObsGroup(batch, groupId, personId, encounterId, encounterDatetime);
+						for (int m = 0; m < dataset.getMembersPerObsGroup(); m++) {
+							addObs(batch, obsId++, groupId, personId, encounterId, encounterDatetime);
+						}
+					}
+					
+					if (testOrderType != null) {
+						for (int k = 0; k < dataset.getOrdersPerEncounter(); k++) {
+							addTestOrder(batch, orderId++, personId, encounterId, encounterDatetime);
+						}
+					}
+				}
+				
+				for (int j = 0; j < dataset.getAllergiesPerPatient(); j++) {
+					addAllergy(batch, allergyId++, personId, j);
+				}
+				
+				if (hasConditions) {
+					for (int j = 0; j < dataset.getConditionsPerPatient(); j++) {
+						addCondition(batch, conditionId++, personId, j);
+					}
+				}
+				
+				if ((i + 1) % dataset.getBatchSize() == 0) {
+					batch.execute();
+					if (commitBatches) {
+						connection.commit();
+					}
+				}
+			}
+			
+			batch.execute();
+			if (commitBatches) {
+				connection.commit();
+			}
+		}
+		
+		return rowCounts;
+	}
+	
+	private void addPatient(Batch batch, int index, int personId, int personNameId, int identifierId) throws SQLException {
+		boolean female = random.nextBoolean();
+		Date birthdate = Date.valueOf(
+		    dataset.getReferenceDate().minusYears(random.nextInt(90)).minusDays(random.nextInt(365)));
+		
+		batch.add("insert into person (person_id, gender, birthdate, birthdate_estimated, dead, deathdate_estimated, "
+		        + "creator, date_created, voided, uuid) values (?, ?, ?, false, false, false, ?, ?, false, ?)",
+		    personId, female ? "F" : "M", birthdate, creator, dateCreated, dataset.getPatientUuid(index));
+		
+		String givenName = pick(GIVEN_NAMES);
+		String familyName = pick(FAMILY_NAMES);
+		batch.add("insert into person_name (person_name_id, preferred, person_id, given_name, family_name, creator, "
+		        + "date_created, voided, uuid) values (?, true, ?, ?, ?, ?, ?, false, ?)",
+		    personNameId, personId, givenName, familyName, creator, dateCreated, dataset.uuid("person_name", index));
+		
+		batch.add("insert into patient (patient_id, creator, date_created, voided, allergy_status) "
+		        + "values (?, ?, ?, false, ?)",
+		    personId, creator, dateCreated, dataset.getAllergiesPerPatient() > 0 ? "See list" : "Unknown");
+		
+		batch.add("insert into patient_identifier (patient_identifier_id, patient_id, identifier, identifier_type, "
+		        + "preferred, location_id, creator, date_created, voided, uuid) "
+		        + "values (?, ?, ?, ?, true, ?, ?, ?, false, ?)",
+		    identifierId, personId, dataset.getPatientIdentifier(index), identifierType, location, creator, dateCreated,
+		    dataset.uuid("patient_identifier", index));
+		
+		// a patient is recorded both as a Person and as a Patient, as the interceptor records it for each tracked type
+		addLastUpdated(batch, "org.openmrs.Person", dataset.getPatientUuid(index));
+		addLastUpdated(batch, "org.openmrs.Patient", dataset.getPatientUuid(index));
+		
+		if (hasPreferredNameIndex) {
+			batch.add("insert into fhir_preferred_name (person_id, person_name_id) values (?, ?)", personId,
+			    personNameId);
+		}
+		
+		addSearchTokens(batch, personId, GIVEN_TOKEN, searchTokens(givenName));
+		addSearchTokens(batch, personId, FAMILY_TOKEN, searchTokens(familyName));
+		addSearchTokens(batch, personId, IDENTIFIER_TOKEN,
+		    Collections.singletonList(normalizeSearchToken(dataset.getPatientIdentifier(index))));
+	}
+	
+	private void addEncounter(Batch batch, int patientId, int encounterId, int encounterProviderId,
+	        Timestamp encounterDatetime) throws SQLException {
+		batch.add("insert into encounter (encounter_id, encounter_type, patient_id, location_id, encounter_datetime, "
+		        + "creator, date_created, voided, uuid) values (?, ?, ?, ?, ?, ?, ?, false, ?)",
+		    encounterId, encounterType, patientId, location, encounterDatetime, creator, dateCreated,
+		    dataset.uuid("encounter", encounterId));
+		
+		batch.add("insert into encounter_provider (encounter_provider_id, encounter_id, provider_id, encounter_role_id, "
+		        + "creator, date_created, voided, uuid) values (?, ?, ?, ?, ?, ?, false, ?)",
+		    encounterProviderId, encounterId, provider, encounterRole, creator, dateCreated,
+		    dataset.uuid("encounter_provider", encounterProviderId));
+		
+		addLastUpdated(batch, "org.openmrs.Encounter", dataset.uuid("encounter", encounterId));
+	}
+	
+	private void addObs(Batch batch, int obsId, Integer groupId, int personId, int encounterId, Timestamp obsDatetime)
+	        throws SQLException {
+		double[] concept = numericConcepts.get(random.nextInt(numericConcepts.size()));
+		double value = Math.round((concept[1] + random.nextDouble() * (concept[2] - concept[1])) * 10) / 10.0;
+		
+		if (groupId == null) {
+			batch.add("insert into obs (obs_id, person_id, concept_id, encounter_id, obs_datetime, location_id, "
+			        + "value_numeric, creator, date_created, voided, uuid) values (?, ?, ?, ?, ?, ?, ?, ?, ?, false, ?)",
+			    obsId, personId, (int) concept[0], encounterId, obsDatetime, location, value, creator, dateCreated,
+			    dataset.uuid("obs", obsId));
+		} else {
+			batch.add("insert into obs (obs_id, person_id, concept_id, encounter_id, obs_datetime, location_id, "
+			        + "obs_group_id, value_numeric, creator, date_created, voided, uuid) "
+			        + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false, ?)",
+			    obsId, personId, (int) concept[0], encounterId, obsDatetime, location, groupId, value, creator,
+			    dateCreated, dataset.uuid("obs", obsId));
+		}
+		
+		addLastUpdated(batch, "org.openmrs.Obs", dataset.uuid("obs", obsId));
+	}
+	
+	private void addObsGroup(Batch batch, int obsId, int personId, int encounterId, Timestamp obsDatetime)
+	        throws SQLException {
+		batch.add("insert into obs (obs_id, person_id, concept_id, encounter_id, obs_datetime, location_id, creator, "
+		        + "date_created, voided, uuid) values (?, ?, ?, ?, ?, ?, ?, ?, false, ?)",
+		    obsId, personId, groupConcept, encounterId, obsDatetime, location, creator, dateCreated,
+		    dataset.uuid("obs", obsId));
+		
+		addLastUpdated(batch, "org.openmrs.Obs", dataset.uuid("obs", obsId));
+	}
+	
+	private void addTestOrder(Batch batch, int orderId, int patientId, int encounterId, Timestamp dateActivated)
+	        throws SQLException {
+		batch.add("insert into orders (order_id, order_type_id, concept_id, orderer, encounter_id, date_activated, "
+		        + "creator, date_created, voided, patient_id, uuid, urgency, order_number, order_action, care_setting) "
+		        + "values (?, ?, ?, ?, ?, ?, ?, ?, false, ?, ?, 'ROUTINE', ?, 'NEW', ?)",
+		    orderId, testOrderType, pick(codedConcepts), provider, encounterId, dateActivated, creator, dateCreated,
+		    patientId, dataset.uuid("order", orderId), "SYN-" + orderId, careSetting);
+		
+		batch.add("insert into test_order (order_id) values (?)", orderId);
+		
+		addLastUpdated(batch, "org.openmrs.TestOrder", dataset.uuid("order", orderId));
+	}
+	
+	private void addAllergy(Batch batch, int allergyId, int patientId, int index) throws SQLException {
+		// allergens must be distinct for a patient, so they are chosen from consecutive concepts
+		int allergen = codedConcepts.get((patientId + index) % codedConcepts.size());
+		
+		batch.add("insert into allergy (allergy_id, patient_id, coded_allergen, allergen_type, creator, date_created, "
+		        + "voided, uuid) values (?, ?, ?, ?, ?, ?, false, ?)",
+		    allergyId, patientId, allergen, pick(ALLERGEN_TYPES), creator, dateCreated, dataset.uuid("allergy", allergyId));
+		
+		addLastUpdated(batch, "org.openmrs.Allergy", dataset.uuid("allergy", allergyId));
+	}
+	
+	private void addCondition(Batch batch, int conditionId, int patientId, int index) throws SQLException {
+		int condition = codedConcepts.get((patientId + index) % codedConcepts.size());
+		
+		batch.add("insert into conditions (condition_id, condition_coded, clinical_status, onset_date, patient_id, "
+		        + "creator, date_created, voided, uuid) values (?, ?, ?, ?, ?, ?, ?, false, ?)",
+		    conditionId, condition, pick(CLINICAL_STATUSES),
+		    timestamp(dataset.getReferenceDate(), random.nextInt(10 * 365)), patientId, creator, dateCreated,
+		    dataset.uuid("condition", conditionId));
+		
+		addLastUpdated(batch, "org.openmrs.Condition", dataset.uuid("condition", conditionId));
+	}
+	
+	private void addLastUpdated(Batch batch, String resourceType, String uuid) throws SQLException {
+		if (!hasLastUpdatedIndex) {
+			return;
+		}
+		
+		// nothing generated is changed after it is created
+		batch.add("insert into fhir_last_updated (fhir_last_updated_id, resource_type, resource_uuid, last_updated) "
+		        + "values (?, ?, ?, ?)",
+		    lastUpdatedId++, resourceType, uuid, dateCreated);
+	}
+	
+	private void addSearchTokens(Batch batch, int personId, String tokenType, List<String> tokens) throws SQLException {
+		if (!hasSearchTokenIndex) {
+			return;
+		}
+		
+		for (String token : tokens) {
+			batch.add("insert into fhir_search_token (fhir_search_token_id, person_id, token_type, token) "
+			        + "values (?, ?, ?, ?)",
+			    searchTokenId++, personId, tokenType, token);
+		}
+	}
+	
+	/**
+	 * Normalizes values the same way as {@code FhirUtils}, which cannot be used here as the api module
+	 * depends on this one
+	 */
+	private static String normalizeSearchToken(String value) {
+		return StringUtils.stripAccents(value).toLowerCase(Locale.ROOT).trim();
+	}
+	
+	private static List<String> searchTokens(String value) {
+		return Arrays.stream(SEARCH_TOKEN_SEPARATOR.split(normalizeSearchToken(value))).filter(StringUtils::isNotEmpty)
+		        .distinct().collect(Collectors.toList());
+	}
+	
+	private void loadMetadata(Connection connection) throws SQLException {
+		creator = required(connection, "select min(user_id) from users", "user");
+		location = required(connection, "select min(location_id) from location where retired = false", "location");
+		identifierType = required(connection,
+		    "select min(patient_identifier_type_id) from patient_identifier_type where retired = false",
+		    "patient identifier type");
+		encounterType = required(connection, "select min(encounter_type_id) from encounter_type where retired = false",
+		    "encounter type");
+		encounterRole = required(connection, "select min(encounter_role_id) from encounter_role where retired = false",
+		    "encounter role");
+		provider = required(connection, "select min(provider_id) from provider where retired = false", "provider");
+		careSetting = required(connection, "select min(care_setting_id) from care_setting where retired = false",
+		    "care setting");
+		testOrderType = queryForInt(connection,
+		    "select min(order_type_id) from order_type where java_class_name = 'org.openmrs.TestOrder' and retired = false");
+		
+		numericConcepts = new ArrayList<>();
+		try (Statement statement = connection.createStatement();
+		        ResultSet results = statement.executeQuery("select cn.concept_id, cn.low_normal, cn.hi_normal "
+		                + "from concept_numeric cn join concept c on c.concept_id = cn.concept_id "
+		                + "where c.retired = false order by cn.concept_id")) {
+			while (results.next()) {
+				double low = results.getDouble(2);
+				double high = results.getObject(3) == null ? low + 100.0 : results.getDouble(3);
+				numericConcepts.add(new double[] { results.getInt(1), low, high });
+			}
+		}
+		
+		if (numericConcepts.isEmpty()) {
+			throw new IllegalStateException("The database must contain at least one numeric concept");
+		}
+		
+		codedConcepts = new ArrayList<>();
+		try (Statement statement = connection.createStatement();
+		        ResultSet results = statement.executeQuery("select c.concept_id from concept c where c.retired = false "
+		                + "and c.is_set = false and c.concept_id not in (select concept_id from concept_numeric) "
+		                + "order by c.concept_id")) {
+			while (results.next() && codedConcepts.size() < 500) {
+				codedConcepts.add(results.getInt(1));
+			}
+		}
+		
+		if (codedConcepts.isEmpty()) {
+			throw new IllegalStateException("The database must contain at least one concept which is not numeric");
+		}
+		
+		Integer setConcept = queryForInt(connection,
+		    "select min(concept_id) from concept where is_set = true and retired = false");
+		groupConcept = setConcept == null ? codedConcepts.get(0) : setConcept;
+		
+		hasConditions = tableExists(connection, "conditions");
+		hasLastUpdatedIndex = tableExists(connection, "fhir_last_updated");
+		hasPreferredNameIndex = tableExists(connection, "fhir_preferred_name");
+		hasSearchTokenIndex = tableExists(connection, "fhir_search_token");
+	}
+	
+	private int nextId(Connection connection, String table, String column) throws SQLException {
+		Integer max = queryForInt(connection, String.format("select max(%s) from %s", column, table));
+		return max == null ? 1 : max + 1;
+	}
+	
+	private int required(Connection connection, String sql, String description) throws SQLException {
+		Integer result = queryForInt(connection, sql);
+		if (result == null) {
+			throw new IllegalStateException("The database must contain at least one " + description);
+		}
+		
+		return result;
+	}
+	
+	private Integer queryForInt(Connection connection, String sql) throws SQLException {
+		try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery(sql)) {
+			if (results.next()) {
+				int result = results.getInt(1);
+				return results.wasNull() ? null : result;
+			}
+			
+			return null;
+		}
+	}
+	
+	private boolean tableExists(Connection connection, String table) throws SQLException {
+		DatabaseMetaData metaData = connection.getMetaData();
+		for (String name : new String[] { table, table.toUpperCase() }) {
+			try (ResultSet results = metaData.getTables(null, null, name, new String[] { "TABLE" })) {
+				if (results.next()) {
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+	
+	private Timestamp timestamp(LocalDate date, int daysBefore) {
+		return new Timestamp(Date.valueOf(date).getTime() - daysBefore * DAY + random.nextInt(10 * 60 * 60) * 1000L);
+	}
+	
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+	
+	private int pick(List<Integer> values) {
+		return values.get(random.nextInt(values.size()));
+	}
+	
+	/**
+	 * Holds a prepared statement per insert, so that the rows for each table are sent to the database
+	 * in a single batch. The batches are executed in the order the tables were first used, which
+	 * keeps foreign keys satisfied.
+	 */
+	private class Batch implements AutoCloseable {
+		
+		private final Connection connection;
+		
+		private final Map<String, PreparedStatement> statements = new LinkedHashMap<>();
+		
+		private Batch(Connection connection) {
+			this.connection = connection;
+		}
+		
+		void add(String sql, Object... parameters) throws SQLException {
+			PreparedStatement statement = statements.get(sql);
+			if (statement == null) {
+				statement = connection.prepareStatement(sql);
+				statements.put(sql, statement);
+			}
+			
+			for (int i = 0; i < parameters.length; i++) {
+				statement.setObject(i + 1, parameters[i]);
+			}
+			
+			statement.addBatch();
+			
+			String table = sql.substring("insert into ".length(), sql.indexOf(' ', "insert into ".length()));
+			rowCounts.merge(table, 1, Integer::sum);
+		}
+		
+		void execute() throws SQLException {
+			for (PreparedStatement statement : statements.values()) {
+				statement.executeBatch();
+			}
+		}
+		
+		@Override
+		public void close() throws SQLException {
+			for (PreparedStatement statement : statements.values()) {
+				statement.close();
+			}
+		}
+	}
+	
+	public static void main(String[] args) throws SQLException {
+		SyntheticDataset dataset = SyntheticDataset.fromSystemProperties();
+		
+		try (Connection connection = DriverManager.getConnection(
+		    System.getProperty("dataset.url", "jdbc:mysql://localhost:3306/openmrs?rewriteBatchedStatements=true"),
+		    System.getProperty("dataset.username", "openmrs"), System.getProperty("dataset.password", ""))) {
+			connection.setAutoCommit(false);
+			
+			long start = System.nanoTime();
+			Map<String, Integer> rowCounts = new SyntheticDatasetGenerator(dataset).generate(connection, true);
+			
+			System.out.printf("Generated dataset %d in %d s%n", dataset.getSeed(),
+			    (System.nanoTime() - start) / 1_000_000_000L);
+			rowCounts.forEach((table, rows) -> System.out.printf("  %-20s %,12d rows%n", table, rows));
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.dataset;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+public class SyntheticDatasetGeneratorTest extends BaseContextSensitiveTest {
+	
+	private static final SyntheticDataset DATASET = SyntheticDataset.builder().patients(7).encountersPerPatient(2)
+	        .obsPerEncounter(3).obsGroupsPerEncounter(1).membersPerObsGroup(2).batchSize(3).build();
+	
+	private Map<String, Integer> rowCounts;
+	
+	@Before
+	public void setup() throws Exception {
+		rowCounts = new SyntheticDatasetGenerator(DATASET).generate(getConnection(), false);
+	}
+	
+	@Test
+	public void shouldCreateTheRequestedNumberOfRows() throws Exception {
+		assertThat(rowCounts.get("person"), equalTo(DATASET.getPatients()));
+		assertThat(rowCounts.get("patient"), equalTo(DATASET.getPatients()));
+		assertThat(rowCounts.get("encounter"), equalTo((int) DATASET.getEncounterCount()));
+		assertThat(rowCounts.get("allergy"), equalTo(DATASET.getPatients() * DATASET.getAllergiesPerPatient()));
+		assertThat(count("select count(*) from obs where obs_group_id is not null"),
+		    equalTo(DATASET.getEncounterCount() * DATASET.getObsGroupsPerEncounter() * DATASET.getMembersPerObsGroup()));
+		assertThat(count("select count(*) from obs o join encounter e on e.encounter_id = o.encounter_id "
+		        + "join person p on p.person_id = e.patient_id where p.uuid = '" + DATASET.getPatientUuid(0) + "'"),
+		    equalTo(DATASET.getObsCount() / DATASET.getPatients()));
+	}
+	
+	@Test
+	public void shouldCreatePatientsThatCanBeLoadedByTheApi() {
+		Patient patient = Context.getPatientService().getPatientByUuid(DATASET.getPatientUuid(3));
+		
+		assertThat(patient, notNullValue());
+		assertThat(patient.getPatientIdentifier().getIdentifier(), equalTo(DATASET.getPatientIdentifier(3)));
+		assertThat(patient.getPersonName(), notNullValue());
+		assertThat(Context.getEncounterService().getEncountersByPatient(patient),
+		    hasSize(DATASET.getEncountersPerPatient()));
+		
+		Obs group = Context.getObsService().getObservationsByPerson(patient).stream().filter(Obs::isObsGrouping)
+		        .findFirst().orElse(null);
+		assertThat(group, notNullValue());
+		assertThat(group.getGroupMembers(), hasSize(DATASET.getMembersPerObsGroup()));
+	}
+	
+	private long count(String sql) throws SQLException {
+		try (Statement statement = getConnection().createStatement(); ResultSet results = statement.executeQuery(sql)) {
+			results.next();
+			return results.getLong(1);
+		}
+	}
+}